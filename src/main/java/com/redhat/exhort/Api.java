@@ -96,6 +96,22 @@ public int hashCode() {
    */
   CompletableFuture<AnalysisReport> stackAnalysis(String manifestFile) throws IOException;
 
+  /**
+   * Use for creating a stack analysis deserialized Json report for each project of a multi-project
+   * manifest file, i.e. the modules of a maven reactor, in a single batch request. Implementations
+   * not supporting batches default to the stack analysis of the manifest file alone, keyed by the
+   * manifest file path, as they don't know the project's package url.
+   *
+   * @param manifestFile the path for the root manifest file
+   * @return the deserialized Json reports by the projects' package urls, wrapped in a
+   *     CompletableFuture
+   * @throws IOException when failed to load the manifest file
+   */
+  default CompletableFuture<Map<String, AnalysisReport>> stackAnalysisBatch(String manifestFile)
+      throws IOException {
+    return stackAnalysis(manifestFile).thenApply(report -> Map.of(manifestFile, report));
+  }
+
   /**
    * Use for creating a component analysis deserialized Json report for a given type and content.
    *
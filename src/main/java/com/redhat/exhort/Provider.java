@@ -19,6 +19,7 @@
 import com.redhat.exhort.tools.Ecosystem;
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.Map;
 
 /**
  * The Provider abstraction is used for contracting providers providing a {@link Content} per
@@ -67,4 +68,21 @@ protected Provider(Ecosystem.Type ecosystem) {
   public abstract Content provideComponent(byte[] manifestContent) throws IOException;
 
   public abstract Content provideComponent(Path manifestPath) throws IOException;
+
+  /**
+   * Use for providing content for a batch stack analysis request, for manifests aggregating
+   * multiple projects (i.e. a maven reactor). The content is a json object mapping the root purl of
+   * each project to its SBOM. By default, a single entry holding the stack analysis SBOM of the
+   * manifest is provided.
+   *
+   * @param manifestPath the Path for the aggregating manifest file
+   * @return A Content record aggregating the body content and content type
+   * @throws IOException when failed to load the manifest file
+   */
+  public Content provideBatchStack(Path manifestPath) throws IOException {
+    var sbom = objectMapper.readTree(provideStack(manifestPath).buffer);
+    var rootPurl = sbom.at("/metadata/component/purl").asText();
+    return new Content(
+        objectMapper.writeValueAsBytes(Map.of(rootPurl, sbom)), Api.CYCLONEDX_MEDIA_TYPE);
+  }
 }
@@ -16,6 +16,7 @@
 package com.redhat.exhort.impl;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -44,6 +45,7 @@
 import java.time.temporal.ChronoUnit;
 import java.util.AbstractMap;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
@@ -515,6 +517,48 @@ private HttpRequest buildStackRequest(final String manifestFile, final MediaType
     return buildRequest(content, uri, acceptType, "Stack Analysis");
   }
 
+  @Override
+  public CompletableFuture<Map<String, AnalysisReport>> stackAnalysisBatch(
+      final String manifestFile) throws IOException {
+    return this.performBatchAnalysis(
+        () -> getBatchStackSboms(manifestFile),
+        MediaType.APPLICATION_JSON,
+        HttpResponse.BodyHandlers.ofString(),
+        this::getBatchStackAnalysisReports,
+        Collections::emptyMap,
+        "Stack Analysis");
+  }
+
+  Map<String, JsonNode> getBatchStackSboms(final String manifestFile) {
+    var manifestPath = Paths.get(manifestFile);
+    var provider = Ecosystem.getProvider(manifestPath);
+    try {
+      var content = provider.provideBatchStack(manifestPath);
+      return mapper.readValue(
+          content.buffer, new TypeReference<LinkedHashMap<String, JsonNode>>() {});
+    } catch (IOException ex) {
+      throw new RuntimeException(ex);
+    }
+  }
+
+  Map<String, AnalysisReport> getBatchStackAnalysisReports(
+      final HttpResponse<String> httpResponse) {
+    if (httpResponse.statusCode() == 200) {
+      try {
+        Map<?, ?> reports = this.mapper.readValue(httpResponse.body(), Map.class);
+        return reports.entrySet().stream()
+            .collect(
+                Collectors.toMap(
+                    e -> e.getKey().toString(),
+                    e -> mapper.convertValue(e.getValue(), AnalysisReport.class)));
+      } catch (JsonProcessingException e) {
+        throw new CompletionException(e);
+      }
+    } else {
+      return Collections.emptyMap();
+    }
+  }
+
   @Override
   public CompletableFuture<Map<ImageRef, AnalysisReport>> imageAnalysis(
       final Set<ImageRef> imageRefs) throws IOException {
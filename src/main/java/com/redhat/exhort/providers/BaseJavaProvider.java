@@ -24,6 +24,7 @@
 import java.util.Map;
 import java.util.Objects;
 import java.util.TreeMap;
+import java.util.function.BiConsumer;
 
 public abstract class BaseJavaProvider extends Provider {
 
@@ -32,6 +33,15 @@ protected BaseJavaProvider(Ecosystem.Type ecosystem) {
   }
 
   void parseDependencyTree(String src, int srcDepth, String[] lines, Sbom sbom) {
+    parseDependencyTree(src, srcDepth, lines, sbom::addDependency);
+  }
+
+  /**
+   * Parse a dependency tree in text format, passing each non test scoped edge of the tree to the
+   * given consumer as a (source, target) pair.
+   */
+  void parseDependencyTree(
+      String src, int srcDepth, String[] lines, BiConsumer<PackageURL, PackageURL> edges) {
     if (lines.length == 0) {
       return;
     }
@@ -46,11 +56,11 @@ void parseDependencyTree(String src, int srcDepth, String[] lines, Sbom sbom) {
         PackageURL from = parseDep(src);
         PackageURL to = parseDep(target);
         if (dependencyIsNotTestScope(from) && dependencyIsNotTestScope(to)) {
-          sbom.addDependency(from, to);
+          edges.accept(from, to);
         }
       } else {
         String[] modifiedLines = Arrays.copyOfRange(lines, index, lines.length);
-        parseDependencyTree(lines[index - 1], getDepth(lines[index - 1]), modifiedLines, sbom);
+        parseDependencyTree(lines[index - 1], getDepth(lines[index - 1]), modifiedLines, edges);
       }
       if (index < lines.length - 1) {
         target = lines[++index];
@@ -0,0 +1,275 @@
+/*
+ * Copyright © 2023 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.exhort.providers;
+
+import static com.redhat.exhort.impl.ExhortApi.debugLoggingIsNeeded;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.github.packageurl.MalformedPackageURLException;
+import com.github.packageurl.PackageURL;
+import com.redhat.exhort.Api;
+import com.redhat.exhort.Provider;
+import com.redhat.exhort.logging.LoggersFactory;
+import com.redhat.exhort.sbom.Sbom;
+import com.redhat.exhort.sbom.SbomFactory;
+import com.redhat.exhort.tools.Ecosystem;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Base {@link Provider} for JavaScript projects (package.json) whose dependency tree is read
+ * directly out of their package manager's lock file, without invoking the package manager.
+ */
+public abstract class BaseJavaScriptLockfileProvider extends Provider {
+
+  private final Logger log = LoggersFactory.getLogger(this.getClass().getName());
+
+  protected BaseJavaScriptLockfileProvider() {
+    super(Ecosystem.Type.NPM);
+  }
+
+  /**
+   * @return the lock file name, i.e. yarn.lock
+   */
+  protected abstract String getLockfileName();
+
+  /**
+   * Parse the lock file into the graph of the locked packages.
+   *
+   * @param lockfilePath the lock file, next to the package.json
+   * @param manifest the parsed package.json
+   * @return the locked packages graph
+   * @throws IOException when failed to read the lock file
+   */
+  protected abstract Lockfile parseLockfile(Path lockfilePath, JsonNode manifest)
+      throws IOException;
+
+  @Override
+  public Content provideStack(Path manifestPath) throws IOException {
+    var sbom = getDependencySbom(manifestPath, true);
+    if (sbom == null) {
+      return new JavaScriptNpmProvider().provideStack(manifestPath);
+    }
+    return new Content(
+        sbom.getAsJsonString().getBytes(StandardCharsets.UTF_8), Api.CYCLONEDX_MEDIA_TYPE);
+  }
+
+  @Override
+  public Content provideComponent(Path manifestPath) throws IOException {
+    var sbom = getDependencySbom(manifestPath, false);
+    if (sbom == null) {
+      return new JavaScriptNpmProvider().provideComponent(manifestPath);
+    }
+    return new Content(
+        sbom.getAsJsonString().getBytes(StandardCharsets.UTF_8), Api.CYCLONEDX_MEDIA_TYPE);
+  }
+
+  @Override
+  public Content provideComponent(byte[] manifestContent) throws IOException {
+    throw new IllegalArgumentException(
+        String.format(
+            "%s based analysis requires the full package directory, not just the manifest"
+                + " content. Please provide the complete package directory path.",
+            getLockfileName()));
+  }
+
+  /**
+   * @return the SBOM, or null if the lock file is not up-to-date with the package.json
+   */
+  private Sbom getDependencySbom(Path manifestPath, boolean includeTransitive) throws IOException {
+    var lockfilePath = getLockfilePath(manifestPath);
+    var manifest = objectMapper.readTree(manifestPath.toFile());
+    var lockfile = parseLockfile(lockfilePath, manifest);
+    if (!isUpToDate(lockfile, manifest, lockfilePath)) {
+      return null;
+    }
+    var sbom = buildSbom(manifest, lockfile.getRootDependencies(), lockfile, includeTransitive);
+    if (debugLoggingIsNeeded()) {
+      log.info(
+          String.format(
+              "Package Manager %s Dependency Tree built out of %s",
+              getLockfileName(), lockfilePath));
+    }
+    return sbom.filterIgnoredDeps(getIgnoredDeps(manifest));
+  }
+
+  /**
+   * The lock file is up-to-date when it locks the production and optional dependencies declared in
+   * the package.json, as they are declared. Otherwise, the analysis falls back to npm, which
+   * resolves the dependencies by itself.
+   */
+  boolean isUpToDate(Lockfile lockfile, JsonNode manifest, Path lockfilePath) {
+    if (lockfile.isUpToDate(getDeclaredDependencies(manifest))) {
+      return true;
+    }
+    if (debugLoggingIsNeeded()) {
+      log.info(
+          String.format(
+              "Lock file %s is not up-to-date with %s, invoking npm",
+              lockfilePath, manifest.get("name").asText()));
+    }
+    return false;
+  }
+
+  /**
+   * @return the lock file next to the package.json
+   * @throws IllegalStateException when the lock file is missing
+   */
+  Path getLockfilePath(Path manifestPath) {
+    var lockfilePath = manifestPath.toAbsolutePath().getParent().resolve(getLockfileName());
+    if (!Files.isRegularFile(lockfilePath)) {
+      throw new IllegalStateException(
+          String.format("Lock file %s not found next to %s", getLockfileName(), manifestPath));
+    }
+    return lockfilePath;
+  }
+
+  /**
+   * Build the SBOM of a project out of the locked packages graph.
+   *
+   * @param manifest the project's parsed package.json
+   * @param rootDependencies the project's dependencies, as references resolvable by the lock file
+   * @param lockfile the locked packages graph
+   * @param includeTransitive whether to include the transitive dependencies
+   * @return the SBOM
+   */
+  Sbom buildSbom(
+      JsonNode manifest,
+      Map<String, String> rootDependencies,
+      Lockfile lockfile,
+      boolean includeTransitive) {
+    Sbom sbom = SbomFactory.newInstance();
+    try {
+      var version = manifest.get("version");
+      // the version is optional for the root of a workspaces monorepo
+      var root = toPurl(manifest.get("name").asText(), version == null ? null : version.asText());
+      sbom.addRoot(root);
+      // each locked package is expanded once, adding the edges to its dependencies
+      Map<LockedPackage, PackageURL> purls = new IdentityHashMap<>();
+      Deque<LockedPackage> toExpand = new ArrayDeque<>();
+      addDependencies(sbom, root, rootDependencies, lockfile, purls, toExpand);
+      while (includeTransitive && !toExpand.isEmpty()) {
+        var lockedPackage = toExpand.pop();
+        addDependencies(
+            sbom, purls.get(lockedPackage), lockedPackage.dependencies, lockfile, purls, toExpand);
+      }
+    } catch (MalformedPackageURLException e) {
+      throw new IllegalArgumentException("Unable to parse " + getLockfileName(), e);
+    }
+    return sbom;
+  }
+
+  private void addDependencies(
+      Sbom sbom,
+      PackageURL from,
+      Map<String, String> dependencies,
+      Lockfile lockfile,
+      Map<LockedPackage, PackageURL> purls,
+      Deque<LockedPackage> toExpand)
+      throws MalformedPackageURLException {
+    for (Map.Entry<String, String> dependency : dependencies.entrySet()) {
+      var lockedPackage = lockfile.resolve(dependency.getKey(), dependency.getValue());
+      if (lockedPackage == null || lockedPackage.version == null) {
+        continue; // ignore optional dependencies not installed, and local packages
+      }
+      var purl = purls.get(lockedPackage);
+      if (purl == null) {
+        // first time the package is reached, expand it later
+        purl = toPurl(dependency.getKey(), lockedPackage.version);
+        purls.put(lockedPackage, purl);
+        toExpand.push(lockedPackage);
+      }
+      sbom.addDependency(from, purl);
+    }
+  }
+
+  static PackageURL toPurl(String name, String version) throws MalformedPackageURLException {
+    String[] parts = name.split("/");
+    if (parts.length == 2) {
+      return new PackageURL(Ecosystem.Type.NPM.getType(), parts[0], parts[1], version, null, null);
+    }
+    return new PackageURL(Ecosystem.Type.NPM.getType(), null, parts[0], version, null, null);
+  }
+
+  /**
+   * Get the production and optional dependencies declared in the package.json.
+   *
+   * @param manifest the parsed package.json
+   * @return the declared version ranges by the dependencies names
+   */
+  static Map<String, String> getDeclaredDependencies(JsonNode manifest) {
+    Map<String, String> declared = new LinkedHashMap<>();
+    for (String dependencyType : List.of("dependencies", "optionalDependencies")) {
+      var dependencies = manifest.get(dependencyType);
+      if (dependencies != null) {
+        dependencies
+            .fields()
+            .forEachRemaining(e -> declared.put(e.getKey(), e.getValue().asText()));
+      }
+    }
+    return declared;
+  }
+
+  static List<String> getIgnoredDeps(JsonNode manifest) {
+    var ignored = new ArrayList<String>();
+    var ignoredNode = manifest.get("exhortignore");
+    if (ignoredNode != null) {
+      ignoredNode.forEach(n -> ignored.add(n.asText()));
+    }
+    return ignored;
+  }
+
+  /** The graph of the packages locked in a lock file. */
+  interface Lockfile {
+
+    /**
+     * @return the root project's dependencies, as references resolvable by {@link #resolve}
+     */
+    Map<String, String> getRootDependencies();
+
+    /**
+     * Resolve a dependency reference to its locked package.
+     *
+     * @param name the dependency name
+     * @param reference the dependency reference, i.e. a version range or a resolved version
+     * @return the locked package, or null if not locked
+     */
+    LockedPackage resolve(String name, String reference);
+
+    /**
+     * @param declaredDependencies the dependencies declared in a package.json, by their names
+     * @return whether the declared dependencies are locked as they are declared
+     */
+    boolean isUpToDate(Map<String, String> declaredDependencies);
+  }
+
+  /** A package locked in a lock file. */
+  static final class LockedPackage {
+    String version;
+    // the dependencies of the package, as references resolvable by the lock file
+    final Map<String, String> dependencies = new LinkedHashMap<>();
+  }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright © 2023 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.exhort.providers;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Minimal Version Selection of the go modules, computed in-process from the go mod graph edges.
+ * Every module reachable from the main module is selected at the highest of its required versions,
+ * which is the build list reported by go list -m all.
+ */
+final class GoMinimalVersionSelection {
+
+  private GoMinimalVersionSelection() {
+    // constructor not required for a utility class
+  }
+
+  /**
+   * @param mainModule the main module, the root of the graph
+   * @param edges the direct dependencies (path@version) of each module of the graph
+   * @return the selected version of each module path, without the main module and the go and
+   *     toolchain requirements
+   */
+  static Map<String, String> selectVersions(String mainModule, Map<String, List<String>> edges) {
+    Map<String, String> selected = new HashMap<>();
+    Set<String> visited = new HashSet<>();
+    Deque<String> queue = new ArrayDeque<>();
+    visited.add(mainModule);
+    queue.add(mainModule);
+    while (!queue.isEmpty()) {
+      for (String dependency : edges.getOrDefault(queue.poll(), List.of())) {
+        if (!visited.add(dependency)) {
+          continue;
+        }
+        queue.add(dependency);
+        int separator = dependency.indexOf('@');
+        if (separator < 0) {
+          continue;
+        }
+        var path = dependency.substring(0, separator);
+        if (!path.equals("go") && !path.equals("toolchain")) {
+          selected.merge(
+              path,
+              dependency.substring(separator + 1),
+              (first, second) -> compare(first, second) >= 0 ? first : second);
+        }
+      }
+    }
+    return selected;
+  }
+
+  /**
+   * Compare two go module versions by semantic versioning precedence, pseudo-versions being
+   * pre-releases and build metadata (i.e. +incompatible) being ignored. Invalid versions are lower
+   * than valid ones.
+   *
+   * @return a negative integer, zero or a positive integer as the first version is lower, equal to
+   *     or higher than the second one
+   */
+  static int compare(String first, String second) {
+    var firstParts = parse(first);
+    var secondParts = parse(second);
+    if (firstParts == null || secondParts == null) {
+      return firstParts == null ? (secondParts == null ? first.compareTo(second) : -1) : 1;
+    }
+    for (int i = 0; i < 3; i++) {
+      int result = compareNumeric(firstParts[i], secondParts[i]);
+      if (result != 0) {
+        return result;
+      }
+    }
+    return comparePrerelease(firstParts[3], secondParts[3]);
+  }
+
+  /**
+   * @return the major, minor, patch and pre-release of a vX.Y.Z[-pre][+build] version
+   */
+  private static String[] parse(String version) {
+    if (!version.startsWith("v")) {
+      return null;
+    }
+    var core = version.substring(1);
+    int buildStart = core.indexOf('+');
+    if (buildStart >= 0) {
+      core = core.substring(0, buildStart);
+    }
+    var prerelease = "";
+    int prereleaseStart = core.indexOf('-');
+    if (prereleaseStart >= 0) {
+      prerelease = core.substring(prereleaseStart + 1);
+      core = core.substring(0, prereleaseStart);
+    }
+    var numbers = core.split("\\.", -1);
+    if (numbers.length != 3) {
+      return null;
+    }
+    for (String number : numbers) {
+      if (!isNumeric(number)) {
+        return null;
+      }
+    }
+    return new String[] {numbers[0], numbers[1], numbers[2], prerelease};
+  }
+
+  private static int comparePrerelease(String first, String second) {
+    if (first.equals(second)) {
+      return 0;
+    }
+    // a release is higher than its pre-releases
+    if (first.isEmpty() || second.isEmpty()) {
+      return first.isEmpty() ? 1 : -1;
+    }
+    var firstIdentifiers = first.split("\\.");
+    var secondIdentifiers = second.split("\\.");
+    for (int i = 0; i < Math.min(firstIdentifiers.length, secondIdentifiers.length); i++) {
+      var firstIdentifier = firstIdentifiers[i];
+      var secondIdentifier = secondIdentifiers[i];
+      boolean firstNumeric = isNumeric(firstIdentifier);
+      boolean secondNumeric = isNumeric(secondIdentifier);
+      int result;
+      if (firstNumeric && secondNumeric) {
+        result = compareNumeric(firstIdentifier, secondIdentifier);
+      } else if (firstNumeric || secondNumeric) {
+        // numeric identifiers are lower than alphanumeric ones
+        result = firstNumeric ? -1 : 1;
+      } else {
+        result = firstIdentifier.compareTo(secondIdentifier);
+      }
+      if (result != 0) {
+        return result;
+      }
+    }
+    return Integer.compare(firstIdentifiers.length, secondIdentifiers.length);
+  }
+
+  /** Compare non-negative integers of any length, without leading zeros. */
+  private static int compareNumeric(String first, String second) {
+    if (first.length() != second.length()) {
+      return Integer.compare(first.length(), second.length());
+    }
+    return first.compareTo(second);
+  }
+
+  private static boolean isNumeric(String value) {
+    if (value.isEmpty()) {
+      return false;
+    }
+    for (int i = 0; i < value.length(); i++) {
+      if (!Character.isDigit(value.charAt(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
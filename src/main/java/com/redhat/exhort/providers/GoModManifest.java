@@ -0,0 +1,113 @@
+/*
+ * Copyright © 2023 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.exhort.providers;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * The requirements of a go.mod file, read in a single pass over its lines. The require directives
+ * are tokenized whether they are single or grouped in blocks. The replace and exclude directives
+ * are skipped, as go mod graph applies them already.
+ */
+final class GoModManifest {
+
+  // exhortignore alone in a comment, or following the indirect comment
+  private static final Pattern IGNORE_COMMENT = Pattern.compile(".+//\\s*exhortignore");
+  private static final Pattern INDIRECT_IGNORE_COMMENT =
+      Pattern.compile(".+//\\sindirect (//)?\\s*exhortignore");
+
+  private final Map<String, String> requires = new LinkedHashMap<>();
+  private final List<String> ignored = new ArrayList<>();
+
+  private GoModManifest() {}
+
+  /**
+   * @param lines the lines of the go.mod file
+   * @return the requirements of the go.mod file
+   */
+  static GoModManifest parse(List<String> lines) {
+    var manifest = new GoModManifest();
+    String blockVerb = null;
+    for (String line : lines) {
+      int commentStart = line.indexOf("//");
+      var code = (commentStart >= 0 ? line.substring(0, commentStart) : line).trim();
+      if (code.isEmpty()) {
+        continue;
+      }
+      if (blockVerb != null) {
+        if (code.startsWith(")")) {
+          blockVerb = null;
+        } else {
+          manifest.accept(blockVerb, code, line);
+        }
+        continue;
+      }
+      int verbEnd = 0;
+      while (verbEnd < code.length()
+          && !Character.isWhitespace(code.charAt(verbEnd))
+          && code.charAt(verbEnd) != '(') {
+        verbEnd++;
+      }
+      var verb = code.substring(0, verbEnd);
+      var arguments = code.substring(verbEnd).trim();
+      if (arguments.startsWith("(")) {
+        blockVerb = arguments.startsWith("()") ? null : verb;
+      } else {
+        manifest.accept(verb, arguments, line);
+      }
+    }
+    return manifest;
+  }
+
+  private void accept(String verb, String arguments, String line) {
+    // module paths and versions may be quoted
+    var unquoted = arguments.replace("\"", "").replace("`", "");
+    var tokens = unquoted.split("\\s+");
+    switch (verb) {
+      case "require":
+        if (tokens.length >= 2) {
+          requires.put(tokens[0], tokens[1]);
+          if (line.contains("exhortignore")
+              && (IGNORE_COMMENT.matcher(line).matches()
+                  || INDIRECT_IGNORE_COMMENT.matcher(line).matches())) {
+            ignored.add(tokens[0]);
+          }
+        }
+        break;
+      default:
+        // module, go, toolchain, replace, exclude, retract and godebug directives are not
+        // requirements
+    }
+  }
+
+  /**
+   * @return the required version of each module path, in the go.mod order
+   */
+  Map<String, String> getRequires() {
+    return requires;
+  }
+
+  /**
+   * @return the paths of the required modules marked with exhortignore comments
+   */
+  List<String> getIgnored() {
+    return ignored;
+  }
+}
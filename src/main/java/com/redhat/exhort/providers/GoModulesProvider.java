@@ -20,6 +20,7 @@
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.github.packageurl.MalformedPackageURLException;
 import com.github.packageurl.PackageURL;
 import com.redhat.exhort.Api;
@@ -33,13 +34,14 @@
 import com.redhat.exhort.vcs.TagInfo;
 import com.redhat.exhort.vcs.VersionControlSystem;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.function.Function;
 import java.util.logging.Logger;
-import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 /**
@@ -52,6 +54,7 @@ public final class GoModulesProvider extends Provider {
   private static final String goHostArchitectureEnvName = "GOHOSTARCH";
   private static final String goHostOperationSystemEnvName = "GOHOSTOS";
   public static final String defaultMainVersion = "v0.0.0";
+  public static final String GO_WORK = "go.work";
   private final TreeMap goEnvironmentVariableForPurl;
   private final TreeMap goEnvironmentVariablesForRef;
 
@@ -69,9 +72,6 @@ public static void main(String[] args) {
     Path path = Path.of("/tmp/xieshen/go.mod");
     Provider provider = new GoModulesProvider();
     GoModulesProvider goProvider = (GoModulesProvider) provider;
-    //    boolean answer = goProvider.IgnoredLine("        github.com/davecgh/go-spew v1.1.1 //
-    // indirect
-    // //exhortignore");
     try {
       //      provider.provideStack(path);
       byte[] bytes = Files.readAllBytes(path);
@@ -90,12 +90,115 @@ public GoModulesProvider() {
 
   @Override
   public Content provideStack(final Path manifestPath) throws IOException {
+    if (isWorkspace(manifestPath)) {
+      throw new IllegalArgumentException(
+          "Stack analysis of a go.work workspace is provided per module, use the batch stack"
+              + " analysis");
+    }
     // check for custom npm executable
     Sbom sbom = getDependenciesSbom(manifestPath, true);
     return new Content(
         sbom.getAsJsonString().getBytes(StandardCharsets.UTF_8), Api.CYCLONEDX_MEDIA_TYPE);
   }
 
+  @Override
+  public Content provideBatchStack(final Path manifestPath) throws IOException {
+    if (!isWorkspace(manifestPath)) {
+      return super.provideBatchStack(manifestPath);
+    }
+    var modules = getWorkspaceModules(manifestPath);
+    // the go env (probed when constructed) and git probes are shared by the workspace modules
+    calculateMainModuleVersion(manifestPath.toAbsolutePath().getParent());
+    var standaloneEnvironment = getStandaloneModuleEnvironment();
+    // analyze the modules in parallel, in the order used by the go.work file
+    List<JsonNode> moduleSboms =
+        modules.parallelStream()
+            .map(
+                module -> {
+                  try {
+                    var goModulesResult = buildGoModulesDependencies(module, standaloneEnvironment);
+                    return objectMapper.readTree(
+                        buildDependenciesSbom(module, goModulesResult, true).getAsJsonString());
+                  } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                  }
+                })
+            .collect(Collectors.toList());
+    // the SBOMs are keyed by the modules' package urls, which must tell the modules apart
+    Map<String, JsonNode> sboms = new LinkedHashMap<>();
+    Map<String, Path> modulesByPurl = new HashMap<>();
+    for (int i = 0; i < modules.size(); i++) {
+      var purl = moduleSboms.get(i).at("/metadata/component/purl").asText();
+      var sameModule = modulesByPurl.putIfAbsent(purl, modules.get(i).getParent());
+      if (sameModule != null) {
+        throw new IllegalStateException(
+            String.format(
+                "workspace modules %s and %s have the same package url %s",
+                sameModule, modules.get(i).getParent(), purl));
+      }
+      sboms.put(purl, moduleSboms.get(i));
+    }
+    return new Content(objectMapper.writeValueAsBytes(sboms), Api.CYCLONEDX_MEDIA_TYPE);
+  }
+
+  private static boolean isWorkspace(Path manifestPath) {
+    return manifestPath.getFileName().toString().equals(GO_WORK);
+  }
+
+  /**
+   * Get the go.mod files of the modules used by a go.work workspace, as listed by its use
+   * directives, single or grouped in blocks.
+   *
+   * @param goWorkPath the go.work file
+   * @return the modules' go.mod files, in the order of the use directives
+   * @throws IOException when failed to read the go.work file
+   */
+  static List<Path> getWorkspaceModules(Path goWorkPath) throws IOException {
+    var workspaceDir = goWorkPath.toAbsolutePath().getParent();
+    List<String> moduleDirs = new ArrayList<>();
+    boolean useBlock = false;
+    for (String line : Files.readAllLines(goWorkPath)) {
+      int commentStart = line.indexOf("//");
+      var directive = (commentStart >= 0 ? line.substring(0, commentStart) : line).trim();
+      if (useBlock) {
+        if (directive.startsWith(")")) {
+          useBlock = false;
+        } else if (!directive.isEmpty()) {
+          moduleDirs.add(directive);
+        }
+      } else if (directive.matches("use\\s*\\(.*")) {
+        var argument = directive.substring(directive.indexOf('(') + 1).trim();
+        useBlock = !argument.startsWith(")");
+      } else if (directive.matches("use\\s+.+")) {
+        moduleDirs.add(directive.substring("use".length()).trim());
+      }
+    }
+    List<Path> modules = new ArrayList<>();
+    for (String moduleDir : moduleDirs) {
+      // module directories may be quoted
+      var unquoted = moduleDir.replaceAll("^[\"`]|[\"`]$", "");
+      var goModPath = workspaceDir.resolve(unquoted).normalize().resolve("go.mod");
+      if (!Files.isRegularFile(goModPath)) {
+        throw new IllegalStateException(
+            String.format("go.mod file of workspace module %s not found", moduleDir));
+      }
+      modules.add(goModPath);
+    }
+    return modules;
+  }
+
+  /**
+   * @return the environment of the go commands analyzing a workspace module as a standalone one,
+   *     the other modules of the workspace being ignored
+   */
+  private static String[] getStandaloneModuleEnvironment() {
+    Map<String, String> environment = new HashMap<>(System.getenv());
+    environment.put("GOWORK", "off");
+    return environment.entrySet().stream()
+        .map(entry -> entry.getKey() + "=" + entry.getValue())
+        .toArray(String[]::new);
+  }
+
   @Override
   public Content provideComponent(byte[] manifestContent) throws IOException {
     // check for custom npm executable
@@ -132,6 +235,16 @@ private PackageURL getRoot(String DependenciesGolang) {
     return null;
   }
 
+  /**
+   * @return a function converting the module@version strings of an analysis to purls, each unique
+   *     module being parsed and validated once
+   */
+  private Function<String, PackageURL> getPurlsCache() {
+    Map<String, PackageURL> purls = new HashMap<>();
+    return module ->
+        purls.computeIfAbsent(module, key -> toPurl(key, "@", this.goEnvironmentVariableForPurl));
+  }
+
   private PackageURL toPurl(String dependency, String delimiter, TreeMap qualifiers) {
     try {
       int lastSlashIndex = dependency.lastIndexOf("/");
@@ -167,117 +280,54 @@ private PackageURL toPurl(String dependency, String delimiter, TreeMap qualifier
   }
 
   Sbom getDependenciesSbom(Path manifestPath, boolean buildTree) throws IOException {
-    var goModulesResult = buildGoModulesDependencies(manifestPath);
+    var goModulesResult = buildGoModulesDependencies(manifestPath, null);
     calculateMainModuleVersion(manifestPath.getParent());
+    return buildDependenciesSbom(manifestPath, goModulesResult, buildTree);
+  }
+
+  private Sbom buildDependenciesSbom(Path manifestPath, String goModulesResult, boolean buildTree)
+      throws IOException {
     Sbom sbom;
-    List<PackageURL> ignoredDeps = getIgnoredDeps(manifestPath);
+    // the go.mod file is tokenized once, for both the ignored dependencies and the versions check
+    var goModManifest = GoModManifest.parse(Files.readAllLines(manifestPath));
+    List<PackageURL> ignoredDeps = getIgnoredDeps(goModManifest);
+    String rootPackage = getParentVertex(goModulesResult);
+    Map<String, List<String>> edges = getModulesDirectDependencies(goModulesResult);
     boolean matchManifestVersions = getBooleanValueEnvironment("MATCH_MANIFEST_VERSIONS", "false");
     if (matchManifestVersions) {
-      //      String rootName = getParentVertex()
-      String[] goModGraphLines = goModulesResult.split(System.lineSeparator());
-      performManifestVersionsCheck(goModGraphLines, manifestPath);
+      performManifestVersionsCheck(edges.getOrDefault(rootPackage, List.of()), goModManifest);
     }
     if (!buildTree) {
-      sbom = buildSbomFromList(goModulesResult, ignoredDeps);
+      sbom = buildSbomFromList(rootPackage, edges, ignoredDeps);
     } else {
-      sbom = buildSbomFromGraph(goModulesResult, ignoredDeps, manifestPath);
+      sbom = buildSbomFromGraph(rootPackage, edges, ignoredDeps);
     }
     //    List<String> ignoredDeps = getIgnoredDeps(manifestPath);
     //    sbom.filterIgnoredDeps(ignoredDeps);
     return sbom;
   }
 
-  private void performManifestVersionsCheck(String[] goModGraphLines, Path manifestPath) {
-    try {
-      String goModLines = Files.readString(manifestPath);
-      String[] lines = goModLines.split(System.lineSeparator());
-      String root = getParentVertex(goModGraphLines[0]);
-      List<String> comparisonLines =
-          Arrays.stream(goModGraphLines)
-              .filter((line) -> line.startsWith(root))
-              .map((line) -> getChildVertex(line))
-              .collect(Collectors.toList());
-      List<String> goModDependencies = collectAllDepsFromManifest(lines, goModLines);
-      comparisonLines.stream()
-          .forEach(
-              (dependency) -> {
-                String[] parts = dependency.split("@");
-                String version = parts[1];
-                String depName = parts[0];
-                goModDependencies.stream()
-                    .forEach(
-                        (dep) -> {
-                          String[] artifactParts = dep.trim().split(" ");
-                          String currentDepName = artifactParts[0];
-                          String currentVersion = artifactParts[1];
-                          if (currentDepName.trim().equals(depName.trim())) {
-                            if (!currentVersion.trim().equals(version.trim())) {
-                              throw new RuntimeException(
-                                  String.format(
-                                      "Can't continue with analysis - versions mismatch for"
-                                          + " dependency name=%s, manifest version=%s, installed"
-                                          + " Version=%s, if you want to allow version mismatch for"
-                                          + " analysis between installed and requested packages,"
-                                          + " set environment variable/setting -"
-                                          + " MATCH_MANIFEST_VERSIONS=false",
-                                      depName, currentVersion, version));
-                            }
-                          }
-                        });
-              });
-    } catch (IOException e) {
-      throw new RuntimeException(
-          "Failed to open go.mod file for manifest versions check validation!");
-    }
-  }
-
-  private List<String> collectAllDepsFromManifest(String[] lines, String goModLines) {
-    List<String> result = new ArrayList<>();
-    // collect all deps that starts with require keyword
-    result =
-        Arrays.stream(lines)
-            .filter((line) -> line.trim().startsWith("require") && !line.contains("("))
-            .map((dep) -> dep.substring("require".length()).trim())
-            .collect(Collectors.toList());
-
-    // collect all deps that are inside `require` blocks
-
-    String currentSegmentOfGoMod = goModLines;
-    Map<String, Integer> requirePosObject = decideRequireBlockIndex(currentSegmentOfGoMod);
-    while (requirePosObject.get("index") > -1) {
-      String depsInsideRequirementsBlock =
-          currentSegmentOfGoMod
-              .substring(requirePosObject.get("index") + requirePosObject.get("length"))
-              .trim();
-      int endOfBlockIndex = depsInsideRequirementsBlock.indexOf(")");
-      int currentIndex = 0;
-      while (currentIndex < endOfBlockIndex) {
-        int endOfLinePosition =
-            depsInsideRequirementsBlock.indexOf(System.lineSeparator(), currentIndex);
-        String dependency =
-            depsInsideRequirementsBlock.substring(currentIndex, endOfLinePosition).trim();
-        result.add(dependency);
-        currentIndex = endOfLinePosition + 1;
-      }
-      currentSegmentOfGoMod = currentSegmentOfGoMod.substring(endOfBlockIndex + 1).trim();
-      requirePosObject = decideRequireBlockIndex(currentSegmentOfGoMod);
-    }
-
-    return result;
-  }
-
-  private Map<String, Integer> decideRequireBlockIndex(String currentSegmentOfGoMod) {
-    int index = currentSegmentOfGoMod.indexOf("require(");
-    int length = "require(".length();
-    if (index == -1) {
-      index = currentSegmentOfGoMod.indexOf("require (");
-      length = "require (".length();
-      if (index == -1) {
-        index = currentSegmentOfGoMod.indexOf("require  (");
-        length = "require  (".length();
-      }
-    }
-    return Map.of("index", index, "length", length);
+  private void performManifestVersionsCheck(
+      List<String> rootDependencies, GoModManifest goModManifest) {
+    Map<String, String> goModDependencies = goModManifest.getRequires();
+    rootDependencies.forEach(
+        (dependency) -> {
+          String[] parts = dependency.split("@");
+          String version = parts[1];
+          String depName = parts[0];
+          String currentVersion = goModDependencies.get(depName);
+          if (currentVersion != null && !currentVersion.equals(version)) {
+            throw new RuntimeException(
+                String.format(
+                    "Can't continue with analysis - versions mismatch for"
+                        + " dependency name=%s, manifest version=%s, installed"
+                        + " Version=%s, if you want to allow version mismatch for"
+                        + " analysis between installed and requested packages,"
+                        + " set environment variable/setting -"
+                        + " MATCH_MANIFEST_VERSIONS=false",
+                    depName, currentVersion, version));
+          }
+        });
   }
 
   public void determineMainModuleVersion(Path directory) {
@@ -304,57 +354,33 @@ private void calculateMainModuleVersion(Path directory) {
     }
   }
 
+  /**
+   * @param edges each entry contains a key of the module, and the list represents the module direct
+   *     dependencies, so pairing of the key with each of the dependencies in a list is basically an
+   *     edge in the graph
+   */
   private Sbom buildSbomFromGraph(
-      String goModulesResult, List<PackageURL> ignoredDeps, Path manifestPath) throws IOException {
-    //    Each entry contains a key of the module, and the list represents the module direct
-    // dependencies , so
-    // pairing of the key with each of the dependencies in a list is basically an edge in the graph.
-    Map<String, List> edges = new HashMap<>();
-    // iterate over go mod graph line by line and create map , with each entry to contain module as
-    // a key , and
-    // value of list of that module' dependencies.
-    String[] lines = goModulesResult.split(System.lineSeparator());
-    List<String> linesList = Arrays.asList(lines);
-    //    System.out.print("Start time: " + LocalDateTime.now() + System.lineSeparator());
-
-    Integer startingIndex = 0;
-    Integer EndingIndex = lines.length - 1;
-    String[] targetLines = Arrays.copyOfRange(lines, 0, lines.length - 1);
-    for (String line : linesList) {
-
-      if (!edges.containsKey(getParentVertex(line))) {
-        // Collect all direct dependencies of the current module into a list.
-        List<String> deps = collectAllDirectDependencies(targetLines, line);
-        edges.put(getParentVertex(line), deps);
-        startingIndex += deps.size();
-        // Because all the deps of the current module were collected, not need to search for next
-        // modules on
-        // these lines, so truncate these lines from search array to make the search more rapid and
-        // efficient.
-        if (startingIndex < EndingIndex) {
-          targetLines = Arrays.copyOfRange(lines, startingIndex, EndingIndex);
-        }
-      }
-    }
+      String rootPackage, Map<String, List<String>> edges, List<PackageURL> ignoredDeps)
+      throws IOException {
     // DEBUG
     //    System.setProperty("EXHORT_GO_MVS_LOGIC_ENABLED","true");
     boolean goMvsLogicEnabled = getBooleanValueEnvironment("EXHORT_GO_MVS_LOGIC_ENABLED", "false");
+    //    Build Sbom
     if (goMvsLogicEnabled) {
-      edges = getFinalPackagesVersionsForModule(edges, manifestPath);
+      edges = getFinalPackagesVersionsForModule(edges, rootPackage);
     }
-    //    Build Sbom
-    String rootPackage = getParentVertex(lines[0]);
 
-    PackageURL root = toPurl(rootPackage, "@", this.goEnvironmentVariableForPurl);
+    // the same modules are found on many edges
+    Function<String, PackageURL> purls = getPurlsCache();
+    PackageURL root = purls.apply(rootPackage);
     Sbom sbom = SbomFactory.newInstance(Sbom.BelongingCondition.PURL, "sensitive");
     sbom.addRoot(root);
     edges.forEach(
         (key, value) -> {
-          PackageURL source = toPurl(key, "@", this.goEnvironmentVariableForPurl);
+          PackageURL source = purls.apply(key);
           value.forEach(
               dep -> {
-                PackageURL targetPurl =
-                    toPurl((String) dep, "@", this.goEnvironmentVariableForPurl);
+                PackageURL targetPurl = purls.apply(dep);
                 sbom.addDependency(source, targetPurl);
               });
         });
@@ -374,18 +400,12 @@ private Sbom buildSbomFromGraph(
     return sbom;
   }
 
-  private Map<String, List> getFinalPackagesVersionsForModule(
-      Map<String, List> edges, Path manifestPath) {
-    Operations.runProcessGetOutput(manifestPath.getParent(), "go", "mod", "download");
-    String finalVersionsForAllModules =
-        Operations.runProcessGetOutput(manifestPath.getParent(), "go", "list", "-m", "all");
+  private Map<String, List<String>> getFinalPackagesVersionsForModule(
+      Map<String, List<String>> edges, String mainModule) {
+    // the build list of go list -m all, selected from the graph without invoking go again
     Map<String, String> finalModulesVersions =
-        Arrays.stream(finalVersionsForAllModules.split(System.lineSeparator()))
-            .filter(string -> string.trim().split(" ").length == 2)
-            .collect(
-                Collectors.toMap(
-                    t -> t.split(" ")[0], t -> t.split(" ")[1], (first, second) -> second));
-    Map<String, List> listWithModifiedVersions = new HashMap<>();
+        GoMinimalVersionSelection.selectVersions(mainModule, edges);
+    Map<String, List<String>> listWithModifiedVersions = new HashMap<>();
     edges.entrySet().stream()
         .filter(string -> string.getKey().trim().split("@").length == 2)
         .collect(Collectors.toList())
@@ -393,7 +413,7 @@ private Map<String, List> getFinalPackagesVersionsForModule(
             (entry) -> {
               String packageWithSelectedVersion =
                   getPackageWithFinalVersion(finalModulesVersions, entry.getKey());
-              List packagesWithFinalVersions =
+              List<String> packagesWithFinalVersions =
                   getListOfPackagesWithFinlVersions(finalModulesVersions, entry);
               listWithModifiedVersions.put(packageWithSelectedVersion, packagesWithFinalVersions);
             });
@@ -401,14 +421,13 @@ private Map<String, List> getFinalPackagesVersionsForModule(
     return listWithModifiedVersions;
   }
 
-  private List getListOfPackagesWithFinlVersions(
-      Map<String, String> finalModulesVersions, Map.Entry<String, List> entry) {
-    return (List)
-        entry.getValue().stream()
-            .map(
-                (packageWithVersion) ->
-                    getPackageWithFinalVersion(finalModulesVersions, (String) packageWithVersion))
-            .collect(Collectors.toList());
+  private List<String> getListOfPackagesWithFinlVersions(
+      Map<String, String> finalModulesVersions, Map.Entry<String, List<String>> entry) {
+    return entry.getValue().stream()
+        .map(
+            (packageWithVersion) ->
+                getPackageWithFinalVersion(finalModulesVersions, packageWithVersion))
+        .collect(Collectors.toList());
   }
 
   public static String getPackageWithFinalVersion(
@@ -429,11 +448,28 @@ private boolean dependencyNotToBeIgnored(List<PackageURL> ignoredDeps, PackageUR
             dependencyPurl -> dependencyPurl.getCoordinates().equals(checkedPurl.getCoordinates()));
   }
 
-  private static List<String> collectAllDirectDependencies(String[] targetLines, String edge) {
-    return Arrays.stream(targetLines)
-        .filter(line2 -> getParentVertex(line2).equals(getParentVertex(edge)))
-        .map(GoModulesProvider::getChildVertex)
-        .collect(Collectors.toList());
+  /**
+   * Group the edges of the go mod graph output by their parent module, in a single pass over its
+   * lines, splitting each line once.
+   *
+   * @param goModGraphOutput the go mod graph output, a "parent child" edge per line
+   * @return the direct dependencies of each module, in the order listed by the graph
+   */
+  static Map<String, List<String>> getModulesDirectDependencies(String goModGraphOutput) {
+    Map<String, List<String>> edges = new HashMap<>();
+    goModGraphOutput
+        .lines()
+        .forEach(
+            line -> {
+              var edge = line.trim();
+              int separator = edge.indexOf(' ');
+              if (separator > 0) {
+                edges
+                    .computeIfAbsent(edge.substring(0, separator), parent -> new ArrayList<>())
+                    .add(edge.substring(separator + 1).trim());
+              }
+            });
+    return edges;
   }
 
   private static TreeMap getQualifiers(boolean includeOsAndArch) {
@@ -459,7 +495,7 @@ private static String getEnvironmentVariable(String goEnvironmentVariables, Stri
     return envValue.replaceAll("\"", "");
   }
 
-  private String buildGoModulesDependencies(Path manifestPath)
+  private String buildGoModulesDependencies(Path manifestPath, String[] envList)
       throws JsonMappingException, JsonProcessingException {
     var go = Operations.getCustomPathOrElse("go");
     String[] goModulesDeps;
@@ -467,7 +503,7 @@ private String buildGoModulesDependencies(Path manifestPath)
 
     // execute the clean command
     String goModulesOutput =
-        Operations.runProcessGetOutput(manifestPath.getParent(), goModulesDeps);
+        Operations.runProcessGetOutput(manifestPath.getParent(), goModulesDeps, envList);
     if (debugLoggingIsNeeded()) {
       log.info(
           String.format(
@@ -477,12 +513,11 @@ private String buildGoModulesDependencies(Path manifestPath)
     return goModulesOutput;
   }
 
-  private Sbom buildSbomFromList(String golangDeps, List<PackageURL> ignoredDeps) {
-    String[] allModulesFlat = golangDeps.split(System.lineSeparator());
-    String parentVertex = getParentVertex(allModulesFlat[0]);
+  private Sbom buildSbomFromList(
+      String parentVertex, Map<String, List<String>> edges, List<PackageURL> ignoredDeps) {
     PackageURL root = toPurl(parentVertex, "@", this.goEnvironmentVariableForPurl);
     // Get only direct dependencies of root package/module, and that's it.
-    List<String> deps = collectAllDirectDependencies(allModulesFlat, parentVertex);
+    List<String> deps = edges.getOrDefault(parentVertex, List.of());
 
     Sbom sbom = SbomFactory.newInstance(Sbom.BelongingCondition.PURL, "sensitive");
     sbom.addRoot(root);
@@ -505,67 +540,17 @@ private Sbom buildSbomFromList(String golangDeps, List<PackageURL> ignoredDeps)
     return sbom;
   }
 
-  private List<PackageURL> getIgnoredDeps(Path manifestPath) throws IOException {
-
-    List<String> goModlines = Files.readAllLines(manifestPath);
-    List<PackageURL> ignored =
-        goModlines.stream()
-            .filter(this::IgnoredLine)
-            .map(this::extractPackageName)
-            .map(dep -> toPurl(dep, "\\s{1,3}", this.goEnvironmentVariableForPurl))
-            .collect(Collectors.toList());
-    return ignored;
-  }
-
-  private String extractPackageName(String line) {
-    String trimmedRow = line.trim();
-    int firstRemarkNotationOccurrence = trimmedRow.indexOf("//");
-    return trimmedRow.substring(0, firstRemarkNotationOccurrence).trim();
-  }
-
-  public boolean IgnoredLine(String line) {
-    boolean result = false;
-    if (line.contains("exhortignore")) {
-      // if exhortignore is alone in a comment or is in a comment together with indirect or as a
-      // comment inside a
-      // comment ( e.g // indirect  //exhort)
-      // then this line is to be checked if it's a comment after a package name.
-      if (Pattern.matches(".+//\\s*exhortignore", line)
-          || Pattern.matches(".+//\\sindirect (//)?\\s*exhortignore", line)) {
-        String trimmedRow = line.trim();
-        // filter out lines where exhortignore has no meaning
-        if (!trimmedRow.startsWith("module ")
-            && !trimmedRow.startsWith("go ")
-            && !trimmedRow.startsWith("require (")
-            && !trimmedRow.startsWith("require(")
-            && !trimmedRow.startsWith("exclude ")
-            && !trimmedRow.startsWith("replace ")
-            && !trimmedRow.startsWith("retract ")
-            && !trimmedRow.startsWith("use ")
-            && !trimmedRow.contains(
-                "=>")) { // only for lines that after trimming starts with "require " or starting
-          // with
-          // package name followd by one space, and then a semver version.
-          if (trimmedRow.startsWith("require ")
-              || Pattern.matches(
-                  "^[a-z.0-9/-]+\\s{1,2}[vV][0-9]\\.[0-9](\\.[0-9]){0,2}.*", trimmedRow)) {
-            result = true;
-          }
-        }
-      }
-    }
-    return result;
+  private List<PackageURL> getIgnoredDeps(GoModManifest goModManifest) {
+    Map<String, String> requires = goModManifest.getRequires();
+    return goModManifest.getIgnored().stream()
+        .map(dep -> toPurl(dep + "@" + requires.get(dep), "@", this.goEnvironmentVariableForPurl))
+        .collect(Collectors.toList());
   }
 
   private static String getParentVertex(String edge) {
-    String[] edgeParts = edge.trim().split(" ");
-    return edgeParts[0];
-  }
-
-  private static String getChildVertex(String edge) {
-
-    String[] edgeParts = edge.trim().split(" ");
-    return edgeParts[1];
+    var trimmed = edge.trim();
+    int separator = trimmed.indexOf(' ');
+    return separator < 0 ? trimmed : trimmed.substring(0, separator);
   }
 
   private static String getDefaultMainModuleVersion() {
@@ -16,7 +16,11 @@
 package com.redhat.exhort.providers;
 
 import static com.redhat.exhort.impl.ExhortApi.debugLoggingIsNeeded;
+import static com.redhat.exhort.impl.ExhortApi.getBooleanValueEnvironment;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.github.packageurl.MalformedPackageURLException;
 import com.github.packageurl.PackageURL;
 import com.redhat.exhort.Api;
@@ -27,17 +31,15 @@
 import com.redhat.exhort.tools.Ecosystem.Type;
 import com.redhat.exhort.tools.Operations;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
-import java.util.function.Consumer;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
-import org.tomlj.Toml;
-import org.tomlj.TomlParseResult;
-import org.tomlj.TomlTable;
+import java.util.stream.Stream;
 
 /**
  * Concrete implementation of the {@link Provider} used for converting dependency trees for Gradle
@@ -49,6 +51,11 @@ public final class GradleProvider extends BaseJavaProvider {
   public static final String[] COMPONENT_ANALYSIS_CONFIGURATIONS = {
     "api", "implementation", "compileOnlyApi", "compileOnly", "runtimeOnly"
   };
+  private static final String STACK_ANALYSIS_CONFIGURATION = "runtimeClasspath";
+  private static final String INIT_SCRIPT = "exhort-dependencies.init.gradle";
+
+  private static final String[] BUILD_FILES = {"build.gradle", "build.gradle.kts"};
+
   private Logger log = LoggersFactory.getLogger(this.getClass().getName());
 
   public GradleProvider() {
@@ -57,6 +64,25 @@ public GradleProvider() {
 
   @Override
   public Content provideStack(final Path manifestPath) throws IOException {
+    // in multi-project mode, all the projects of the build are analyzed as a whole in one gradle
+    // run
+    if (getBooleanValueEnvironment("EXHORT_GRADLE_MULTI_PROJECT_ENABLED", "false")) {
+      var exports = exportAllProjectsDependencies(manifestPath, STACK_ANALYSIS_CONFIGURATION);
+      // a single project build is analyzed out of its export too, no need to run gradle again
+      var sbom =
+          exports.size() > 1
+              ? buildMultiProjectSbom(exports)
+              : buildStackSbomFromExport(exports.get(0))
+                  .filterIgnoredDeps(getProjectIgnoredDeps(exports.get(0)));
+      return new Content(sbom.getAsJsonString().getBytes(), Api.CYCLONEDX_MEDIA_TYPE);
+    }
+    if (isJsonExportMode()) {
+      var export = exportDependencies(manifestPath, STACK_ANALYSIS_CONFIGURATION);
+      var sbom = buildStackSbomFromExport(export);
+      var ignored = getIgnoredDeps(manifestPath);
+      return new Content(
+          sbom.filterIgnoredDeps(ignored).getAsJsonString().getBytes(), Api.CYCLONEDX_MEDIA_TYPE);
+    }
     Path tempFile = getDependencies(manifestPath);
     if (debugLoggingIsNeeded()) {
       String stackAnalysisDependencyTree = Files.readString(tempFile);
@@ -74,6 +100,48 @@ public Content provideStack(final Path manifestPath) throws IOException {
         sbom.filterIgnoredDeps(ignored).getAsJsonString().getBytes(), Api.CYCLONEDX_MEDIA_TYPE);
   }
 
+  @Override
+  public Content provideBatchStack(final Path manifestPath) throws IOException {
+    var exports = exportAllProjectsDependencies(manifestPath, STACK_ANALYSIS_CONFIGURATION);
+    // the SBOMs are keyed by the projects' coordinates, which must tell the projects apart
+    Map<String, List<String>> pathsByPurl =
+        exports.stream()
+            .collect(
+                Collectors.groupingBy(
+                    export -> toPurl(export.group, export.name, export.version).canonicalize(),
+                    LinkedHashMap::new,
+                    Collectors.mapping(export -> export.path, Collectors.toList())));
+    for (Map.Entry<String, List<String>> entry : pathsByPurl.entrySet()) {
+      if (entry.getValue().size() > 1) {
+        throw new IllegalStateException(
+            String.format(
+                "projects %s have the same coordinates %s, set a distinct group, name or version"
+                    + " for each one",
+                String.join(", ", entry.getValue()), entry.getKey()));
+      }
+    }
+    // build the projects' SBOMs in parallel, keeping the projects order
+    Map<String, JsonNode> sboms =
+        exports.parallelStream()
+            .collect(
+                Collectors.toMap(
+                    export -> toPurl(export.group, export.name, export.version).canonicalize(),
+                    export -> {
+                      try {
+                        var sbom =
+                            buildStackSbomFromExport(export)
+                                .filterIgnoredDeps(getProjectIgnoredDeps(export));
+                        return objectMapper.readTree(sbom.getAsJsonString());
+                      } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                      }
+                    },
+                    // the keys are distinct, as checked above
+                    (first, second) -> first,
+                    LinkedHashMap::new));
+    return new Content(objectMapper.writeValueAsBytes(sboms), Api.CYCLONEDX_MEDIA_TYPE);
+  }
+
   private List<String> getIgnoredDeps(Path manifestPath) throws IOException {
     List<String> buildGradleLines = Files.readAllLines(manifestPath);
     List<String> ignored = new ArrayList<>();
@@ -84,17 +152,23 @@ private List<String> getIgnoredDeps(Path manifestPath) throws IOException {
             .map(this::extractPackageName)
             .collect(Collectors.toList());
 
-    // Process each ignored dependency
+    // Process each ignored dependency, the version catalog is loaded once, when first needed
+    GradleVersionCatalog versionCatalog = null;
     for (String dependency : ignoredLines) {
-      String ignoredDepInfo;
       if (depHasLibsNotation(dependency)) {
-        ignoredDepInfo = getDepFromNotation(dependency, manifestPath);
+        if (versionCatalog == null) {
+          var tomlPath = getLibsVersionsTomlPath(manifestPath);
+          if (tomlPath == null) {
+            continue;
+          }
+          versionCatalog = GradleVersionCatalog.load(tomlPath);
+        }
+        ignored.addAll(getDepsFromNotation(dependency, versionCatalog));
       } else {
-        ignoredDepInfo = getDepInfo(dependency);
-      }
-
-      if (ignoredDepInfo != null) {
-        ignored.add(ignoredDepInfo);
+        String ignoredDepInfo = getDepInfo(dependency);
+        if (ignoredDepInfo != null) {
+          ignored.add(ignoredDepInfo);
+        }
       }
     }
 
@@ -153,29 +227,32 @@ private String getDepInfo(String dependencyLine) {
     return null;
   }
 
-  private String getDepFromNotation(String dependency, Path manifestPath) throws IOException {
+  private List<String> getDepsFromNotation(String dependency, GradleVersionCatalog versionCatalog) {
     // Extract everything after "libs."
-    String alias = dependency.substring(dependency.indexOf("libs.") + "libs.".length()).trim();
-    alias = alias.replace(".", "-").replace(")", "");
-
-    // Read and parse the TOML file
-    TomlParseResult toml = Toml.parse(getLibsVersionsTomlPath(manifestPath));
-    TomlTable librariesTable = toml.getTable("libraries");
-    TomlTable dependencyTable = librariesTable.getTable(alias);
-    if (dependencyTable != null) {
-      String groupId = dependencyTable.getString("module").split(":")[0];
-      String artifactId = dependencyTable.getString("module").split(":")[1];
-      String version =
-          toml.getTable("versions").getString(dependencyTable.getString("version.ref"));
-      PackageURL ignoredPackageUrl = toPurl(groupId, artifactId, version);
-      return ignoredPackageUrl.getCoordinates();
-    }
-
-    return null;
+    String accessor = dependency.substring(dependency.indexOf("libs.") + "libs.".length()).trim();
+    accessor = accessor.replace(")", "").trim();
+    return versionCatalog.getDependencies(accessor).stream()
+        .filter(coordinates -> coordinates[0] != null && coordinates[1] != null)
+        .map(coordinates -> toPurl(coordinates[0], coordinates[1], coordinates[2]).getCoordinates())
+        .collect(Collectors.toList());
   }
 
+  /**
+   * Look for the version catalog in the project directory, and up to the root project directory
+   * (holding the settings file) of a subproject.
+   */
   private Path getLibsVersionsTomlPath(Path manifestPath) {
-    return manifestPath.getParent().resolve("gradle/libs.versions.toml");
+    for (var dir = manifestPath.toAbsolutePath().getParent(); dir != null; dir = dir.getParent()) {
+      var tomlPath = dir.resolve("gradle/libs.versions.toml");
+      if (Files.isRegularFile(tomlPath)) {
+        return tomlPath;
+      }
+      if (Files.exists(dir.resolve("settings.gradle"))
+          || Files.exists(dir.resolve("settings.gradle.kts"))) {
+        break;
+      }
+    }
+    return null;
   }
 
   public PackageURL toPurl(String groupId, String artifactId, String version) {
@@ -212,15 +289,446 @@ private String extractPackageName(String line) {
     return packageName;
   }
 
-  private Path getDependencies(Path manifestPath) throws IOException {
+  private static boolean isJsonExportMode() {
+    return getBooleanValueEnvironment("EXHORT_GRADLE_JSON_EXPORT", "false");
+  }
+
+  /**
+   * Export the project coordinates and the dependencies of the given configurations as json, in a
+   * single gradle invocation, using an injected init script. The task is not qualified by the root
+   * project's path, so the project of the manifest directory is exported, i.e. a subproject.
+   *
+   * @param manifestPath the build.gradle or build.gradle.kts file
+   * @param configurations the configurations to export, resolvable configurations are exported as
+   *     resolved graphs, others as their declared dependencies
+   * @return the parsed export
+   */
+  private DependenciesExport exportDependencies(Path manifestPath, String... configurations)
+      throws IOException {
+    var exportFile = Files.createTempFile("exhort_dependencies_", ".json");
+    try {
+      runDependenciesExport(
+          manifestPath,
+          "exhortDependencies",
+          "-Dexhort.output=" + exportFile,
+          exportFile,
+          configurations);
+      if (debugLoggingIsNeeded()) {
+        log.info(
+            String.format(
+                "Package Manager Gradle Dependencies Export Output: %s %s",
+                System.lineSeparator(), Files.readString(exportFile)));
+      }
+      return parseDependenciesExport(exportFile);
+    } finally {
+      Files.deleteIfExists(exportFile);
+    }
+  }
+
+  /**
+   * Export the coordinates and the dependencies of the given configurations of all the projects of
+   * a multi-project build, in a single gradle invocation, and parse the exports in parallel.
+   *
+   * @param manifestPath the root project's build.gradle or build.gradle.kts file
+   * @param configurations the configurations to export
+   * @return the parsed exports, the root project first followed by its subprojects
+   */
+  private List<DependenciesExport> exportAllProjectsDependencies(
+      Path manifestPath, String... configurations) throws IOException {
+    var exportDir = Files.createTempDirectory("exhort_dependencies_");
+    try {
+      runDependenciesExport(
+          manifestPath,
+          "exhortDependencies",
+          "-Dexhort.outputDir=" + exportDir,
+          exportDir,
+          configurations);
+      return listExportFiles(exportDir).parallelStream()
+          .map(
+              exportFile -> {
+                try {
+                  return parseDependenciesExport(exportFile);
+                } catch (IOException e) {
+                  throw new UncheckedIOException(e);
+                }
+              })
+          .sorted(
+              Comparator.comparing((DependenciesExport export) -> !":".equals(export.path))
+                  .thenComparing(export -> export.path))
+          .collect(Collectors.toList());
+    } finally {
+      for (Path exportFile : listExportFiles(exportDir)) {
+        Files.deleteIfExists(exportFile);
+      }
+      Files.deleteIfExists(exportDir);
+    }
+  }
+
+  private static List<Path> listExportFiles(Path exportDir) throws IOException {
+    try (Stream<Path> files = Files.list(exportDir)) {
+      return files.collect(Collectors.toList());
+    }
+  }
+
+  private void runDependenciesExport(
+      Path manifestPath, String task, String outputArg, Path output, String[] configurations)
+      throws IOException {
+    var initScript = Files.createTempFile("exhort_init_", ".gradle");
+    try {
+      try (var is = GradleProvider.class.getResourceAsStream(INIT_SCRIPT)) {
+        Files.write(initScript, is.readAllBytes());
+      }
+      String[] cmdList =
+          buildGradleCommand(
+              manifestPath,
+              false,
+              "-q",
+              "--init-script",
+              initScript.toString(),
+              task,
+              outputArg,
+              "-Dexhort.configurations=" + String.join(",", configurations));
+      String gradleOutput = Operations.runProcessGetOutput(manifestPath.getParent(), cmdList);
+      // an export directory holds a file per project
+      var exported =
+          Files.isDirectory(output) ? !listExportFiles(output).isEmpty() : Files.size(output) > 0;
+      if (!exported) {
+        throw new RuntimeException(
+            String.format(
+                "failed to export the gradle dependencies with '%s', got %s",
+                String.join(" ", cmdList), gradleOutput));
+      }
+    } finally {
+      Files.deleteIfExists(initScript);
+    }
+  }
+
+  private DependenciesExport parseDependenciesExport(Path exportFile) throws IOException {
+    var export = new DependenciesExport();
+    try (JsonParser parser = objectMapper.getFactory().createParser(exportFile.toFile())) {
+      expectToken(parser.nextToken(), JsonToken.START_OBJECT);
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        var field = parser.getCurrentName();
+        parser.nextToken();
+        switch (field) {
+          case "group":
+            export.group = textValue(parser);
+            break;
+          case "name":
+            export.name = textValue(parser);
+            break;
+          case "version":
+            export.version = textValue(parser);
+            break;
+          case "path":
+            export.path = textValue(parser);
+            break;
+          case "buildFile":
+            export.buildFile = textValue(parser);
+            break;
+          case "configurations":
+            parseConfigurations(parser, export);
+            break;
+          default:
+            parser.skipChildren();
+        }
+      }
+    }
+    return export;
+  }
+
+  private void parseConfigurations(JsonParser parser, DependenciesExport export)
+      throws IOException {
+    expectToken(parser.currentToken(), JsonToken.START_OBJECT);
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      var configuration = parser.getCurrentName();
+      expectToken(parser.nextToken(), JsonToken.START_OBJECT);
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        var field = parser.getCurrentName();
+        parser.nextToken();
+        switch (field) {
+          case "dependencies":
+            export.directDependencies.put(configuration, readStringArray(parser));
+            break;
+          case "components":
+            // the components' own coordinates are part of their ids, only the edges are needed
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+              var id = parser.getCurrentName();
+              expectToken(parser.nextToken(), JsonToken.START_OBJECT);
+              while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                var componentField = parser.getCurrentName();
+                parser.nextToken();
+                if ("dependencies".equals(componentField)) {
+                  export.edges.put(id, readStringArray(parser));
+                } else {
+                  parser.skipChildren();
+                }
+              }
+            }
+            break;
+          case "declared":
+            List<String[]> declared = new ArrayList<>();
+            expectToken(parser.currentToken(), JsonToken.START_ARRAY);
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+              var coordinates = new String[3];
+              while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                var declaredField = parser.getCurrentName();
+                parser.nextToken();
+                switch (declaredField) {
+                  case "group":
+                    coordinates[0] = textValue(parser);
+                    break;
+                  case "name":
+                    coordinates[1] = textValue(parser);
+                    break;
+                  case "version":
+                    coordinates[2] = textValue(parser);
+                    break;
+                  default:
+                    parser.skipChildren();
+                }
+              }
+              declared.add(coordinates);
+            }
+            export.declaredDependencies.put(configuration, declared);
+            break;
+          default:
+            parser.skipChildren();
+        }
+      }
+    }
+  }
+
+  private static List<String> readStringArray(JsonParser parser) throws IOException {
+    expectToken(parser.currentToken(), JsonToken.START_ARRAY);
+    List<String> values = new ArrayList<>();
+    while (parser.nextToken() != JsonToken.END_ARRAY) {
+      values.add(parser.getText());
+    }
+    return values;
+  }
+
+  private static String textValue(JsonParser parser) throws IOException {
+    return parser.currentToken() == JsonToken.VALUE_NULL ? null : parser.getText();
+  }
+
+  private static void expectToken(JsonToken actual, JsonToken expected) throws IOException {
+    if (actual != expected) {
+      throw new IOException(
+          String.format(
+              "Unexpected gradle dependencies export format, expected %s got %s",
+              expected, actual));
+    }
+  }
+
+  private Sbom buildStackSbomFromExport(DependenciesExport export) {
+    var sbom = SbomFactory.newInstance(Sbom.BelongingCondition.PURL, "sensitive");
+    var root = toPurl(export.group, export.name, export.version);
+    sbom.addRoot(root);
+    addStackDependencies(sbom, root, export, new HashMap<>(), null);
+    return sbom;
+  }
+
+  /**
+   * Merge the projects' dependency graphs into a single SBOM, rooted at the root project, having
+   * the subprojects as its direct dependencies. Each project's ignored dependencies are filtered
+   * out of its own graph only.
+   */
+  private Sbom buildMultiProjectSbom(List<DependenciesExport> exports) throws IOException {
+    var sbom = SbomFactory.newInstance(Sbom.BelongingCondition.PURL, "sensitive");
+    var rootProject = exports.get(0);
+    var root = toPurl(rootProject.group, rootProject.name, rootProject.version);
+    sbom.addRoot(root);
+    Map<String, PackageURL> purls = new HashMap<>();
+    for (DependenciesExport export : exports) {
+      var project = root;
+      if (export != rootProject) {
+        project = toPurl(export.group, export.name, export.version);
+        sbom.addDependency(root, project);
+      }
+      var ignored = getProjectIgnoredDeps(export);
+      Set<String> kept = null;
+      if (!ignored.isEmpty()) {
+        var projectSbom = SbomFactory.newInstance(Sbom.BelongingCondition.PURL, "sensitive");
+        projectSbom.addRoot(project);
+        addStackDependencies(projectSbom, project, export, purls, null);
+        kept = projectSbom.filterIgnoredDeps(ignored).getComponentRefs();
+      }
+      addStackDependencies(sbom, project, export, purls, kept);
+    }
+    return sbom;
+  }
+
+  /**
+   * Add the runtime classpath graph of a project to an SBOM.
+   *
+   * @param kept the refs of the components to keep, or null to keep all of them. The edges from a
+   *     component left out are dropped, and their targets which are kept are added on their own
+   */
+  private void addStackDependencies(
+      Sbom sbom,
+      PackageURL root,
+      DependenciesExport export,
+      Map<String, PackageURL> purls,
+      Set<String> kept) {
+    Deque<String> toVisit = new ArrayDeque<>();
+    for (String id :
+        export.directDependencies.getOrDefault(STACK_ANALYSIS_CONFIGURATION, List.of())) {
+      addStackDependency(sbom, root, purls.computeIfAbsent(id, this::idToPurl), kept);
+      toVisit.add(id);
+    }
+    // add the edges of every reachable component once
+    Set<String> visited = new HashSet<>(toVisit);
+    while (!toVisit.isEmpty()) {
+      var id = toVisit.poll();
+      var from = purls.computeIfAbsent(id, this::idToPurl);
+      for (String child : export.edges.getOrDefault(id, List.of())) {
+        addStackDependency(sbom, from, purls.computeIfAbsent(child, this::idToPurl), kept);
+        if (visited.add(child)) {
+          toVisit.add(child);
+        }
+      }
+    }
+  }
+
+  private static void addStackDependency(
+      Sbom sbom, PackageURL from, PackageURL to, Set<String> kept) {
+    if (kept == null
+        || kept.contains(from.getCoordinates()) && kept.contains(to.getCoordinates())) {
+      sbom.addDependency(from, to);
+    } else if (kept.contains(to.getCoordinates())) {
+      // the dependencies of an ignored dependency are kept by the sensitive ignore method
+      sbom.addComponent(to);
+    }
+  }
+
+  private List<String> getProjectIgnoredDeps(DependenciesExport export) throws IOException {
+    if (export.buildFile == null || !Files.isRegularFile(Path.of(export.buildFile))) {
+      return List.of();
+    }
+    return getIgnoredDeps(Path.of(export.buildFile));
+  }
+
+  private Sbom buildComponentSbomFromExport(DependenciesExport export) {
+    var sbom = SbomFactory.newInstance(Sbom.BelongingCondition.PURL, "sensitive");
+    var root = toPurl(export.group, export.name, export.version);
+    sbom.addRoot(root);
+    // the declared versions are reconciled with the versions resolved for the runtime classpath
+    Map<String, String> resolvedVersions = new HashMap<>();
+    export.edges.keySet().forEach(id -> resolvedVersions.put(idToModule(id), idToVersion(id)));
+    // a dependency declared in several configurations is added once
+    Map<String, PackageURL> directDependencies = new LinkedHashMap<>();
+    for (String configuration : COMPONENT_ANALYSIS_CONFIGURATIONS) {
+      for (String[] declared : export.declaredDependencies.getOrDefault(configuration, List.of())) {
+        var module = declared[0] + ":" + declared[1];
+        var version = resolvedVersions.getOrDefault(module, declared[2]);
+        if (declared[0] != null && version != null && !directDependencies.containsKey(module)) {
+          directDependencies.put(module, toPurl(declared[0], declared[1], version));
+        }
+      }
+    }
+    directDependencies.values().forEach(dependency -> sbom.addDependency(root, dependency));
+    return sbom;
+  }
+
+  private PackageURL idToPurl(String id) {
+    var parts = id.split(":", 3);
+    return toPurl(parts[0], parts[1], parts[2]);
+  }
+
+  private static String idToModule(String id) {
+    return id.substring(0, id.lastIndexOf(':'));
+  }
+
+  private static String idToVersion(String id) {
+    return id.substring(id.lastIndexOf(':') + 1);
+  }
+
+  /**
+   * Build a gradle command line for the given tasks and arguments, adding the daemon, configuration
+   * cache and offline options when enabled.
+   */
+  String[] buildGradleCommand(Path manifestPath, String... tasksAndArgs) {
+    return buildGradleCommand(manifestPath, true, tasksAndArgs);
+  }
+
+  /**
+   * @param configurationCacheCompatible whether the tasks are compatible with the configuration
+   *     cache, the init script's export task isn't, as it reads the projects at execution time
+   */
+  private String[] buildGradleCommand(
+      Path manifestPath, boolean configurationCacheCompatible, String... tasksAndArgs) {
+    List<String> cmd = new ArrayList<>();
+    cmd.add(getGradleExecutable(manifestPath));
+    cmd.addAll(Arrays.asList(tasksAndArgs));
+    // keep a warm daemon for the next analyses, even if disabled in the project's gradle.properties
+    if (getBooleanValueEnvironment("EXHORT_GRADLE_DAEMON", "false")) {
+      cmd.add("--daemon");
+    }
+    if (configurationCacheCompatible
+        && getBooleanValueEnvironment("EXHORT_GRADLE_CONFIGURATION_CACHE", "false")) {
+      cmd.add("--configuration-cache");
+    }
+    if (getBooleanValueEnvironment("EXHORT_GRADLE_OFFLINE", "false")) {
+      cmd.add("--offline");
+    }
+    return cmd.toArray(String[]::new);
+  }
+
+  /**
+   * Get the gradle executable, a custom gradle path takes precedence over the project's gradle
+   * wrapper, which takes precedence over the gradle executable on the system PATH.
+   */
+  private static String getGradleExecutable(Path manifestPath) {
     // check for custom gradle executable
     var gradle = Operations.getCustomPathOrElse("gradle");
+    if (!"gradle".equals(gradle)
+        || !getBooleanValueEnvironment("EXHORT_GRADLE_PREFER_WRAPPER", "true")) {
+      return gradle;
+    }
+    var wrapper = findGradleWrapper(manifestPath);
+    return wrapper != null ? wrapper.toString() : gradle;
+  }
+
+  /**
+   * Look for the gradle wrapper in the project directory, and up to the root project directory
+   * (holding the settings file) of a subproject. Without a settings file, the lookup stops at the
+   * first parent directory holding a build file, as it belongs to another build.
+   */
+  private static Path findGradleWrapper(Path manifestPath) {
+    var wrapperName =
+        System.getProperty("os.name").toLowerCase().contains("win") ? "gradlew.bat" : "gradlew";
+    var projectDir = manifestPath.toAbsolutePath().getParent();
+    var rootDir = projectDir;
+    while (rootDir != null && !hasAnyFile(rootDir, "settings.gradle", "settings.gradle.kts")) {
+      rootDir = rootDir.getParent();
+    }
+    for (var dir = projectDir; dir != null; dir = dir.getParent()) {
+      if (rootDir == null && !dir.equals(projectDir) && hasAnyFile(dir, BUILD_FILES)) {
+        // reached a project of another build
+        break;
+      }
+      var wrapper = dir.resolve(wrapperName);
+      if (Files.isRegularFile(wrapper) && Files.isExecutable(wrapper)) {
+        return wrapper;
+      }
+      if (dir.equals(rootDir)) {
+        // reached the root project
+        break;
+      }
+    }
+    return null;
+  }
+
+  private static boolean hasAnyFile(Path dir, String... fileNames) {
+    return Arrays.stream(fileNames).anyMatch(fileName -> Files.exists(dir.resolve(fileName)));
+  }
+
+  private Path getDependencies(Path manifestPath) throws IOException {
     // create a temp file for storing the dependency tree in
     var tempFile = Files.createTempFile("exhort_graph_", null);
     // the command will create the dependency tree in the temp file
-    String gradleCommand = gradle + " dependencies";
-
-    String[] cmdList = gradleCommand.split("\\s+");
+    String[] cmdList = buildGradleCommand(manifestPath, "dependencies");
     String gradleOutput =
         Operations.runProcessGetOutput(Path.of(manifestPath.getParent().toString()), cmdList);
     Files.writeString(tempFile, gradleOutput);
@@ -230,9 +738,7 @@ private Path getDependencies(Path manifestPath) throws IOException {
 
   private Path getProperties(Path manifestPath) throws IOException {
     Path propsTempFile = Files.createTempFile("propsfile", ".txt");
-    var gradle = Operations.getCustomPathOrElse("gradle");
-    String propCmd = gradle + " properties";
-    String[] propCmdList = propCmd.split("\\s+");
+    String[] propCmdList = buildGradleCommand(manifestPath, "properties");
     String properties =
         Operations.runProcessGetOutput(Path.of(manifestPath.getParent().toString()), propCmdList);
     // Create a temporary file
@@ -245,14 +751,16 @@ private Sbom buildSbomFromTextFormat(
       Path textFormatFile, Map<String, String> propertiesMap, String[] configNames)
       throws IOException {
     var sbom = SbomFactory.newInstance(Sbom.BelongingCondition.PURL, "sensitive");
-    String root = getRoot(textFormatFile, propertiesMap);
+    // read the text format once, all sections are extracted from the same lines
+    List<String> textFormatLines = Files.readAllLines(textFormatFile);
+    String root = getRoot(textFormatLines, propertiesMap);
 
     var rootPurl = parseDep(root);
     sbom.addRoot(rootPurl);
     List<String> lines = new ArrayList<>();
 
     for (String configName : configNames) {
-      List<String> deps = extractLines(textFormatFile, configName);
+      List<String> deps = extractLines(textFormatLines, configName);
       lines.addAll(deps);
     }
 
@@ -271,8 +779,9 @@ private Sbom buildSbomFromTextFormat(
     }
     // remove duplicates for component analysis
     if (Arrays.equals(configNames, COMPONENT_ANALYSIS_CONFIGURATIONS)) {
-      removeDuplicateIfExists(arrayForSbom, textFormatFile);
-      arrayForSbom = performManifestVersionsCheck(arrayForSbom, textFormatFile);
+      arrayForSbom =
+          removeDuplicateIfExists(arrayForSbom, indexVersionResolutions(textFormatLines));
+      arrayForSbom = performManifestVersionsCheck(arrayForSbom, textFormatLines);
     }
 
     String[] array = arrayForSbom.toArray(new String[0]);
@@ -280,10 +789,10 @@ private Sbom buildSbomFromTextFormat(
     return sbom;
   }
 
-  private List<String> performManifestVersionsCheck(List<String> arrayForSbom, Path textFormatFile)
-      throws IOException {
+  private List<String> performManifestVersionsCheck(
+      List<String> arrayForSbom, List<String> textFormatLines) {
 
-    List<String> runtimeClasspathLines = extractLines(textFormatFile, "runtimeClasspath");
+    List<String> runtimeClasspathLines = extractLines(textFormatLines, "runtimeClasspath");
     Map<String, String> runtimeClasspathVersions = parseDependencyVersions(runtimeClasspathLines);
     List<String> updatedLines = updateDependencies(arrayForSbom, runtimeClasspathVersions);
 
@@ -333,52 +842,85 @@ private List<String> updateDependencies(
     return updatedLines;
   }
 
-  private void removeDuplicateIfExists(List<String> arrayForSbom, Path theContent) {
-    Consumer<String> removeDuplicateFunction =
-        dependency -> {
-          try {
-            String content = Files.readString(theContent);
-            PackageURL depUrl = parseDep(dependency);
-            String depVersion = depUrl.getVersion().trim();
-            int indexOfDuplicate = -1;
-            int selfIndex = -1;
+  /**
+   * Index the version resolutions found in the text format, i.e. {@code group:name:1.0 -> 2.0}, as
+   * a set of {@code 1.0->2.0} pairs per group:name.
+   */
+  private static Map<String, Set<String>> indexVersionResolutions(List<String> textFormatLines) {
+    Map<String, Set<String>> resolutions = new HashMap<>();
+    for (String line : textFormatLines) {
+      int arrowIndex = line.indexOf(" -> ");
+      int dependencyIndex = line.indexOf("--- ");
+      if (arrowIndex == -1 || dependencyIndex == -1 || dependencyIndex > arrowIndex) {
+        continue;
+      }
+      String[] requested = line.substring(dependencyIndex + 4, arrowIndex).trim().split(":");
+      String resolved = line.substring(arrowIndex + 4).trim().split(" ")[0];
+      if (requested.length == 3) {
+        resolutions
+            .computeIfAbsent(requested[0] + ":" + requested[1], key -> new HashSet<>())
+            .add(requested[2] + "->" + resolved);
+      }
+    }
+    return resolutions;
+  }
 
-            for (int i = 0; i < arrayForSbom.size(); i++) {
-              PackageURL dep = parseDep(arrayForSbom.get(i));
-              if (dep.getNamespace().equals(depUrl.getNamespace())
-                  && dep.getName().equals(depUrl.getName())) {
-                if (dep.getVersion().equals(depVersion)) {
-                  selfIndex = i;
-                } else if (!dep.getVersion().equals(depVersion) && indexOfDuplicate == -1) {
-                  indexOfDuplicate = i;
-                }
+  /**
+   * Remove a dependency declared with different versions, keeping the version it was resolved to.
+   * Each dependency line is parsed once and grouped by group:name, so only the occurrences of the
+   * same dependency are compared.
+   */
+  private List<String> removeDuplicateIfExists(
+      List<String> arrayForSbom, Map<String, Set<String>> resolutions) {
+    Map<String, List<Integer>> occurrences = new LinkedHashMap<>();
+    String[] versions = new String[arrayForSbom.size()];
+    for (int i = 0; i < arrayForSbom.size(); i++) {
+      PackageURL dep = parseDep(arrayForSbom.get(i));
+      versions[i] = dep.getVersion().trim();
+      occurrences
+          .computeIfAbsent(dep.getNamespace() + ":" + dep.getName(), key -> new ArrayList<>())
+          .add(i);
+    }
+    boolean[] removed = new boolean[arrayForSbom.size()];
+    occurrences.forEach(
+        (module, indices) -> {
+          if (indices.size() < 2) {
+            return;
+          }
+          var moduleResolutions = resolutions.getOrDefault(module, Set.of());
+          for (int current : indices) {
+            String depVersion = versions[current];
+            // the last remaining occurrence of this version and the first one of another version
+            int selfIndex = -1;
+            int indexOfDuplicate = -1;
+            for (int i : indices) {
+              if (removed[i]) {
+                continue;
               }
-            }
-
-            if (selfIndex != -1 && selfIndex != indexOfDuplicate && indexOfDuplicate != -1) {
-              PackageURL duplicateDepVersion = parseDep(arrayForSbom.get(indexOfDuplicate));
-              Pattern pattern =
-                  Pattern.compile(
-                      ".*" + depVersion + "\\W?->\\W?" + duplicateDepVersion.getVersion() + ".*");
-              Matcher matcher = pattern.matcher(content);
-              if (matcher.find()) {
-                arrayForSbom.remove(selfIndex);
-              } else {
-                pattern =
-                    Pattern.compile(
-                        ".*" + duplicateDepVersion.getVersion() + "\\W?->\\W?" + depVersion + ".*");
-                matcher = pattern.matcher(content);
-                if (matcher.find()) {
-                  arrayForSbom.remove(indexOfDuplicate);
-                }
+              if (versions[i].equals(depVersion)) {
+                selfIndex = i;
+              } else if (indexOfDuplicate == -1) {
+                indexOfDuplicate = i;
               }
             }
-          } catch (Exception e) {
-            e.printStackTrace();
+            if (selfIndex == -1 || indexOfDuplicate == -1) {
+              continue;
+            }
+            String duplicateVersion = versions[indexOfDuplicate];
+            if (moduleResolutions.contains(depVersion + "->" + duplicateVersion)) {
+              removed[selfIndex] = true;
+            } else if (moduleResolutions.contains(duplicateVersion + "->" + depVersion)) {
+              removed[indexOfDuplicate] = true;
+            }
           }
-        };
-    List<String> copyOfArrayForSbom = new ArrayList<>(arrayForSbom);
-    copyOfArrayForSbom.forEach(removeDuplicateFunction);
+        });
+    List<String> deduplicated = new ArrayList<>(arrayForSbom.size());
+    for (int i = 0; i < arrayForSbom.size(); i++) {
+      if (!removed[i]) {
+        deduplicated.add(arrayForSbom.get(i));
+      }
+    }
+    return deduplicated;
   }
 
   private boolean containsVersion(String line) {
@@ -391,17 +933,15 @@ private boolean containsVersion(String line) {
     return (matcher1.find() || matcher2.find()) && !lineStripped.contains("libs.");
   }
 
-  private String getRoot(Path textFormatFile, Map<String, String> propertiesMap)
-      throws IOException {
+  private String getRoot(List<String> textFormatLines, Map<String, String> propertiesMap) {
     String group = propertiesMap.get("group");
     String version = propertiesMap.get("version");
-    String rootName = extractRootProjectValue(textFormatFile);
+    String rootName = extractRootProjectValue(textFormatLines);
     String root = group + ':' + rootName + ':' + "jar" + ':' + version;
     return root;
   }
 
-  private String extractRootProjectValue(Path inputFilePath) throws IOException {
-    List<String> lines = Files.readAllLines(inputFilePath);
+  private String extractRootProjectValue(List<String> lines) {
     for (String line : lines) {
       if (line.contains("Root project")) {
         Pattern pattern = Pattern.compile("Root project '(.+)'");
@@ -437,8 +977,7 @@ private Map<String, String> extractProperties(Path manifestPath) throws IOExcept
     }
   }
 
-  private List<String> extractLines(Path inputFilePath, String startMarker) throws IOException {
-    List<String> lines = Files.readAllLines(inputFilePath);
+  private List<String> extractLines(List<String> lines, String startMarker) {
     List<String> extractedLines = new ArrayList<>();
     boolean startFound = false;
 
@@ -470,6 +1009,16 @@ public Content provideComponent(byte[] manifestContent) throws IOException {
 
   @Override
   public Content provideComponent(Path manifestPath) throws IOException {
+    if (isJsonExportMode()) {
+      var configurations = new ArrayList<String>();
+      configurations.add(STACK_ANALYSIS_CONFIGURATION);
+      configurations.addAll(Arrays.asList(COMPONENT_ANALYSIS_CONFIGURATIONS));
+      var export = exportDependencies(manifestPath, configurations.toArray(String[]::new));
+      var sbom = buildComponentSbomFromExport(export);
+      var ignored = getIgnoredDeps(manifestPath);
+      return new Content(
+          sbom.filterIgnoredDeps(ignored).getAsJsonString().getBytes(), Api.CYCLONEDX_MEDIA_TYPE);
+    }
 
     Path tempFile = getDependencies(manifestPath);
     Map<String, String> propertiesMap = extractProperties(manifestPath);
@@ -484,4 +1033,20 @@ public Content provideComponent(Path manifestPath) throws IOException {
     return new Content(
         sbom.filterIgnoredDeps(ignored).getAsJsonString().getBytes(), Api.CYCLONEDX_MEDIA_TYPE);
   }
+
+  /** The gradle dependencies export, see exhort-dependencies.init.gradle. */
+  private static final class DependenciesExport {
+    private String group;
+    private String name;
+    private String version;
+    // the gradle project path, ':' for the root project
+    private String path = ":";
+    private String buildFile;
+    // the direct dependencies of each resolved configuration, as group:name:version ids
+    private final Map<String, List<String>> directDependencies = new HashMap<>();
+    // the dependencies of each resolved component, by their ids
+    private final Map<String, List<String>> edges = new HashMap<>();
+    // the declared group, name and version of each non resolved configuration's dependencies
+    private final Map<String, List<String[]>> declaredDependencies = new HashMap<>();
+  }
 }
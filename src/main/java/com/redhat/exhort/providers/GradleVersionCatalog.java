@@ -0,0 +1,208 @@
+/*
+ * Copyright © 2023 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.exhort.providers;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import org.tomlj.Toml;
+import org.tomlj.TomlParseResult;
+import org.tomlj.TomlTable;
+
+/**
+ * A Gradle version catalog (libs.versions.toml), parsed once into a model of its libraries, bundles
+ * and plugins keyed by their normalized aliases. Parsed catalogs are cached by their path, and
+ * reparsed only when the file was modified.
+ */
+final class GradleVersionCatalog {
+
+  private static final int MAX_CACHED_CATALOGS = 64;
+
+  private static final Map<Path, GradleVersionCatalog> CACHE =
+      Collections.synchronizedMap(
+          new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Path, GradleVersionCatalog> eldest) {
+              return size() > MAX_CACHED_CATALOGS;
+            }
+          });
+
+  private final FileTime lastModified;
+  private final long size;
+  private final Map<String, String> versions = new HashMap<>();
+  // the group, name and version of the libraries
+  private final Map<String, String[]> libraries = new HashMap<>();
+  private final Map<String, List<String>> bundles = new HashMap<>();
+  // the id and version of the plugins
+  private final Map<String, String[]> plugins = new HashMap<>();
+
+  private GradleVersionCatalog(FileTime lastModified, long size) {
+    this.lastModified = lastModified;
+    this.size = size;
+  }
+
+  /**
+   * Get the parsed version catalog of the given file, parsing it only if not cached or modified
+   * since it was cached.
+   *
+   * @param tomlPath the libs.versions.toml file
+   * @return the version catalog
+   * @throws IOException when failed to read the file
+   */
+  static GradleVersionCatalog load(Path tomlPath) throws IOException {
+    var key = tomlPath.toAbsolutePath().normalize();
+    var lastModified = Files.getLastModifiedTime(key);
+    var size = Files.size(key);
+    var cached = CACHE.get(key);
+    if (cached != null && cached.lastModified.equals(lastModified) && cached.size == size) {
+      return cached;
+    }
+    var catalog = new GradleVersionCatalog(lastModified, size);
+    catalog.parse(Toml.parse(key));
+    CACHE.put(key, catalog);
+    return catalog;
+  }
+
+  /**
+   * Get the coordinates of the dependencies referenced by a catalog accessor, i.e. {@code
+   * quarkus.agroal} for a library, {@code bundles.quarkus} for a bundle or {@code plugins.quarkus}
+   * for a plugin's marker artifact.
+   *
+   * @param accessor the accessor following the catalog name, i.e. libs.
+   * @return the group, name and version of each dependency, empty if not found in the catalog
+   */
+  List<String[]> getDependencies(String accessor) {
+    if (accessor.startsWith("bundles.")) {
+      List<String[]> dependencies = new ArrayList<>();
+      for (String library :
+          bundles.getOrDefault(normalize(accessor.substring("bundles.".length())), List.of())) {
+        var coordinates = libraries.get(library);
+        if (coordinates != null) {
+          dependencies.add(coordinates);
+        }
+      }
+      return dependencies;
+    }
+    if (accessor.startsWith("plugins.")) {
+      var plugin = plugins.get(normalize(accessor.substring("plugins.".length())));
+      if (plugin == null) {
+        return List.of();
+      }
+      // plugins are resolved through their marker artifact
+      return List.<String[]>of(new String[] {plugin[0], plugin[0] + ".gradle.plugin", plugin[1]});
+    }
+    var library = libraries.get(normalize(accessor));
+    return library == null ? List.of() : List.<String[]>of(library);
+  }
+
+  private void parse(TomlParseResult toml) {
+    var versionsTable = toml.getTable("versions");
+    if (versionsTable != null) {
+      for (String alias : versionsTable.keySet()) {
+        var value = versionsTable.get(List.of(alias));
+        var version =
+            value instanceof TomlTable ? richVersion((TomlTable) value) : Objects.toString(value);
+        versions.put(alias, version);
+      }
+    }
+    var librariesTable = toml.getTable("libraries");
+    if (librariesTable != null) {
+      for (String alias : librariesTable.keySet()) {
+        var value = librariesTable.get(List.of(alias));
+        String[] coordinates;
+        if (value instanceof TomlTable) {
+          var library = (TomlTable) value;
+          coordinates = new String[3];
+          var module = library.getString("module");
+          if (module != null) {
+            coordinates[0] = module.split(":")[0];
+            coordinates[1] = module.split(":")[1];
+          } else {
+            coordinates[0] = library.getString("group");
+            coordinates[1] = library.getString("name");
+          }
+          coordinates[2] = version(library);
+        } else {
+          // group:name:version notation
+          coordinates = Arrays.copyOf(Objects.toString(value).split(":"), 3);
+        }
+        libraries.put(normalize(alias), coordinates);
+      }
+    }
+    var bundlesTable = toml.getTable("bundles");
+    if (bundlesTable != null) {
+      for (String alias : bundlesTable.keySet()) {
+        var bundle = bundlesTable.getArray(List.of(alias));
+        List<String> bundleLibraries = new ArrayList<>();
+        for (int i = 0; bundle != null && i < bundle.size(); i++) {
+          bundleLibraries.add(normalize(bundle.getString(i)));
+        }
+        bundles.put(normalize(alias), bundleLibraries);
+      }
+    }
+    var pluginsTable = toml.getTable("plugins");
+    if (pluginsTable != null) {
+      for (String alias : pluginsTable.keySet()) {
+        var value = pluginsTable.get(List.of(alias));
+        if (value instanceof TomlTable) {
+          var plugin = (TomlTable) value;
+          plugins.put(normalize(alias), new String[] {plugin.getString("id"), version(plugin)});
+        } else {
+          // id:version notation
+          plugins.put(normalize(alias), Arrays.copyOf(Objects.toString(value).split(":"), 2));
+        }
+      }
+    }
+  }
+
+  /** The version of a library or plugin, either inline, rich or a reference to a version alias. */
+  private String version(TomlTable table) {
+    var versionRef = table.getString("version.ref");
+    if (versionRef != null) {
+      return versions.get(versionRef);
+    }
+    var version = table.get("version");
+    if (version instanceof TomlTable) {
+      var versionTable = (TomlTable) version;
+      var ref = versionTable.getString("ref");
+      return ref != null ? versions.get(ref) : richVersion(versionTable);
+    }
+    return version == null ? null : version.toString();
+  }
+
+  private static String richVersion(TomlTable version) {
+    for (String constraint : List.of("strictly", "require", "prefer")) {
+      if (version.getString(constraint) != null) {
+        return version.getString(constraint);
+      }
+    }
+    return null;
+  }
+
+  /** Gradle treats dashes, underscores and dots in aliases as the same separator. */
+  private static String normalize(String alias) {
+    return alias.replace('-', '.').replace('_', '.');
+  }
+}
@@ -16,7 +16,11 @@
 package com.redhat.exhort.providers;
 
 import static com.redhat.exhort.impl.ExhortApi.debugLoggingIsNeeded;
+import static com.redhat.exhort.impl.ExhortApi.getBooleanValueEnvironment;
+import static com.redhat.exhort.impl.ExhortApi.getStringValueEnvironment;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.github.packageurl.MalformedPackageURLException;
 import com.github.packageurl.PackageURL;
 import com.redhat.exhort.Api;
@@ -28,12 +32,15 @@
 import com.redhat.exhort.tools.Ecosystem;
 import com.redhat.exhort.tools.Ecosystem.Type;
 import com.redhat.exhort.tools.Operations;
+import com.redhat.exhort.utils.DiskCache;
+import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 import javax.xml.stream.XMLInputFactory;
@@ -50,6 +57,17 @@ public final class JavaMavenProvider extends BaseJavaProvider {
 
   private Logger log = LoggersFactory.getLogger(this.getClass().getName());
 
+  // creating a factory involves a service lookup, it's thread safe once configured, so share it
+  private static final XMLInputFactory XML_INPUT_FACTORY = XMLInputFactory.newInstance();
+
+  private static final Map<Path, DiskCache> EFFECTIVE_POM_CACHES = new ConcurrentHashMap<>();
+
+  private static final Set<String> COORDINATES_ELEMENTS =
+      Set.of("groupId", "artifactId", "version");
+
+  private static final Set<String> TEXT_ELEMENTS =
+      Set.of("groupId", "artifactId", "version", "scope", "module", "relativePath");
+
   public static void main(String[] args) throws IOException {
     JavaMavenProvider javaMavenProvider = new JavaMavenProvider();
     PackageURL packageURL =
@@ -75,35 +93,74 @@ public JavaMavenProvider() {
 
   @Override
   public Content provideStack(final Path manifestPath) throws IOException {
-    // check for custom mvn executable
-    var mvn = Operations.getCustomPathOrElse("mvn");
-    // clean command used to clean build target
-    var mvnCleanCmd = new String[] {mvn, "clean", "-f", manifestPath.toString()};
+    // in reactor mode, a multi-module project is analyzed as a whole in one maven invocation
+    if (getBooleanValueEnvironment("EXHORT_MVN_REACTOR_ENABLED", "false")) {
+      var modulesPoms = getModulesPoms(manifestPath);
+      if (modulesPoms.size() > 1) {
+        var aggregatorModule = modulesPoms.keySet().iterator().next();
+        var sbom =
+            buildReactorSbom(
+                parseReactorDependencyTrees(manifestPath, modulesPoms), aggregatorModule);
+        return new Content(sbom.getAsJsonString().getBytes(), Api.CYCLONEDX_MEDIA_TYPE);
+      }
+    }
+    var tmpFile = generateDependencyTree(manifestPath, false);
+    // if we have dependencies marked as ignored, exclude them from the tree
+    var ignored = getIgnoredDeps(manifestPath);
+    var sbom = buildSbomFromTextFormat(tmpFile);
+    // build and return content for constructing request to the backend
+    return new Content(
+        sbom.filterIgnoredDeps(ignored).getAsJsonString().getBytes(), Api.CYCLONEDX_MEDIA_TYPE);
+  }
+
+  @Override
+  public Content provideBatchStack(final Path manifestPath) throws IOException {
+    var modulesPoms = getModulesPoms(manifestPath);
+    if (modulesPoms.size() < 2) {
+      return super.provideBatchStack(manifestPath);
+    }
+    // build the modules' SBOMs in parallel, keeping the reactor order
+    Map<String, JsonNode> sboms =
+        parseReactorDependencyTrees(manifestPath, modulesPoms).parallelStream()
+            .collect(
+                Collectors.toMap(
+                    tree -> tree.root.canonicalize(),
+                    tree -> {
+                      try {
+                        return objectMapper.readTree(tree.toSbom().getAsJsonString());
+                      } catch (JsonProcessingException e) {
+                        throw new RuntimeException(e);
+                      }
+                    },
+                    (first, second) -> first,
+                    LinkedHashMap::new));
+    return new Content(objectMapper.writeValueAsBytes(sboms), Api.CYCLONEDX_MEDIA_TYPE);
+  }
+
+  private Path generateDependencyTree(Path manifestPath, boolean reactor) throws IOException {
     var mvnEnvs = getMvnExecEnvs();
-    // execute the clean command
-    Operations.runProcess(mvnCleanCmd, mvnEnvs);
+    // in single invocation mode the tree goal resolves the project by itself, no need to clean
+    if (!isSingleInvocationMode()) {
+      // clean command used to clean build target
+      var mvnCleanCmd = buildMvnCommand(manifestPath, "clean");
+      // execute the clean command
+      Operations.runProcess(mvnCleanCmd.toArray(String[]::new), mvnEnvs);
+    }
     // create a temp file for storing the dependency tree in
     var tmpFile = Files.createTempFile("exhort_dot_graph_", null);
     // the tree command will build the project and create the dependency tree in the temp file
-    var mvnTreeCmd =
-        new ArrayList<String>() {
-          {
-            add(mvn);
-            add("org.apache.maven.plugins:maven-dependency-plugin:3.6.0:tree");
-            add("-Dverbose");
-            add("-DoutputType=text");
-            add(String.format("-DoutputFile=%s", tmpFile.toString()));
-            add("-f");
-            add(manifestPath.toString());
-          }
-        };
-    // if we have dependencies marked as ignored, exclude them from the tree command
-    var ignored =
-        getDependencies(manifestPath).stream()
-            .filter(d -> d.ignored)
-            .map(DependencyAggregator::toPurl)
-            .map(PackageURL::getCoordinates)
-            .collect(Collectors.toList());
+    var treeGoalAndArgs =
+        new ArrayList<>(
+            List.of(
+                "org.apache.maven.plugins:maven-dependency-plugin:3.6.0:tree",
+                "-Dverbose",
+                "-DoutputType=text",
+                String.format("-DoutputFile=%s", tmpFile.toString())));
+    if (reactor) {
+      // each module of the reactor appends its own tree to the same output file
+      treeGoalAndArgs.add("-DappendOutput=true");
+    }
+    var mvnTreeCmd = buildMvnCommand(manifestPath, treeGoalAndArgs.toArray(String[]::new));
     // execute the tree command
     Operations.runProcess(mvnTreeCmd.toArray(String[]::new), mvnEnvs);
     if (debugLoggingIsNeeded()) {
@@ -113,11 +170,83 @@ public Content provideStack(final Path manifestPath) throws IOException {
               "Package Manager Maven Stack Analysis Dependency Tree Output: %s %s",
               System.lineSeparator(), stackAnalysisDependencyTree));
     }
+    return tmpFile;
+  }
 
-    var sbom = buildSbomFromTextFormat(tmpFile);
-    // build and return content for constructing request to the backend
-    return new Content(
-        sbom.filterIgnoredDeps(ignored).getAsJsonString().getBytes(), Api.CYCLONEDX_MEDIA_TYPE);
+  /**
+   * Create the dependency trees of all the modules of a reactor in a single maven invocation, and
+   * parse them in parallel.
+   *
+   * @param manifestPath the aggregator pom.xml
+   * @param modulesPoms the reactor modules' poms by their groupId:artifactId
+   * @return the dependency trees of the modules, in reactor build order
+   */
+  private List<ModuleDependencyTree> parseReactorDependencyTrees(
+      Path manifestPath, Map<String, Path> modulesPoms) throws IOException {
+    var tmpFile = generateDependencyTree(manifestPath, true);
+    List<String> lines = Files.readAllLines(tmpFile);
+    Files.deleteIfExists(tmpFile);
+    // every module's tree starts with the module's root artifact line
+    List<List<String>> modulesLines = new ArrayList<>();
+    for (String line : lines) {
+      if (line.isBlank()) {
+        continue;
+      }
+      if (getDepth(line) == 0) {
+        modulesLines.add(new ArrayList<>());
+      }
+      if (!modulesLines.isEmpty()) {
+        modulesLines.get(modulesLines.size() - 1).add(line);
+      }
+    }
+    return modulesLines.parallelStream()
+        .map(
+            moduleLines -> {
+              var rootLine = moduleLines.get(0);
+              var tree = new ModuleDependencyTree(parseDep(rootLine));
+              parseDependencyTree(
+                  rootLine,
+                  0,
+                  moduleLines.subList(1, moduleLines.size()).toArray(String[]::new),
+                  (from, to) -> tree.edges.add(new AbstractMap.SimpleImmutableEntry<>(from, to)));
+              var modulePom = modulesPoms.get(moduleKey(tree.root));
+              if (modulePom != null) {
+                try {
+                  tree.ignored.addAll(getIgnoredDeps(modulePom));
+                } catch (IOException e) {
+                  throw new RuntimeException(e);
+                }
+              }
+              return tree;
+            })
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * Merge the modules' dependency trees into a single SBOM, rooted at the aggregator, having the
+   * modules as its direct dependencies. Each module's ignored dependencies are filtered out of its
+   * own tree only.
+   *
+   * @param trees the modules' dependency trees, in reactor build order
+   * @param aggregatorModule the groupId:artifactId of the analyzed pom, which is not necessarily
+   *     built first, as maven orders the modules by their dependencies on each other
+   */
+  private Sbom buildReactorSbom(List<ModuleDependencyTree> trees, String aggregatorModule)
+      throws IOException {
+    var sbom = SbomFactory.newInstance(Sbom.BelongingCondition.PURL, "sensitive");
+    var aggregator =
+        trees.stream()
+            .filter(tree -> aggregatorModule.equals(moduleKey(tree.root)))
+            .findFirst()
+            .orElse(trees.get(0));
+    sbom.addRoot(aggregator.root);
+    for (ModuleDependencyTree tree : trees) {
+      if (tree != aggregator) {
+        sbom.addDependency(aggregator.root, tree.root);
+      }
+      tree.addTo(sbom);
+    }
+    return sbom;
   }
 
   private Sbom buildSbomFromTextFormat(Path textFormatFile) throws IOException {
@@ -151,28 +280,43 @@ private PackageURL txtPkgToPurl(String dotPkg) {
   public Content provideComponent(byte[] manifestContent) throws IOException {
     // save content in temporary file
     var originPom = Files.createTempFile("exhort_orig_pom_", ".xml");
-    Files.write(originPom, manifestContent);
-    // build effective pom command
-    Content content = generateSbomFromEffectivePom(originPom);
-    Files.delete(originPom);
-    return content;
+    try {
+      Files.write(originPom, manifestContent);
+      // build effective pom command
+      return generateSbomFromEffectivePom(originPom);
+    } finally {
+      Files.deleteIfExists(originPom);
+    }
   }
 
   private Content generateSbomFromEffectivePom(Path originPom) throws IOException {
-    // check for custom mvn executable
-    var mvn = Operations.getCustomPathOrElse("mvn");
-    var tmpEffPom = Files.createTempFile("exhort_eff_pom_", ".xml");
-    var mvnEffPomCmd =
-        new String[] {
-          mvn,
-          "clean",
-          "help:effective-pom",
-          String.format("-Doutput=%s", tmpEffPom.toString()),
-          "-f",
-          originPom.toString()
-        };
-    // execute the effective pom command
-    Operations.runProcess(mvnEffPomCmd, getMvnExecEnvs());
+    // if we have dependencies marked as ignored grab ignored dependencies from the original pom
+    // the effective-pom goal doesn't carry comments
+    var originContent = readPom(originPom);
+    var cache = getEffectivePomCache();
+    var cacheKey = cache != null ? getEffectivePomCacheKey(originPom, originContent) : null;
+    var tmpEffPom = cacheKey != null ? cache.get(cacheKey).orElse(null) : null;
+    Path generatedEffPom = null;
+    try {
+      if (tmpEffPom == null) {
+        generatedEffPom = generateEffectivePom(originPom);
+        tmpEffPom = generatedEffPom;
+        if (cacheKey != null) {
+          cache.put(cacheKey, generatedEffPom);
+        }
+      } else if (debugLoggingIsNeeded()) {
+        log.info(String.format("Using cached effective POM %s", tmpEffPom));
+      }
+      return generateSbomFromEffectivePom(originContent, tmpEffPom);
+    } finally {
+      if (generatedEffPom != null) {
+        Files.deleteIfExists(generatedEffPom);
+      }
+    }
+  }
+
+  private Content generateSbomFromEffectivePom(PomContent originContent, Path tmpEffPom)
+      throws IOException {
     if (debugLoggingIsNeeded()) {
       String CaEffectivePoM = Files.readString(tmpEffPom);
       log.info(
@@ -180,76 +324,315 @@ private Content generateSbomFromEffectivePom(Path originPom) throws IOException
               "Package Manager Maven Component Analysis Effective POM Output : %s %s",
               System.lineSeparator(), CaEffectivePoM));
     }
-    // if we have dependencies marked as ignored grab ignored dependencies from the original pom
-    // the effective-pom goal doesn't carry comments
-    List<DependencyAggregator> dependencies = getDependencies(originPom);
     var ignored =
-        dependencies.stream()
+        originContent.dependencies.stream()
             .filter(d -> d.ignored)
-            .map(DependencyAggregator::toPurl)
+            .map(d -> d.toPurl().getCoordinates())
             .collect(Collectors.toSet());
     var testsDeps =
-        dependencies.stream()
+        originContent.dependencies.stream()
             .filter(DependencyAggregator::isTestDependency)
             .collect(Collectors.toSet());
-    var deps = getDependencies(tmpEffPom);
-    var sbom = SbomFactory.newInstance().addRoot(getRoot(tmpEffPom));
-    deps.stream()
+    var effectiveContent = readPom(tmpEffPom);
+    if (effectiveContent.root == null) {
+      throw new IllegalStateException("Unable to retrieve Root dependency from effective pom");
+    }
+    var sbom = SbomFactory.newInstance().addRoot(effectiveContent.root);
+    effectiveContent.dependencies.stream()
         .filter(dep -> !testsDeps.contains(dep))
         .map(DependencyAggregator::toPurl)
-        .filter(
-            dep ->
-                ignored.stream()
-                        .filter(artifact -> artifact.isCoordinatesEquals(dep))
-                        .collect(Collectors.toList())
-                        .size()
-                    == 0)
+        .filter(dep -> !ignored.contains(dep.getCoordinates()))
         .forEach(d -> sbom.addDependency(sbom.getRoot(), d));
 
     // build and return content for constructing request to the backend
     return new Content(sbom.getAsJsonString().getBytes(), Api.CYCLONEDX_MEDIA_TYPE);
   }
 
+  private Path generateEffectivePom(Path originPom) throws IOException {
+    var tmpEffPom = Files.createTempFile("exhort_eff_pom_", ".xml");
+    var mvnEffPomCmd = new ArrayList<String>();
+    if (!isSingleInvocationMode()) {
+      mvnEffPomCmd.add("clean");
+    }
+    mvnEffPomCmd.add("help:effective-pom");
+    mvnEffPomCmd.add(String.format("-Doutput=%s", tmpEffPom.toString()));
+    // execute the effective pom command
+    Operations.runProcess(
+        buildMvnCommand(originPom, mvnEffPomCmd.toArray(String[]::new)).toArray(String[]::new),
+        getMvnExecEnvs());
+    return tmpEffPom;
+  }
+
+  private static DiskCache getEffectivePomCache() {
+    if (!getBooleanValueEnvironment("EXHORT_MVN_EFFECTIVE_POM_CACHE", "false")) {
+      return null;
+    }
+    // a single instance per directory, so its evictions aren't raced by other instances
+    return EFFECTIVE_POM_CACHES.computeIfAbsent(
+        DiskCache.getCacheDirectory("effective-pom"),
+        directory ->
+            new DiskCache(
+                directory,
+                Integer.parseInt(
+                    getStringValueEnvironment("EXHORT_MVN_EFFECTIVE_POM_CACHE_MAX_ENTRIES", "256")
+                        .trim()),
+                Long.parseLong(
+                        getStringValueEnvironment(
+                                "EXHORT_MVN_EFFECTIVE_POM_CACHE_MAX_SIZE_MB", "64")
+                            .trim())
+                    * 1024
+                    * 1024));
+  }
+
+  /**
+   * The effective pom is determined by the pom itself, its parents, the imported boms, the maven
+   * settings and configuration and the java runtime used for activating profiles. The poms found
+   * locally are part of the key by their content, and the parents and boms resolved from a
+   * repository by their coordinates, which are part of the content of the poms declaring them. A
+   * released artifact never changes, so only a snapshot parent or bom bypasses the cache.
+   *
+   * @return the cache key, or null if the effective pom shouldn't be cached
+   */
+  private String getEffectivePomCacheKey(Path originPom, PomContent originContent)
+      throws IOException {
+    List<byte[]> parts = new ArrayList<>();
+    List<PomContent> chain = new ArrayList<>();
+    Set<Path> visited = new HashSet<>();
+    var pom = originPom.toAbsolutePath().normalize();
+    var content = originContent;
+    while (pom != null && visited.add(pom)) {
+      parts.add(Files.readAllBytes(pom));
+      chain.add(content);
+      pom = getLocalParentPom(pom, content);
+      content = pom != null ? readPom(pom) : null;
+    }
+    for (PomContent pomContent : chain) {
+      if (pomContent.hasParent && isSnapshot(pomContent.parentVersion, chain)
+          || pomContent.dependencies.stream()
+              .anyMatch(dep -> "import".equals(dep.scope) && isSnapshot(dep.version, chain))) {
+        return null;
+      }
+    }
+    var userSettings = Path.of(System.getProperty("user.home"), ".m2", "settings.xml");
+    parts.add(readIfExists(userSettings));
+    var mvn = getMvnExecutable(isSingleInvocationMode());
+    var mavenHome = getMavenHome(mvn);
+    parts.add(
+        mavenHome != null
+            ? readIfExists(mavenHome.resolve("conf").resolve("settings.xml"))
+            : new byte[0]);
+    var mavenConfig = getMavenConfig(originPom.toAbsolutePath().normalize().getParent());
+    parts.add(mavenConfig != null ? Files.readAllBytes(mavenConfig) : new byte[0]);
+    var javaHome = getStringValueEnvironment("JAVA_HOME", "");
+    parts.add(javaHome.getBytes());
+    parts.add(mvn.getBytes());
+    return DiskCache.key(parts.toArray(byte[][]::new));
+  }
+
+  /**
+   * Check whether a version is a snapshot, resolving a version property out of the poms found
+   * locally, the child first. A property which isn't found there is defined by a parent resolved
+   * from a repository, which is a released one, so its value doesn't change.
+   *
+   * @param version the version, i.e. {@code 1.0-SNAPSHOT} or {@code ${spring-boot.version}}
+   * @param chain the content of the pom and of its parents found locally
+   * @return whether the version is a snapshot
+   */
+  private static boolean isSnapshot(String version, List<PomContent> chain) {
+    Set<String> resolved = new HashSet<>();
+    while (version != null && version.startsWith("${") && version.endsWith("}")) {
+      var property = version.substring(2, version.length() - 1);
+      if (!resolved.add(property)) {
+        return false;
+      }
+      String value = null;
+      for (PomContent pomContent : chain) {
+        value =
+            "project.version".equals(property) || "pom.version".equals(property)
+                ? pomContent.version != null ? pomContent.version : pomContent.parentVersion
+                : pomContent.properties.get(property);
+        if (value != null) {
+          break;
+        }
+      }
+      version = value;
+    }
+    return version != null && version.endsWith("-SNAPSHOT");
+  }
+
+  private static byte[] readIfExists(Path file) throws IOException {
+    return Files.isRegularFile(file) ? Files.readAllBytes(file) : new byte[0];
+  }
+
+  /**
+   * Get the maven installation directory, set with system property maven.home or environment
+   * variable MAVEN_HOME, or else the one of the maven executable.
+   *
+   * @return the maven home, or null if not found
+   */
+  private static Path getMavenHome(String mvn) {
+    var mavenHome = getStringValueEnvironment("MAVEN_HOME", System.getProperty("maven.home", ""));
+    if (!mavenHome.isBlank()) {
+      return Path.of(mavenHome.trim());
+    }
+    List<Path> candidates = new ArrayList<>();
+    if (Path.of(mvn).isAbsolute()) {
+      candidates.add(Path.of(mvn));
+    } else {
+      for (String dir : System.getenv().getOrDefault("PATH", "").split(File.pathSeparator)) {
+        if (!dir.isBlank()) {
+          candidates.add(Path.of(dir, mvn));
+        }
+      }
+    }
+    for (Path candidate : candidates) {
+      if (Files.isRegularFile(candidate)) {
+        try {
+          // the executable is at ${maven.home}/bin, usually linked from the path
+          var bin = candidate.toRealPath().getParent();
+          return bin != null ? bin.getParent() : null;
+        } catch (IOException e) {
+          return null;
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Get the .mvn/maven.config of the project, which is found at the first directory holding a .mvn
+   * directory, from the pom's directory upwards.
+   *
+   * @return the maven.config file, or null if not found
+   */
+  private static Path getMavenConfig(Path pomDir) {
+    for (var dir = pomDir; dir != null; dir = dir.getParent()) {
+      if (Files.isDirectory(dir.resolve(".mvn"))) {
+        var mavenConfig = dir.resolve(".mvn").resolve("maven.config");
+        return Files.isRegularFile(mavenConfig) ? mavenConfig : null;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Get the parent pom of the given pom from the local file system, using the parent's relativePath
+   * (defaults to ../pom.xml).
+   *
+   * @return the parent pom path, or null if the pom has no parent or it's not found locally
+   */
+  private static Path getLocalParentPom(Path pom, PomContent content) {
+    if (!content.hasParent || content.parentRelativePath.isEmpty()) {
+      return null;
+    }
+    var parentPom = pom.getParent().resolve(content.parentRelativePath).normalize();
+    if (Files.isDirectory(parentPom)) {
+      parentPom = parentPom.resolve("pom.xml");
+    }
+    return Files.isRegularFile(parentPom) ? parentPom : null;
+  }
+
   @Override
   public Content provideComponent(Path manifestPath) throws IOException {
     Content content = generateSbomFromEffectivePom(manifestPath);
     return content;
   }
 
-  private PackageURL getRoot(final Path manifestPath) throws IOException {
+  /**
+   * Read a pom file in a single pass, collecting its root coordinates, dependencies (including
+   * their scopes and ignore markers), groupId, artifactId, version, properties, modules and parent
+   * relative path, groupId and version.
+   *
+   * @param manifestPath the pom file
+   * @return the content of the pom
+   * @throws IOException when failed to read or parse the pom
+   */
+  private PomContent readPom(final Path manifestPath) throws IOException {
+    var content = new PomContent();
     XMLStreamReader reader = null;
-    try {
-      reader =
-          XMLInputFactory.newInstance().createXMLStreamReader(Files.newInputStream(manifestPath));
+    try (var is = Files.newInputStream(manifestPath)) {
+      // get a xml stream reader for the manifest file
+      reader = XML_INPUT_FACTORY.createXMLStreamReader(is);
+      // the root is the first complete coordinates found in the pom, it's aggregated over the
+      // iterations until then
+      var rootAggregator = new DependencyAggregator();
+      // the following dependencyAggregator object is used to aggregate dependency data over
+      // iterations, when a "dependency" tag starts, it will be initiated,
+      // when a "dependency" tag ends, it will be added to the dependencies, and reset
       DependencyAggregator dependencyAggregator = null;
-      boolean isRoot = false;
+      boolean inModules = false;
+      boolean inParent = false;
+      boolean inProperties = false;
+      // the depth of the current element, the project element is at depth 1
+      int depth = 0;
       while (reader.hasNext()) {
         reader.next(); // get the next event
-        if (reader.isStartElement() && "project".equals(reader.getLocalName())) {
-          isRoot = true;
-          dependencyAggregator = new DependencyAggregator();
-          continue;
-        }
-        if (!Objects.isNull(dependencyAggregator)) {
-          if (reader.isStartElement()) {
-            switch (reader.getLocalName()) {
-              case "groupId": // starting "groupId" tag, get next event and set to aggregator
-                reader.next();
-                dependencyAggregator.groupId = reader.getText();
-                break;
-              case "artifactId": // starting "artifactId" tag, get next event and set to aggregator
-                reader.next();
-                dependencyAggregator.artifactId = reader.getText();
-                break;
-              case "version": // starting "version" tag, get next event and set to aggregator
-                reader.next();
-                dependencyAggregator.version = reader.getText();
-                break;
+        if (reader.isStartElement()) {
+          depth++;
+          var name = reader.getLocalName();
+          if ("dependency".equals(name)) {
+            // starting "dependency" tag, initiate aggregator
+            dependencyAggregator = new DependencyAggregator();
+          } else if (depth == 2 && "modules".equals(name)) {
+            inModules = true;
+          } else if (depth == 2 && "parent".equals(name)) {
+            inParent = true;
+            content.hasParent = true;
+          } else if (depth == 2 && "properties".equals(name)) {
+            inProperties = true;
+          } else if (depth == 3 && inProperties) {
+            content.properties.put(name, readElementText(reader));
+            depth--;
+          } else if (TEXT_ELEMENTS.contains(name)) {
+            var text = readElementText(reader);
+            depth--;
+            if (content.root == null && COORDINATES_ELEMENTS.contains(name)) {
+              setCoordinate(rootAggregator, name, text);
+              if (rootAggregator.isValid()) {
+                content.root = rootAggregator.toPurl();
+              }
+            }
+            // NOTE as before, coordinates nested deeper in the dependency (i.e. exclusions) are
+            // aggregated too
+            if (!Objects.isNull(dependencyAggregator)) {
+              if ("scope".equals(name)) {
+                dependencyAggregator.scope = text.isEmpty() ? "*" : text;
+              } else {
+                setCoordinate(dependencyAggregator, name, text);
+              }
+            } else if (depth == 1 && "groupId".equals(name)) {
+              content.groupId = text;
+            } else if (depth == 1 && "artifactId".equals(name)) {
+              content.artifactId = text;
+            } else if (depth == 1 && "version".equals(name)) {
+              content.version = text;
+            } else if (depth == 2 && inModules && "module".equals(name)) {
+              content.modules.add(text);
+            } else if (depth == 2 && inParent && "relativePath".equals(name)) {
+              content.parentRelativePath = text;
+            } else if (depth == 2 && inParent && "groupId".equals(name)) {
+              content.parentGroupId = text;
+            } else if (depth == 2 && inParent && "version".equals(name)) {
+              content.parentVersion = text;
             }
           }
-          if (isRoot && dependencyAggregator.isValid()) {
-            return dependencyAggregator.toPurl();
+        } else if (reader.isEndElement()) {
+          depth--;
+          var name = reader.getLocalName();
+          if ("dependency".equals(name) && !Objects.isNull(dependencyAggregator)) {
+            // add object to list and reset dependency aggregator
+            content.dependencies.add(dependencyAggregator);
+            dependencyAggregator = null;
+          } else if (depth == 1) {
+            inModules = false;
+            inParent = false;
+            inProperties = false;
           }
+        } else if (!Objects.isNull(dependencyAggregator)
+            && reader.getEventType() == XMLStreamConstants.COMMENT
+            && "exhortignore".equals(reader.getText().strip())) {
+          // if we hit an ignore comment, mark aggregator to be ignored
+          dependencyAggregator.ignored = true;
         }
       }
     } catch (XMLStreamException exc) {
@@ -263,84 +646,141 @@ private PackageURL getRoot(final Path manifestPath) throws IOException {
         }
       }
     }
+    return content;
+  }
+
+  private static void setCoordinate(DependencyAggregator aggregator, String name, String text) {
+    switch (name) {
+      case "groupId":
+        aggregator.groupId = text;
+        break;
+      case "artifactId":
+        aggregator.artifactId = text;
+        break;
+      case "version":
+        aggregator.version = text;
+        break;
+    }
+  }
 
-    throw new IllegalStateException("Unable to retrieve Root dependency from effective pom");
+  /** Read the text of the current element, skipping comments and nested elements. */
+  private static String readElementText(XMLStreamReader reader) throws XMLStreamException {
+    var text = new StringBuilder();
+    int depth = 1;
+    while (depth > 0 && reader.hasNext()) {
+      int event = reader.next();
+      if (event == XMLStreamConstants.START_ELEMENT) {
+        depth++;
+      } else if (event == XMLStreamConstants.END_ELEMENT) {
+        depth--;
+      } else if (depth == 1
+          && (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA)) {
+        text.append(reader.getText());
+      }
+    }
+    return text.toString().trim();
   }
 
   private List<DependencyAggregator> getDependencies(final Path manifestPath) throws IOException {
-    List<DependencyAggregator> deps = new ArrayList<>();
-    XMLStreamReader reader = null;
-    try {
-      // get a xml stream reader for the manifest file
-      reader =
-          XMLInputFactory.newInstance().createXMLStreamReader(Files.newInputStream(manifestPath));
-      // the following dependencyIgnore object is used to aggregate dependency data over iterations
-      // when a "dependency" tag starts, it will be initiated,
-      // when a "dependency" tag ends, it will be parsed, act upon, and reset
-      DependencyAggregator dependencyAggregator = null;
-      while (reader.hasNext()) {
-        reader.next(); // get the next event
-        if (reader.isStartElement() && "dependency".equals(reader.getLocalName())) {
-          // starting "dependency" tag, initiate aggregator
-          dependencyAggregator = new DependencyAggregator();
-          continue;
-        }
+    return readPom(manifestPath).dependencies;
+  }
 
-        // if dependency aggregator haven't been initiated,
-        // we're currently not iterating over a "dependency" tag - no need for further parsing
-        if (!Objects.isNull(dependencyAggregator)) {
-          // if we hit an ignore comment, mark aggregator to be ignored
-          if (reader.getEventType() == XMLStreamConstants.COMMENT
-              && "exhortignore".equals(reader.getText().strip())) {
-            dependencyAggregator.ignored = true;
-            continue;
-          }
+  private List<String> getIgnoredDeps(Path manifestPath) throws IOException {
+    return getDependencies(manifestPath).stream()
+        .filter(d -> d.ignored)
+        .map(DependencyAggregator::toPurl)
+        .map(PackageURL::getCoordinates)
+        .collect(Collectors.toList());
+  }
 
-          if (reader.isStartElement()) {
-            // NOTE if we want to include "scope" tags in ignore,
-            // add a case here and a property in DependencyIgnore
-            switch (reader.getLocalName()) {
-              case "groupId": // starting "groupId" tag, get next event and set to aggregator
-                reader.next();
-                dependencyAggregator.groupId = reader.getText();
-                break;
-              case "artifactId": // starting "artifactId" tag, get next event and set to aggregator
-                reader.next();
-                dependencyAggregator.artifactId = reader.getText();
-                break;
-
-              case "scope":
-                reader.next();
-                dependencyAggregator.scope =
-                    reader.getText() != null ? reader.getText().trim() : "*";
-                break;
-              case "version": // starting "version" tag, get next event and set to aggregator
-                reader.next();
-                dependencyAggregator.version = reader.getText();
-                break;
-            }
-          }
+  /**
+   * Get the poms of all the modules of a reactor, recursively, including the aggregator pom itself
+   * as the first entry.
+   *
+   * @param manifestPath the aggregator pom.xml
+   * @return the modules' poms by their groupId:artifactId
+   * @throws IllegalStateException when two modules have the same groupId:artifactId
+   */
+  Map<String, Path> getModulesPoms(Path manifestPath) throws IOException {
+    Map<String, Path> modulesPoms = new LinkedHashMap<>();
+    collectModulesPoms(manifestPath, modulesPoms);
+    return modulesPoms;
+  }
 
-          if (reader.isEndElement() && "dependency".equals(reader.getLocalName())) {
-            // add object to list and reset dependency aggregator
-            deps.add(dependencyAggregator);
-            dependencyAggregator = null;
-          }
-        }
+  private void collectModulesPoms(Path pom, Map<String, Path> modulesPoms) throws IOException {
+    var content = readPom(pom);
+    var groupId = content.groupId != null ? content.groupId : content.parentGroupId;
+    if (content.artifactId == null) {
+      return;
+    }
+    var key = groupId + ":" + content.artifactId;
+    var otherPom = modulesPoms.get(key);
+    if (otherPom != null) {
+      if (otherPom.toAbsolutePath().normalize().equals(pom.toAbsolutePath().normalize())) {
+        return;
       }
-    } catch (XMLStreamException exc) {
-      throw new IOException(exc);
-    } finally {
-      if (!Objects.isNull(reader)) {
-        try {
-          reader.close(); // close stream if open
-        } catch (XMLStreamException e) {
-          //
-        }
+      throw new IllegalStateException(
+          String.format(
+              "Reactor modules %s and %s have the same coordinates %s", otherPom, pom, key));
+    }
+    modulesPoms.put(key, pom);
+    for (String module : content.modules) {
+      // a module is either a directory containing a pom.xml, or a path to a pom file
+      var modulePath = pom.toAbsolutePath().getParent().resolve(module).normalize();
+      var modulePom = Files.isDirectory(modulePath) ? modulePath.resolve("pom.xml") : modulePath;
+      if (Files.isRegularFile(modulePom)) {
+        collectModulesPoms(modulePom, modulesPoms);
       }
     }
+  }
+
+  private static String moduleKey(PackageURL module) {
+    return module.getNamespace() + ":" + module.getName();
+  }
+
+  /**
+   * Build a maven command line for the given goals and arguments against the given manifest. In
+   * single invocation mode (EXHORT_MVN_SINGLE_INVOCATION=true), the command runs in batch mode
+   * without transfer progress and build output, optionally offline (EXHORT_MVN_OFFLINE=true), and
+   * is executed by the maven daemon (mvnd) when available and no custom mvn executable was set.
+   *
+   * @param manifestPath the pom.xml to run the command against
+   * @param goalsAndArgs maven goals and arguments to invoke
+   * @return the command parts list
+   */
+  List<String> buildMvnCommand(Path manifestPath, String... goalsAndArgs) {
+    List<String> cmd = new ArrayList<>();
+    boolean singleInvocation = isSingleInvocationMode();
+    cmd.add(getMvnExecutable(singleInvocation));
+    cmd.addAll(Arrays.asList(goalsAndArgs));
+    if (singleInvocation) {
+      cmd.add("-B");
+      cmd.add("-q");
+      cmd.add("--no-transfer-progress");
+      if (getBooleanValueEnvironment("EXHORT_MVN_OFFLINE", "false")) {
+        cmd.add("-o");
+      }
+    }
+    cmd.add("-f");
+    cmd.add(manifestPath.toString());
+    return cmd;
+  }
+
+  private static boolean isSingleInvocationMode() {
+    return getBooleanValueEnvironment("EXHORT_MVN_SINGLE_INVOCATION", "false");
+  }
 
-    return deps;
+  private static String getMvnExecutable(boolean singleInvocation) {
+    // check for custom mvn executable
+    var mvn = Operations.getCustomPathOrElse("mvn");
+    if (singleInvocation && "mvn".equals(mvn)) {
+      // prefer the maven daemon, it saves the jvm and maven startup on each invocation
+      var mvnd = Operations.getCustomPathOrElse("mvnd");
+      if (!"mvnd".equals(mvnd) || Operations.isExecutableOnPath(mvnd)) {
+        return mvnd;
+      }
+    }
+    return mvn;
   }
 
   Map<String, String> getMvnExecEnvs() {
@@ -351,6 +791,63 @@ Map<String, String> getMvnExecEnvs() {
     return null;
   }
 
+  /** Content of a pom file collected in a single pass, see {@link #readPom(Path)}. */
+  private static final class PomContent {
+    private PackageURL root;
+    private final List<DependencyAggregator> dependencies = new ArrayList<>();
+    private String groupId;
+    private String artifactId;
+    private final List<String> modules = new ArrayList<>();
+    private boolean hasParent = false;
+    private String parentRelativePath = "../pom.xml";
+    private String parentGroupId;
+    private String parentVersion;
+    private String version;
+    private final Map<String, String> properties = new HashMap<>();
+  }
+
+  /** Dependency tree of a single reactor module, holding its edges and ignored dependencies. */
+  private final class ModuleDependencyTree {
+    private final PackageURL root;
+    private final List<Map.Entry<PackageURL, PackageURL>> edges = new ArrayList<>();
+    private final List<String> ignored = new ArrayList<>();
+
+    private ModuleDependencyTree(PackageURL root) {
+      this.root = root;
+    }
+
+    private Sbom toSbom() {
+      var sbom = SbomFactory.newInstance(Sbom.BelongingCondition.PURL, "sensitive");
+      sbom.addRoot(root);
+      edges.forEach(edge -> sbom.addDependency(edge.getKey(), edge.getValue()));
+      return sbom.filterIgnoredDeps(ignored);
+    }
+
+    /**
+     * Add the module's dependencies to a reactor SBOM, leaving out the ones filtered out of the
+     * module's own SBOM, so its ignored dependencies don't affect the other modules.
+     */
+    private void addTo(Sbom sbom) {
+      if (ignored.isEmpty()) {
+        edges.forEach(edge -> sbom.addDependency(edge.getKey(), edge.getValue()));
+        return;
+      }
+      Set<String> kept = toSbom().getComponentRefs();
+      Map<String, PackageURL> orphans = new LinkedHashMap<>();
+      for (Map.Entry<PackageURL, PackageURL> edge : edges) {
+        boolean keptSource = kept.contains(edge.getKey().getCoordinates());
+        boolean keptTarget = kept.contains(edge.getValue().getCoordinates());
+        if (keptSource && keptTarget) {
+          sbom.addDependency(edge.getKey(), edge.getValue());
+        } else if (keptTarget) {
+          // the dependencies of an ignored dependency are kept by the sensitive ignore method
+          orphans.put(edge.getValue().getCoordinates(), edge.getValue());
+        }
+      }
+      orphans.values().forEach(sbom::addComponent);
+    }
+  }
+
   // NOTE if we want to include "scope" tags in ignore,
   // add property here and a case in the start-element-switch in the getIgnored method
   /** Aggregator class for aggregating Dependency data over stream iterations, * */
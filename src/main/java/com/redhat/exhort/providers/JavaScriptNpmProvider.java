@@ -16,9 +16,10 @@
 package com.redhat.exhort.providers;
 
 import static com.redhat.exhort.impl.ExhortApi.debugLoggingIsNeeded;
+import static com.redhat.exhort.impl.ExhortApi.getBooleanValueEnvironment;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.packageurl.MalformedPackageURLException;
@@ -32,15 +33,25 @@
 import com.redhat.exhort.tools.Operations;
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Concrete implementation of the {@link Provider} used for converting dependency trees for npm
@@ -50,6 +61,10 @@ public final class JavaScriptNpmProvider extends Provider {
 
   private System.Logger log = System.getLogger(this.getClass().getName());
 
+  // the files npm resolves the dependency tree out of, copied to the scratch directory
+  private static final List<String> SCRATCH_COPY_FILES =
+      List.of("package.json", "package-lock.json", "npm-shrinkwrap.json", ".npmrc");
+
   public JavaScriptNpmProvider() {
     super(Type.NPM);
   }
@@ -79,20 +94,112 @@ public Content provideComponent(Path manifestPath) throws IOException {
         Api.CYCLONEDX_MEDIA_TYPE);
   }
 
+  @Override
+  public Content provideBatchStack(final Path manifestPath) throws IOException {
+    if (!getBooleanValueEnvironment("EXHORT_NPM_WORKSPACES_ENABLED", "false")) {
+      return super.provideBatchStack(manifestPath);
+    }
+    var manifest = objectMapper.readTree(manifestPath.toFile());
+    var workspaces = JavaScriptWorkspaces.getWorkspaceManifests(manifestPath, manifest);
+    if (workspaces.isEmpty()) {
+      return super.provideBatchStack(manifestPath);
+    }
+    var rootDir = manifestPath.toAbsolutePath().getParent();
+    List<Path> projects = new ArrayList<>();
+    projects.add(manifestPath.toAbsolutePath());
+    projects.addAll(workspaces);
+    var packageLock = getWorkspacesPackageLock(rootDir, projects);
+    // build the projects' SBOMs in parallel out of the shared lock file, root project first
+    Map<String, JsonNode> sboms =
+        projects.parallelStream()
+            .collect(
+                Collectors.toMap(
+                    project -> getWorkspacePurl(project),
+                    project -> {
+                      try {
+                        var location =
+                            JavaScriptWorkspaces.getLocation(rootDir, project.getParent());
+                        var sbom =
+                            buildSbomFromPackageLock(
+                                    packageLock,
+                                    location,
+                                    objectMapper.readTree(project.toFile()),
+                                    true)
+                                .filterIgnoredDeps(getIgnoredDeps(project));
+                        return objectMapper.readTree(sbom.getAsJsonString());
+                      } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                      }
+                    },
+                    (first, second) -> first,
+                    LinkedHashMap::new));
+    return new Content(objectMapper.writeValueAsBytes(sboms), Api.CYCLONEDX_MEDIA_TYPE);
+  }
+
+  /**
+   * Get the lock file shared by the root project and its workspaces, resolving it once with npm if
+   * missing or not up-to-date with any of the projects. npm runs on a scratch copy of the root
+   * project and its workspaces, so it does not write to the project.
+   */
+  private PackageLock getWorkspacesPackageLock(Path rootDir, List<Path> projects)
+      throws IOException {
+    var packageLockJson = rootDir.resolve("package-lock.json");
+    if (Files.isRegularFile(packageLockJson)) {
+      var packageLock = parsePackageLock(packageLockJson);
+      var upToDate = true;
+      for (Path project : projects) {
+        var location = JavaScriptWorkspaces.getLocation(rootDir, project.getParent());
+        upToDate &= isUpToDate(packageLock, location, objectMapper.readTree(project.toFile()));
+      }
+      if (upToDate) {
+        return packageLock;
+      }
+    }
+    var scratchDir = createScratchCopy(rootDir, projects);
+    var projectDir = scratchDir != null ? scratchDir : rootDir;
+    try {
+      var npm = Operations.getCustomPathOrElse("npm");
+      Operations.runProcess(
+          new String[] {npm, "i", "--package-lock-only", "--prefix", projectDir.toString()},
+          getNpmExecEnv());
+      return parsePackageLock(projectDir.resolve("package-lock.json"));
+    } finally {
+      deleteScratchDir(scratchDir);
+    }
+  }
+
+  private String getWorkspacePurl(Path project) {
+    try {
+      var manifest = objectMapper.readTree(project.toFile());
+      return toPurl(manifest.get("name").asText(), getVersion(manifest)).canonicalize();
+    } catch (IOException | MalformedPackageURLException e) {
+      throw new IllegalArgumentException("Unable to parse " + project, e);
+    }
+  }
+
   private Sbom getDependencyTree(byte[] manifestContent) {
     Sbom sbom;
+    Path tempDir = null;
     try {
-      Path tempDir = Files.createTempDirectory("exhort_npm");
+      tempDir = Files.createTempDirectory("exhort_npm");
       Path path = Files.createFile(Path.of(tempDir.toString(), "package.json"));
       Files.write(path, manifestContent);
+      // the manifest is already in a scratch directory of its own
       sbom = getDependencySbom(path, false, true);
-      Files.delete(path);
     } catch (IOException e) {
       throw new RuntimeException(e);
+    } finally {
+      deleteScratchDir(tempDir);
     }
     return sbom;
   }
 
+  /** The version of a package.json, which is optional for the root of a workspaces monorepo. */
+  private static String getVersion(JsonNode manifest) {
+    var version = manifest.get("version");
+    return version == null ? null : version.asText();
+  }
+
   private PackageURL getRoot(JsonNode jsonDependenciesNpm) throws MalformedPackageURLException {
     return toPurl(
         jsonDependenciesNpm.get("name").asText(), jsonDependenciesNpm.get("version").asText());
@@ -106,7 +213,13 @@ private PackageURL toPurl(String name, String version) throws MalformedPackageUR
     return new PackageURL(Ecosystem.Type.NPM.getType(), null, parts[0], version, null, null);
   }
 
-  private void addDependenciesOf(Sbom sbom, PackageURL from, JsonNode dependencies)
+  /**
+   * Add the dependencies listed by npm ls under the given package, reading only its direct
+   * dependencies field. A package appearing several times in the listing is expanded once, its
+   * other occurrences only add the edge to it.
+   */
+  private void addDependenciesOf(
+      Sbom sbom, PackageURL from, JsonNode dependencies, Set<PackageURL> expanded)
       throws MalformedPackageURLException {
     Iterator<Entry<String, JsonNode>> fields = dependencies.fields();
     while (fields.hasNext()) {
@@ -119,90 +232,378 @@ private void addDependenciesOf(Sbom sbom, PackageURL from, JsonNode dependencies
       String version = versionNode.asText();
       PackageURL purl = toPurl(name, version);
       sbom.addDependency(from, purl);
-      JsonNode transitiveDeps = e.getValue().findValue("dependencies");
-      if (transitiveDeps != null) {
-        addDependenciesOf(sbom, purl, transitiveDeps);
+      JsonNode transitiveDeps = e.getValue().get("dependencies");
+      // deduped occurrences have no dependencies, the package is expanded where they are listed
+      if (transitiveDeps != null && expanded.add(purl)) {
+        addDependenciesOf(sbom, purl, transitiveDeps, expanded);
       }
     }
   }
 
-  private Sbom getDependencySbom(
-      Path manifestPath, boolean includeTransitive, boolean deletePackageLock) throws IOException {
-    var npmListResult = buildNpmDependencyTree(manifestPath, includeTransitive, deletePackageLock);
-    var sbom = buildSbom(npmListResult);
+  private Sbom getDependencySbom(Path manifestPath, boolean includeTransitive, boolean inScratchDir)
+      throws IOException {
+    Sbom sbom = null;
+    // an up-to-date package-lock.json already holds the resolved tree, no need to invoke npm
+    if (getBooleanValueEnvironment("EXHORT_NPM_LOCKFILE_FAST_PATH", "false")) {
+      sbom = buildSbomFromPackageLock(manifestPath, includeTransitive);
+    }
+    if (sbom == null) {
+      var npmListResult = buildNpmDependencyTree(manifestPath, includeTransitive, inScratchDir);
+      sbom = buildSbom(npmListResult);
+    }
     sbom.filterIgnoredDeps(getIgnoredDeps(manifestPath));
     return sbom;
   }
 
+  /**
+   * Build the SBOM out of the packages map of the project's package-lock.json (lockfileVersion 2 or
+   * 3), resolving each package's dependencies the way node does, omitting dev dependencies.
+   *
+   * @param manifestPath the package.json file
+   * @param includeTransitive whether to include the transitive dependencies
+   * @return the SBOM, or null if the lock file is missing, of an older version, or not up-to-date
+   *     with the package.json
+   */
+  private Sbom buildSbomFromPackageLock(Path manifestPath, boolean includeTransitive)
+      throws IOException {
+    var packageLockJson = manifestPath.getParent().resolve("package-lock.json");
+    if (!Files.isRegularFile(packageLockJson)) {
+      return null;
+    }
+    var packageLock = parsePackageLock(packageLockJson);
+    var manifest = objectMapper.readTree(manifestPath.toFile());
+    if (!isUpToDate(packageLock, "", manifest)) {
+      if (debugLoggingIsNeeded()) {
+        log.log(
+            System.Logger.Level.INFO,
+            String.format("Npm lock file %s is not up-to-date, invoking npm", packageLockJson));
+      }
+      return null;
+    }
+    return buildSbomFromPackageLock(packageLock, "", manifest, includeTransitive);
+  }
+
+  /**
+   * Build the SBOM of the package installed at the given location of the lock file, the root
+   * project or one of its workspaces.
+   */
+  private Sbom buildSbomFromPackageLock(
+      PackageLock packageLock, String rootLocation, JsonNode manifest, boolean includeTransitive) {
+    Sbom sbom = SbomFactory.newInstance();
+    try {
+      var root = toPurl(manifest.get("name").asText(), getVersion(manifest));
+      sbom.addRoot(root);
+      // each package is visited once, adding the edges to its dependencies
+      Map<String, PackageURL> purls = new HashMap<>();
+      Set<String> visited = new HashSet<>();
+      Deque<String> toVisit = new ArrayDeque<>();
+      toVisit.push(rootLocation);
+      visited.add(rootLocation);
+      while (!toVisit.isEmpty()) {
+        var location = toVisit.pop();
+        var from = location.equals(rootLocation) ? root : purls.get(location);
+        var lockedPackage = packageLock.resolveLink(location);
+        for (String name : lockedPackage.dependencies) {
+          var dependencyLocation = packageLock.resolve(lockedPackage.location, name);
+          var dependency =
+              dependencyLocation == null ? null : packageLock.resolveLink(dependencyLocation);
+          if (dependency == null || dependency.dev || dependency.version == null) {
+            continue; // ignore optional dependencies not installed, and dev dependencies
+          }
+          var purl = purls.get(dependencyLocation);
+          if (purl == null) {
+            purl = toPurl(packageLock.getName(dependencyLocation), dependency.version);
+            purls.put(dependencyLocation, purl);
+          }
+          sbom.addDependency(from, purl);
+          if (includeTransitive && visited.add(dependencyLocation)) {
+            toVisit.push(dependencyLocation);
+          }
+        }
+      }
+    } catch (MalformedPackageURLException e) {
+      throw new IllegalArgumentException("Unable to parse npm lock file", e);
+    }
+    return sbom;
+  }
+
+  /**
+   * The lock file is up-to-date when the package at the given location, the root project or one of
+   * its workspaces, declares the same dependencies as its package.json, the same check npm does
+   * before reusing it.
+   */
+  private static boolean isUpToDate(PackageLock packageLock, String location, JsonNode manifest) {
+    var rootPackage = packageLock.packages.get(location);
+    if (packageLock.lockfileVersion < 2 || rootPackage == null) {
+      return false;
+    }
+    for (String dependencyType : PackageLock.DEPENDENCY_TYPES) {
+      Map<String, String> declared = new HashMap<>();
+      var declaredNode = manifest.get(dependencyType);
+      if (declaredNode != null) {
+        declaredNode
+            .fields()
+            .forEachRemaining(e -> declared.put(e.getKey(), e.getValue().asText()));
+      }
+      if (!declared.equals(
+          rootPackage.declaredDependencies.getOrDefault(dependencyType, Map.of()))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private PackageLock parsePackageLock(Path packageLockJson) throws IOException {
+    var packageLock = new PackageLock();
+    try (JsonParser parser = objectMapper.getFactory().createParser(packageLockJson.toFile())) {
+      expectToken(parser.nextToken(), JsonToken.START_OBJECT);
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        var field = parser.getCurrentName();
+        parser.nextToken();
+        if ("lockfileVersion".equals(field)) {
+          packageLock.lockfileVersion = parser.getIntValue();
+        } else if ("packages".equals(field)) {
+          expectToken(parser.currentToken(), JsonToken.START_OBJECT);
+          while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            var location = parser.getCurrentName();
+            expectToken(parser.nextToken(), JsonToken.START_OBJECT);
+            packageLock.packages.put(location, parseLockedPackage(parser, location));
+          }
+        } else {
+          // the legacy dependencies section of lockfileVersion 2 duplicates the packages map
+          parser.skipChildren();
+        }
+      }
+    }
+    return packageLock;
+  }
+
+  private static LockedPackage parseLockedPackage(JsonParser parser, String location)
+      throws IOException {
+    var lockedPackage = new LockedPackage(location);
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      var field = parser.getCurrentName();
+      var token = parser.nextToken();
+      switch (field) {
+        case "version":
+          lockedPackage.version = parser.getText();
+          break;
+        case "resolved":
+          lockedPackage.resolved = parser.getText();
+          break;
+        case "dev":
+          lockedPackage.dev = token == JsonToken.VALUE_TRUE;
+          break;
+        case "link":
+          lockedPackage.link = token == JsonToken.VALUE_TRUE;
+          break;
+        case "dependencies":
+        case "optionalDependencies":
+        case "peerDependencies":
+        case "devDependencies":
+          expectToken(token, JsonToken.START_OBJECT);
+          Map<String, String> declared = new HashMap<>();
+          while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            var name = parser.getCurrentName();
+            parser.nextToken();
+            declared.put(name, parser.getText());
+            // dev dependencies are only followed for the root package, and omitted from the tree
+            if (!"devDependencies".equals(field)) {
+              lockedPackage.dependencies.add(name);
+            }
+          }
+          lockedPackage.declaredDependencies.put(field, declared);
+          break;
+        default:
+          parser.skipChildren();
+      }
+    }
+    return lockedPackage;
+  }
+
+  private static void expectToken(JsonToken actual, JsonToken expected) throws IOException {
+    if (actual != expected) {
+      throw new IOException(
+          String.format("Unexpected npm lock file format, expected %s got %s", expected, actual));
+    }
+  }
+
   private JsonNode buildNpmDependencyTree(
-      Path manifestPath, boolean includeTransitive, boolean deletePackageLock)
-      throws JsonMappingException, JsonProcessingException {
-    var npm = Operations.getCustomPathOrElse("npm");
-    var npmEnvs = getNpmExecEnv();
-    // clean command used to clean build target
-    Path packageLockJson = Path.of(manifestPath.getParent().toString(), "package-lock.json");
-    var createPackageLock =
-        new String[] {
-          npm, "i", "--package-lock-only", "--prefix", manifestPath.getParent().toString()
-        };
-    // execute the clean command
-    Operations.runProcess(createPackageLock, npmEnvs);
-    String[] npmAllDeps;
-    Path workDir = null;
-    if (!manifestPath.getParent().toString().trim().contains(" ")) {
-
-      npmAllDeps =
-          new String[] {
-            npm,
-            "ls",
-            includeTransitive ? "--all" : "",
-            "--omit=dev",
-            "--package-lock-only",
-            "--json",
-            "--prefix",
-            manifestPath.getParent().toString()
-          };
-    } else {
-      npmAllDeps =
-          new String[] {
-            npm,
-            "ls",
-            includeTransitive ? "--all" : "",
-            "--omit=dev",
-            "--package-lock-only",
-            "--json"
-          };
-      workDir = manifestPath.getParent();
-    }
-    // execute the clean command
-    String npmOutput;
-    if (npmEnvs != null) {
-      npmOutput =
-          Operations.runProcessGetOutput(
-              workDir,
-              npmAllDeps,
-              npmEnvs.entrySet().stream()
-                  .map(e -> e.getKey() + "=" + e.getValue())
-                  .toArray(String[]::new));
-    } else {
-      npmOutput = Operations.runProcessGetOutput(workDir, npmAllDeps);
-    }
-    if (debugLoggingIsNeeded()) {
-      log.log(
-          System.Logger.Level.INFO,
-          String.format(
-              "Npm Listed Install Pacakges in Json : %s %s", System.lineSeparator(), npmOutput));
-    }
-    if (!includeTransitive) {
-      if (deletePackageLock) {
-        try {
-          Files.delete(packageLockJson);
-        } catch (IOException e) {
-          throw new RuntimeException(e);
+      Path manifestPath, boolean includeTransitive, boolean inScratchDir) throws IOException {
+    var scratchDir = inScratchDir ? null : createScratchCopy(manifestPath);
+    var projectDir = scratchDir != null ? scratchDir : manifestPath.getParent();
+    try {
+      var npm = Operations.getCustomPathOrElse("npm");
+      var npmEnvs = getNpmExecEnv();
+      var createPackageLock =
+          new String[] {npm, "i", "--package-lock-only", "--prefix", projectDir.toString()};
+      // execute the clean command
+      Operations.runProcess(createPackageLock, npmEnvs);
+      String[] npmAllDeps;
+      Path workDir = null;
+      if (!projectDir.toString().trim().contains(" ")) {
+
+        npmAllDeps =
+            new String[] {
+              npm,
+              "ls",
+              includeTransitive ? "--all" : "",
+              "--omit=dev",
+              "--package-lock-only",
+              "--json",
+              "--prefix",
+              projectDir.toString()
+            };
+      } else {
+        npmAllDeps =
+            new String[] {
+              npm,
+              "ls",
+              includeTransitive ? "--all" : "",
+              "--omit=dev",
+              "--package-lock-only",
+              "--json"
+            };
+        workDir = projectDir;
+      }
+      // execute the clean command
+      String npmOutput;
+      if (npmEnvs != null) {
+        npmOutput =
+            Operations.runProcessGetOutput(
+                workDir,
+                npmAllDeps,
+                npmEnvs.entrySet().stream()
+                    .map(e -> e.getKey() + "=" + e.getValue())
+                    .toArray(String[]::new));
+      } else {
+        npmOutput = Operations.runProcessGetOutput(workDir, npmAllDeps);
+      }
+      if (debugLoggingIsNeeded()) {
+        log.log(
+            System.Logger.Level.INFO,
+            String.format(
+                "Npm Listed Install Pacakges in Json : %s %s", System.lineSeparator(), npmOutput));
+      }
+      return objectMapper.readTree(npmOutput);
+    } finally {
+      deleteScratchDir(scratchDir);
+    }
+  }
+
+  /**
+   * Copy the files npm resolves the dependency tree out of to a scratch directory, so npm does not
+   * write to the project, and concurrent analyses of the same project do not race on its
+   * package-lock.json. The package.json files of the project's workspaces are copied as well.
+   *
+   * @param manifestPath the project's package.json
+   * @return the scratch directory, or null if the project is to be analyzed in place, when disabled
+   *     or when the package.json references packages by paths
+   */
+  private Path createScratchCopy(Path manifestPath) throws IOException {
+    var rootDir = manifestPath.toAbsolutePath().getParent();
+    List<Path> projects = new ArrayList<>();
+    projects.add(manifestPath.toAbsolutePath());
+    projects.addAll(
+        JavaScriptWorkspaces.getWorkspaceManifests(
+            manifestPath, objectMapper.readTree(manifestPath.toFile())));
+    return createScratchCopy(rootDir, projects);
+  }
+
+  /**
+   * Copy the files npm resolves the dependency tree of a root project and its workspaces out of to
+   * a scratch directory, keeping the workspaces' package.json files at their relative locations.
+   *
+   * @param rootDir the root project directory
+   * @param projects the package.json files of the root project and its workspaces
+   * @return the scratch directory, or null if the projects are to be analyzed in place, when
+   *     disabled or when a package.json references packages by paths
+   */
+  private Path createScratchCopy(Path rootDir, List<Path> projects) throws IOException {
+    if (!getBooleanValueEnvironment("EXHORT_NPM_ISOLATED_ANALYSIS", "true")) {
+      return null;
+    }
+    for (Path project : projects) {
+      if (referencesLocalPaths(objectMapper.readTree(project.toFile()))) {
+        return null;
+      }
+    }
+    var scratchDir = Files.createTempDirectory("exhort_npm_");
+    for (String fileName : SCRATCH_COPY_FILES) {
+      var file = rootDir.resolve(fileName);
+      if (Files.isRegularFile(file)) {
+        Files.copy(file, scratchDir.resolve(fileName));
+      }
+    }
+    for (Path project : projects) {
+      var location = JavaScriptWorkspaces.getLocation(rootDir, project.getParent());
+      if (!location.isEmpty()) {
+        var target = scratchDir.resolve(location).resolve("package.json");
+        Files.createDirectories(target.getParent());
+        Files.copy(project, target);
+      }
+    }
+    return scratchDir;
+  }
+
+  /**
+   * Check whether a package.json references packages by paths, which npm resolves relative to the
+   * project directory: dependencies on local packages, i.e. {@code file:../lib}, {@code link:lib}
+   * or {@code ./lib}, or workspaces out of the project directory.
+   */
+  private static boolean referencesLocalPaths(JsonNode manifest) {
+    for (String field : List.of("dependencies", "devDependencies", "optionalDependencies")) {
+      var dependencies = manifest.get(field);
+      if (dependencies != null && dependencies.isObject()) {
+        for (JsonNode spec : dependencies) {
+          if (isLocalPath(spec.asText().trim(), true)) {
+            return true;
+          }
         }
       }
     }
-    return objectMapper.readTree(npmOutput);
+    var workspaces = manifest.get("workspaces");
+    if (workspaces != null && workspaces.isObject()) {
+      workspaces = workspaces.get("packages");
+    }
+    if (workspaces != null && workspaces.isArray()) {
+      for (JsonNode pattern : workspaces) {
+        if (isLocalPath(pattern.asText().trim(), false)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private static boolean isLocalPath(String value, boolean dependency) {
+    if (value.startsWith("!")) {
+      value = value.substring(1);
+    }
+    if (value.startsWith("/") || value.startsWith("../") || value.equals("..")) {
+      return true;
+    }
+    return dependency
+        && (value.startsWith("file:")
+            || value.startsWith("link:")
+            || value.startsWith("./")
+            || value.startsWith("~/"));
+  }
+
+  private void deleteScratchDir(Path scratchDir) {
+    if (scratchDir == null) {
+      return;
+    }
+    try (Stream<Path> paths = Files.walk(scratchDir)) {
+      for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+        Files.deleteIfExists(path);
+      }
+    } catch (IOException e) {
+      log.log(
+          System.Logger.Level.WARNING,
+          String.format("Failed to delete the npm scratch directory %s", scratchDir),
+          e);
+    }
   }
 
   private Sbom buildSbom(JsonNode npmListResult) {
@@ -211,7 +612,9 @@ private Sbom buildSbom(JsonNode npmListResult) {
       PackageURL root = getRoot(npmListResult);
       sbom.addRoot(root);
       JsonNode dependencies = npmListResult.get("dependencies");
-      addDependenciesOf(sbom, root, dependencies);
+      if (dependencies != null) {
+        addDependenciesOf(sbom, root, dependencies, new HashSet<>());
+      }
     } catch (MalformedPackageURLException e) {
       throw new IllegalArgumentException("Unable to parse NPM Json", e);
     }
@@ -231,6 +634,68 @@ private List<String> getIgnoredDeps(Path manifestPath) throws IOException {
     return ignored;
   }
 
+  /** The packages map of a package-lock.json, keyed by the packages' install locations. */
+  private static final class PackageLock {
+    private static final List<String> DEPENDENCY_TYPES =
+        List.of("dependencies", "optionalDependencies", "peerDependencies", "devDependencies");
+
+    private int lockfileVersion;
+    private final Map<String, LockedPackage> packages = new HashMap<>();
+
+    /**
+     * Resolve a dependency of the package installed at the given location, looking for it in the
+     * package's node_modules folder and then in its ancestors' ones, like node does.
+     *
+     * @return the dependency's location, or null if not installed
+     */
+    private String resolve(String location, String name) {
+      var base = location;
+      while (true) {
+        var candidate = base.isEmpty() ? "node_modules/" + name : base + "/node_modules/" + name;
+        if (packages.containsKey(candidate)) {
+          return candidate;
+        }
+        if (base.isEmpty()) {
+          return null;
+        }
+        var parentIndex = base.lastIndexOf("/node_modules/");
+        base = parentIndex == -1 ? "" : base.substring(0, parentIndex);
+      }
+    }
+
+    /** Get the package installed at the location, following links to their target package. */
+    private LockedPackage resolveLink(String location) {
+      var lockedPackage = packages.get(location);
+      if (lockedPackage != null && lockedPackage.link && lockedPackage.resolved != null) {
+        return packages.get(lockedPackage.resolved);
+      }
+      return lockedPackage;
+    }
+
+    private String getName(String location) {
+      var nameIndex = location.lastIndexOf("node_modules/");
+      return nameIndex == -1
+          ? location.substring(location.lastIndexOf('/') + 1)
+          : location.substring(nameIndex + "node_modules/".length());
+    }
+  }
+
+  private static final class LockedPackage {
+    private final String location;
+    private String version;
+    private String resolved;
+    private boolean dev;
+    private boolean link;
+    // the names of the production, optional and peer dependencies
+    private final List<String> dependencies = new ArrayList<>();
+    // the declared dependencies of each dependency type, with their version ranges
+    private final Map<String, Map<String, String>> declaredDependencies = new HashMap<>();
+
+    private LockedPackage(String location) {
+      this.location = location;
+    }
+  }
+
   Map<String, String> getNpmExecEnv() {
     String nodeHome = System.getProperty("NODE_HOME");
     if (nodeHome != null && !nodeHome.isBlank()) {
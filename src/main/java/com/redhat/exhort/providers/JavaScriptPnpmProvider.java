@@ -0,0 +1,229 @@
+/*
+ * Copyright © 2023 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.exhort.providers;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Concrete implementation of the {@link BaseJavaScriptLockfileProvider} used for converting
+ * dependency trees of pnpm projects (package.json + pnpm-lock.yaml) into a SBOM content for Stack
+ * analysis or Component analysis. The lock file formats 5.x, 6.x and 9.x are supported, and the
+ * lock file is read line by line without invoking pnpm.
+ */
+public final class JavaScriptPnpmProvider extends BaseJavaScriptLockfileProvider {
+
+  public static final String LOCK_FILE = "pnpm-lock.yaml";
+
+  @Override
+  protected String getLockfileName() {
+    return LOCK_FILE;
+  }
+
+  @Override
+  protected Lockfile parseLockfile(Path lockfilePath, JsonNode manifest) throws IOException {
+    var lockfile = new PnpmLockfile();
+    try (BufferedReader reader = Files.newBufferedReader(lockfilePath, StandardCharsets.UTF_8)) {
+      // the keys of the current line and its parents, and their indentations
+      List<String> path = new ArrayList<>();
+      List<Integer> indents = new ArrayList<>();
+      String line;
+      while ((line = reader.readLine()) != null) {
+        var content = line.trim();
+        if (content.isEmpty()
+            || content.startsWith("#")
+            || content.startsWith("- ")
+            || content.equals("---")) {
+          continue;
+        }
+        int indent = line.indexOf(content.charAt(0));
+        while (!indents.isEmpty() && indents.get(indents.size() - 1) >= indent) {
+          indents.remove(indents.size() - 1);
+          path.remove(path.size() - 1);
+        }
+        String[] keyValue = keyValue(content);
+        path.add(keyValue[0]);
+        indents.add(indent);
+        lockfile.accept(path, keyValue[1]);
+      }
+    }
+    return lockfile;
+  }
+
+  /** Split a YAML mapping line into its unquoted key and value. */
+  private static String[] keyValue(String content) {
+    String key;
+    String value;
+    if (content.startsWith("'") || content.startsWith("\"")) {
+      int keyEnd = content.indexOf(content.charAt(0), 1);
+      key = content.substring(1, keyEnd);
+      value = content.substring(keyEnd + 1);
+      value = value.startsWith(":") ? value.substring(1) : value;
+    } else {
+      int separator = content.indexOf(": ");
+      if (separator >= 0) {
+        key = content.substring(0, separator);
+        value = content.substring(separator + 1);
+      } else {
+        key = content.endsWith(":") ? content.substring(0, content.length() - 1) : content;
+        value = "";
+      }
+    }
+    return new String[] {key, unquote(value.trim())};
+  }
+
+  private static String unquote(String value) {
+    if (value.length() >= 2
+        && (value.startsWith("'") && value.endsWith("'")
+            || value.startsWith("\"") && value.endsWith("\""))) {
+      return value.substring(1, value.length() - 1);
+    }
+    return value;
+  }
+
+  private static boolean isDependencies(String key) {
+    return key.equals("dependencies") || key.equals("optionalDependencies");
+  }
+
+  private static boolean isImporterSection(String key) {
+    return isDependencies(key) || key.equals("devDependencies") || key.equals("specifiers");
+  }
+
+  /** The locked packages, by their normalized keys (name@version with the peers suffix). */
+  private static final class PnpmLockfile implements Lockfile {
+
+    private final Map<String, String> rootDependencies = new LinkedHashMap<>();
+    // the version ranges of the root project's dependencies, as declared in its package.json
+    private final Map<String, String> specifiers = new HashMap<>();
+    private final Map<String, LockedPackage> packages = new HashMap<>();
+    // lock files before 6.0 use the /name/version_peers notation
+    private boolean legacy;
+
+    private void accept(List<String> path, String value) {
+      var section = path.get(0);
+      if (path.size() == 1) {
+        if (section.equals("lockfileVersion")) {
+          legacy = Double.parseDouble(value) < 6;
+        }
+      } else if (isImporterSection(section)) {
+        acceptImporter(path, value);
+      } else if (section.equals("importers") && path.size() > 3 && path.get(1).equals(".")) {
+        acceptImporter(path.subList(2, path.size()), value);
+      } else if (section.equals("packages") || section.equals("snapshots")) {
+        var lockedPackage = packages.computeIfAbsent(normalizeKey(path.get(1)), this::newPackage);
+        if (path.size() == 4 && isDependencies(path.get(2))) {
+          lockedPackage.dependencies.put(path.get(3), value);
+        }
+      }
+    }
+
+    /** Accept a line of the root project's importer, at the top level before 9.0. */
+    private void acceptImporter(List<String> path, String value) {
+      var section = path.get(0);
+      if (section.equals("specifiers")) {
+        // specifiers: {name: range} before 6.0
+        if (path.size() == 2) {
+          specifiers.put(path.get(1), value);
+        }
+        return;
+      }
+      // dependencies: {name: version} before 6.0, {name: {specifier, version}} since
+      if (path.size() == 3 && path.get(2).equals("specifier")) {
+        specifiers.put(path.get(1), value);
+      }
+      if (isDependencies(section)) {
+        acceptRootDependency(path.subList(1, path.size()), value);
+      }
+    }
+
+    private void acceptRootDependency(List<String> path, String value) {
+      if (path.size() == 1 && !value.isEmpty()) {
+        rootDependencies.put(path.get(0), value);
+      } else if (path.size() == 2 && path.get(1).equals("version")) {
+        rootDependencies.put(path.get(0), value);
+      }
+    }
+
+    private LockedPackage newPackage(String key) {
+      var lockedPackage = new LockedPackage();
+      int versionStart = key.indexOf('@', 1);
+      if (versionStart > 0) {
+        var version = key.substring(versionStart + 1);
+        int peersStart = version.indexOf(legacy ? '_' : '(');
+        lockedPackage.version = peersStart < 0 ? version : version.substring(0, peersStart);
+      }
+      return lockedPackage;
+    }
+
+    /** Normalize the /name/version, /name@version and name@version keys to name@version. */
+    private String normalizeKey(String key) {
+      if (key.startsWith("/")) {
+        key = key.substring(1);
+      }
+      if (legacy) {
+        // the version follows the name, which is scoped or not
+        int separator = key.indexOf('/', key.startsWith("@") ? key.indexOf('/') + 1 : 0);
+        if (separator > 0) {
+          key = key.substring(0, separator) + "@" + key.substring(separator + 1);
+        }
+      }
+      return key;
+    }
+
+    @Override
+    public Map<String, String> getRootDependencies() {
+      return rootDependencies;
+    }
+
+    @Override
+    public LockedPackage resolve(String name, String reference) {
+      if (reference.startsWith("link:") || reference.startsWith("file:")) {
+        return null;
+      }
+      int peersStart = reference.indexOf(legacy ? '_' : '(');
+      var version = peersStart < 0 ? reference : reference.substring(0, peersStart);
+      if (reference.startsWith("/") || version.indexOf('@', 1) > 0) {
+        // an aliased dependency, referencing the key of the locked package
+        return packages.get(normalizeKey(reference));
+      }
+      return packages.get(name + "@" + reference);
+    }
+
+    @Override
+    public boolean isUpToDate(Map<String, String> declaredDependencies) {
+      // the same check pnpm does with a frozen lock file, the locked root dependencies are the
+      // declared ones, locked with the ranges they're declared with
+      if (!rootDependencies.keySet().equals(declaredDependencies.keySet())) {
+        return false;
+      }
+      for (Map.Entry<String, String> dependency : declaredDependencies.entrySet()) {
+        if (!dependency.getValue().equals(specifiers.get(dependency.getKey()))) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+}
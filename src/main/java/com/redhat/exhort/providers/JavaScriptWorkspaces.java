@@ -0,0 +1,99 @@
+/*
+ * Copyright © 2023 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.exhort.providers;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Utility class for locating the workspaces of npm and yarn monorepos. */
+final class JavaScriptWorkspaces {
+
+  private JavaScriptWorkspaces() {
+    // constructor not required for a utility class
+  }
+
+  /**
+   * Get the package.json files of the workspaces declared by the root package.json, as an array of
+   * glob patterns (npm, yarn) or as an object holding them in its packages field (yarn classic).
+   * Patterns starting with {@code !} exclude the matching directories.
+   *
+   * @param manifestPath the root package.json
+   * @param manifest the parsed root package.json
+   * @return the workspaces' package.json files sorted by their paths, empty if none are declared
+   * @throws IOException when failed to walk the root directory
+   */
+  static List<Path> getWorkspaceManifests(Path manifestPath, JsonNode manifest) throws IOException {
+    var workspacesNode = manifest.get("workspaces");
+    if (workspacesNode != null && workspacesNode.isObject()) {
+      workspacesNode = workspacesNode.get("packages");
+    }
+    if (workspacesNode == null || !workspacesNode.isArray() || workspacesNode.isEmpty()) {
+      return List.of();
+    }
+    List<PathMatcher> includes = new ArrayList<>();
+    List<PathMatcher> excludes = new ArrayList<>();
+    for (JsonNode patternNode : workspacesNode) {
+      var pattern = patternNode.asText();
+      var exclude = pattern.startsWith("!");
+      pattern = exclude ? pattern.substring(1) : pattern;
+      pattern = pattern.startsWith("./") ? pattern.substring(2) : pattern;
+      pattern = pattern.endsWith("/") ? pattern.substring(0, pattern.length() - 1) : pattern;
+      (exclude ? excludes : includes)
+          .add(FileSystems.getDefault().getPathMatcher("glob:" + pattern));
+    }
+    var rootDir = manifestPath.toAbsolutePath().getParent();
+    List<Path> workspaces = new ArrayList<>();
+    Files.walkFileTree(
+        rootDir,
+        new SimpleFileVisitor<>() {
+          @Override
+          public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+            var dirName = dir.getFileName().toString();
+            if (!dir.equals(rootDir)
+                && (dirName.equals("node_modules") || dirName.equals(".git"))) {
+              return FileVisitResult.SKIP_SUBTREE;
+            }
+            var relativeDir = rootDir.relativize(dir);
+            if (!dir.equals(rootDir)
+                && Files.isRegularFile(dir.resolve("package.json"))
+                && includes.stream().anyMatch(matcher -> matcher.matches(relativeDir))
+                && excludes.stream().noneMatch(matcher -> matcher.matches(relativeDir))) {
+              workspaces.add(dir.resolve("package.json"));
+            }
+            return FileVisitResult.CONTINUE;
+          }
+        });
+    workspaces.sort(null);
+    return workspaces;
+  }
+
+  /**
+   * @return the path of the workspace relative to the root directory, with / separators
+   */
+  static String getLocation(Path rootDir, Path workspaceDir) {
+    var relative = rootDir.toAbsolutePath().relativize(workspaceDir.toAbsolutePath()).toString();
+    return relative.replace('\\', '/');
+  }
+}
@@ -0,0 +1,289 @@
+/*
+ * Copyright © 2023 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.exhort.providers;
+
+import static com.redhat.exhort.impl.ExhortApi.getBooleanValueEnvironment;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.github.packageurl.MalformedPackageURLException;
+import com.redhat.exhort.Api;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Concrete implementation of the {@link BaseJavaScriptLockfileProvider} used for converting
+ * dependency trees of Yarn projects (package.json + yarn.lock) into a SBOM content for Stack
+ * analysis or Component analysis. Both the classic (v1) and the Berry (v2+) lock file formats are
+ * supported, and the lock file is read line by line without invoking yarn.
+ */
+public final class JavaScriptYarnProvider extends BaseJavaScriptLockfileProvider {
+
+  public static final String LOCK_FILE = "yarn.lock";
+
+  // a range with a protocol, i.e. npm:^1.0.0, patch:... or workspace:.
+  private static final Pattern PROTOCOL = Pattern.compile("^[a-zA-Z][a-zA-Z+.-]*:.*");
+
+  @Override
+  protected String getLockfileName() {
+    return LOCK_FILE;
+  }
+
+  @Override
+  public Content provideBatchStack(final Path manifestPath) throws IOException {
+    if (!getBooleanValueEnvironment("EXHORT_NPM_WORKSPACES_ENABLED", "false")) {
+      return super.provideBatchStack(manifestPath);
+    }
+    var manifest = objectMapper.readTree(manifestPath.toFile());
+    var workspaces = JavaScriptWorkspaces.getWorkspaceManifests(manifestPath, manifest);
+    if (workspaces.isEmpty()) {
+      return super.provideBatchStack(manifestPath);
+    }
+    // the lock file shared by the root project and its workspaces is parsed once
+    var lockfilePath = getLockfilePath(manifestPath);
+    var lockfile = parseLockfile(lockfilePath, manifest);
+    List<JsonNode> projects = new ArrayList<>();
+    projects.add(manifest);
+    for (Path workspace : workspaces) {
+      projects.add(objectMapper.readTree(workspace.toFile()));
+    }
+    var workspacesLockfile = new WorkspacesLockfile(lockfile, projects.subList(1, projects.size()));
+    for (JsonNode project : projects) {
+      if (!isUpToDate(workspacesLockfile, project, lockfilePath)) {
+        return new JavaScriptNpmProvider().provideBatchStack(manifestPath);
+      }
+    }
+    // build the projects' SBOMs in parallel, root project first
+    Map<String, JsonNode> sboms =
+        projects.parallelStream()
+            .collect(
+                Collectors.toMap(
+                    project -> getPurl(project),
+                    project -> {
+                      var sbom =
+                          buildSbom(
+                                  project,
+                                  getDeclaredDependencies(project),
+                                  workspacesLockfile,
+                                  true)
+                              .filterIgnoredDeps(getIgnoredDeps(project));
+                      try {
+                        return objectMapper.readTree(sbom.getAsJsonString());
+                      } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                      }
+                    },
+                    (first, second) -> first,
+                    LinkedHashMap::new));
+    return new Content(objectMapper.writeValueAsBytes(sboms), Api.CYCLONEDX_MEDIA_TYPE);
+  }
+
+  private static String getPurl(JsonNode manifest) {
+    var version = manifest.get("version");
+    try {
+      return toPurl(manifest.get("name").asText(), version == null ? null : version.asText())
+          .canonicalize();
+    } catch (MalformedPackageURLException e) {
+      throw new IllegalArgumentException("Unable to parse package.json", e);
+    }
+  }
+
+  @Override
+  protected Lockfile parseLockfile(Path lockfilePath, JsonNode manifest) throws IOException {
+    var lockfile = new YarnLockfile(getDeclaredDependencies(manifest));
+    try (BufferedReader reader = Files.newBufferedReader(lockfilePath, StandardCharsets.UTF_8)) {
+      LockedPackage entry = null;
+      Map<String, String> section = null;
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.isBlank() || line.trim().startsWith("#")) {
+          continue;
+        }
+        int indent = indentOf(line);
+        var content = line.trim();
+        if (indent == 0) {
+          // an entry, keyed by the comma separated descriptors resolved to it
+          entry = new LockedPackage();
+          section = null;
+          // quoted one by one in the classic format, and as a whole in the Berry one
+          var descriptors = content.substring(0, content.length() - 1).replace("\"", "");
+          for (String descriptor : descriptors.split(",")) {
+            descriptor = descriptor.trim();
+            if (descriptor.equals("__metadata")) {
+              lockfile.berry = true;
+            }
+            lockfile.entries.put(descriptor, entry);
+          }
+          continue;
+        }
+        if (entry == null) {
+          continue;
+        }
+        String[] keyValue = keyValue(content);
+        if (indent == 2) {
+          section = null;
+          if (keyValue[0].equals("version")) {
+            entry.version = keyValue[1];
+          } else if (keyValue[0].equals("dependencies")
+              || keyValue[0].equals("optionalDependencies")) {
+            section = entry.dependencies;
+          }
+        } else if (indent == 4 && section != null) {
+          section.put(keyValue[0], keyValue[1]);
+        }
+      }
+    }
+    return lockfile;
+  }
+
+  private static int indentOf(String line) {
+    int indent = 0;
+    while (indent < line.length() && line.charAt(indent) == ' ') {
+      indent++;
+    }
+    return indent;
+  }
+
+  /**
+   * Split a lock file line into its key and value, for both the classic {@code key "value"} and the
+   * Berry {@code key: value} notations.
+   */
+  private static String[] keyValue(String content) {
+    int keyEnd;
+    String key;
+    if (content.startsWith("\"")) {
+      keyEnd = content.indexOf('"', 1) + 1;
+      key = content.substring(1, keyEnd - 1);
+    } else {
+      keyEnd = 0;
+      while (keyEnd < content.length()
+          && content.charAt(keyEnd) != ' '
+          && content.charAt(keyEnd) != ':') {
+        keyEnd++;
+      }
+      key = content.substring(0, keyEnd);
+    }
+    var value = content.substring(keyEnd);
+    if (value.startsWith(":")) {
+      value = value.substring(1);
+    }
+    return new String[] {key, unquote(value.trim())};
+  }
+
+  private static String unquote(String value) {
+    if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+      return value.substring(1, value.length() - 1);
+    }
+    return value;
+  }
+
+  /**
+   * The locked packages of a workspaces monorepo, resolving the dependencies between its workspaces
+   * to the workspaces themselves. Classic lock files do not hold the workspaces, and Berry ones
+   * hold them along with their dev dependencies.
+   */
+  private static final class WorkspacesLockfile implements Lockfile {
+
+    private final Lockfile lockfile;
+    private final Map<String, LockedPackage> workspaces = new HashMap<>();
+
+    private WorkspacesLockfile(Lockfile lockfile, List<JsonNode> workspaceManifests) {
+      this.lockfile = lockfile;
+      for (JsonNode manifest : workspaceManifests) {
+        var workspace = new LockedPackage();
+        var version = manifest.get("version");
+        workspace.version = version == null ? null : version.asText();
+        workspace.dependencies.putAll(getDeclaredDependencies(manifest));
+        workspaces.put(manifest.get("name").asText(), workspace);
+      }
+    }
+
+    @Override
+    public Map<String, String> getRootDependencies() {
+      return lockfile.getRootDependencies();
+    }
+
+    @Override
+    public LockedPackage resolve(String name, String reference) {
+      var workspace = workspaces.get(name);
+      if (workspace != null && reference.startsWith("workspace:")) {
+        return workspace;
+      }
+      var lockedPackage = lockfile.resolve(name, reference);
+      return lockedPackage == null ? workspace : lockedPackage;
+    }
+
+    @Override
+    public boolean isUpToDate(Map<String, String> declaredDependencies) {
+      // classic lock files do not hold the workspaces
+      Map<String, String> lockedDependencies = new HashMap<>(declaredDependencies);
+      lockedDependencies.keySet().removeAll(workspaces.keySet());
+      return lockfile.isUpToDate(lockedDependencies);
+    }
+  }
+
+  /** The locked packages, by the descriptors (name@range) resolved to them. */
+  private static final class YarnLockfile implements Lockfile {
+
+    private final Map<String, String> rootDependencies;
+    private final Map<String, LockedPackage> entries = new HashMap<>();
+    private boolean berry;
+
+    private YarnLockfile(Map<String, String> rootDependencies) {
+      this.rootDependencies = rootDependencies;
+    }
+
+    @Override
+    public Map<String, String> getRootDependencies() {
+      return rootDependencies;
+    }
+
+    @Override
+    public LockedPackage resolve(String name, String reference) {
+      if (berry && !PROTOCOL.matcher(reference).matches()) {
+        // berry descriptors carry the protocol, npm being the default one
+        return entries.get(name + "@npm:" + reference);
+      }
+      return entries.get(name + "@" + reference);
+    }
+
+    @Override
+    public boolean isUpToDate(Map<String, String> declaredDependencies) {
+      // each declared descriptor is resolved by a lock file entry, the same check yarn does with
+      // a frozen lock file, descriptors of local and git dependencies are normalized by yarn
+      for (Map.Entry<String, String> dependency : declaredDependencies.entrySet()) {
+        var reference = dependency.getValue();
+        var registry =
+            reference.startsWith("npm:")
+                || !PROTOCOL.matcher(reference).matches() && !reference.contains("/");
+        if (registry && resolve(dependency.getKey(), reference) == null) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+}
@@ -79,8 +79,10 @@ public Content provideStack(Path manifestPath) throws IOException {
     printDependenciesTree(dependencies);
     Sbom sbom = SbomFactory.newInstance(Sbom.BelongingCondition.PURL, "sensitive");
     sbom.addRoot(toPurl(DEFAULT_PIP_ROOT_COMPONENT_NAME, DEFAULT_PIP_ROOT_COMPONENT_VERSION));
+    // the trees share the subtrees of the packages out of cycles, their edges are added once
+    Set<Map<String, Object>> added = Collections.newSetFromMap(new IdentityHashMap<>());
     for (Map<String, Object> component : dependencies) {
-      addAllDependencies(sbom.getRoot(), component, sbom);
+      addAllDependencies(sbom.getRoot(), component, sbom, added);
     }
     byte[] requirementsFile = Files.readAllBytes(manifestPath);
     handleIgnoredDependencies(new String(requirementsFile), sbom);
@@ -88,17 +90,21 @@ public Content provideStack(Path manifestPath) throws IOException {
         sbom.getAsJsonString().getBytes(StandardCharsets.UTF_8), Api.CYCLONEDX_MEDIA_TYPE);
   }
 
-  private void addAllDependencies(PackageURL source, Map<String, Object> component, Sbom sbom) {
+  private void addAllDependencies(
+      PackageURL source, Map<String, Object> component, Sbom sbom, Set<Map<String, Object>> added) {
 
     PackageURL packageURL =
         toPurl((String) component.get("name"), (String) component.get("version"));
     sbom.addDependency(source, packageURL);
+    if (!added.add(component)) {
+      return;
+    }
 
     List<Map<String, Object>> directDeps =
         (List<Map<String, Object>>) component.get("dependencies");
     if (directDeps != null) {
       for (Map<String, Object> dep : directDeps) {
-        addAllDependencies(packageURL, dep, sbom);
+        addAllDependencies(packageURL, dep, sbom, added);
       }
     }
   }
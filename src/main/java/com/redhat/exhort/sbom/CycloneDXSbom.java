@@ -40,6 +40,9 @@ public class CycloneDXSbom implements Sbom {
   private String exhortIgnoreMethod;
   private Bom bom;
   private PackageURL root;
+  // the components and dependencies of the bom by their refs, for constant time lookups
+  private final Map<String, Component> componentsByRef = new HashMap<>();
+  private final Map<String, Dependency> dependenciesByRef = new HashMap<>();
 
   private BiPredicate<Collection, Component> belongingCriteriaBinaryAlgorithm;
 
@@ -88,8 +91,8 @@ public Sbom addRoot(PackageURL rootRef) {
     this.root = rootRef;
     Component rootComponent = newRootComponent(rootRef);
     bom.getMetadata().setComponent(rootComponent);
-    bom.getComponents().add(rootComponent);
-    bom.getDependencies().add(newDependency(rootRef));
+    addComponent(rootComponent);
+    addDependency(newDependency(rootRef));
     return this;
   }
 
@@ -167,7 +170,8 @@ private <T> Sbom filterIgnoredDepsInsensitive(Collection<T> ignoredDeps) {
     return removeIgnoredDepsFromSbom(refsToIgnore);
   }
 
-  private Sbom removeIgnoredDepsFromSbom(List<String> refsToIgnore) {
+  private Sbom removeIgnoredDepsFromSbom(List<String> ignoredRefs) {
+    Set<String> refsToIgnore = new HashSet<>(ignoredRefs);
     bom.setComponents(
         bom.getComponents().stream()
             .filter(c -> !refsToIgnore.contains(c.getBomRef()))
@@ -188,6 +192,7 @@ private Sbom removeIgnoredDepsFromSbom(List<String> refsToIgnore) {
                 d.setDependencies(filteredDeps);
               }
             });
+    reindex();
     return this;
   }
 
@@ -221,33 +226,62 @@ private List<String> createIgnoreFilter(List<Dependency> deps, Collection<String
   public Sbom addDependency(PackageURL sourceRef, PackageURL targetRef) {
     Component srcComp = newComponent(sourceRef);
     Dependency srcDep;
-    if (bom.getComponents().stream().noneMatch(c -> c.getBomRef().equals(srcComp.getBomRef()))) {
-      bom.addComponent(srcComp);
+    if (!componentsByRef.containsKey(srcComp.getBomRef())) {
+      addComponent(srcComp);
       srcDep = newDependency(sourceRef);
-      bom.addDependency(srcDep);
+      addDependency(srcDep);
     } else {
-      Optional<Dependency> existingDep =
-          bom.getDependencies().stream()
-              .filter(d -> d.getRef().equals(srcComp.getBomRef()))
-              .findFirst();
-      if (existingDep.isPresent()) {
-        srcDep = existingDep.get();
-      } else {
+      srcDep = dependenciesByRef.get(srcComp.getBomRef());
+      if (srcDep == null) {
         srcDep = newDependency(sourceRef);
-        bom.addDependency(srcDep);
+        addDependency(srcDep);
       }
     }
     Dependency targetDep = newDependency(targetRef);
     srcDep.addDependency(targetDep);
-    if (bom.getDependencies().stream().noneMatch(d -> d.getRef().equals(targetDep.getRef()))) {
-      bom.addDependency(targetDep);
+    if (!dependenciesByRef.containsKey(targetDep.getRef())) {
+      addDependency(targetDep);
     }
-    if (bom.getComponents().stream().noneMatch(c -> c.getBomRef().equals(targetDep.getRef()))) {
-      bom.addComponent(newComponent(targetRef));
+    if (!componentsByRef.containsKey(targetDep.getRef())) {
+      addComponent(newComponent(targetRef));
     }
     return this;
   }
 
+  @Override
+  public Sbom addComponent(PackageURL ref) {
+    Dependency dependency = newDependency(ref);
+    if (!componentsByRef.containsKey(dependency.getRef())) {
+      addComponent(newComponent(ref));
+    }
+    if (!dependenciesByRef.containsKey(dependency.getRef())) {
+      addDependency(dependency);
+    }
+    return this;
+  }
+
+  @Override
+  public Set<String> getComponentRefs() {
+    return Collections.unmodifiableSet(componentsByRef.keySet());
+  }
+
+  private void addComponent(Component component) {
+    bom.addComponent(component);
+    componentsByRef.putIfAbsent(component.getBomRef(), component);
+  }
+
+  private void addDependency(Dependency dependency) {
+    bom.addDependency(dependency);
+    dependenciesByRef.putIfAbsent(dependency.getRef(), dependency);
+  }
+
+  private void reindex() {
+    componentsByRef.clear();
+    dependenciesByRef.clear();
+    bom.getComponents().forEach(c -> componentsByRef.putIfAbsent(c.getBomRef(), c));
+    bom.getDependencies().forEach(d -> dependenciesByRef.putIfAbsent(d.getRef(), d));
+  }
+
   @Override
   public String getAsJsonString() {
     String jsonString = BomGeneratorFactory.createJson(VERSION, bom).toJsonString();
@@ -300,5 +334,6 @@ public void removeRootComponent() {
     bom.getDependencies()
         .removeIf((dependency) -> dependency.getRef().equals(this.root.getCoordinates()));
     bom.getMetadata().setComponent(null);
+    reindex();
   }
 }
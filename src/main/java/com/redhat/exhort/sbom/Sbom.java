@@ -17,6 +17,7 @@
 
 import com.github.packageurl.PackageURL;
 import java.util.Collection;
+import java.util.Set;
 
 public interface Sbom {
 
@@ -28,6 +29,10 @@ public interface Sbom {
 
   public Sbom addDependency(PackageURL sourceRef, PackageURL targetRef);
 
+  public Sbom addComponent(PackageURL ref);
+
+  public Set<String> getComponentRefs();
+
   public String getAsJsonString();
 
   public void setBelongingCriteriaBinaryAlgorithm(BelongingCondition belongingCondition);
@@ -20,7 +20,10 @@
 import com.redhat.exhort.providers.GradleProvider;
 import com.redhat.exhort.providers.JavaMavenProvider;
 import com.redhat.exhort.providers.JavaScriptNpmProvider;
+import com.redhat.exhort.providers.JavaScriptPnpmProvider;
+import com.redhat.exhort.providers.JavaScriptYarnProvider;
 import com.redhat.exhort.providers.PythonPipProvider;
+import java.nio.file.Files;
 import java.nio.file.Path;
 
 /** Utility class used for instantiating providers. * */
@@ -55,7 +58,28 @@ private Ecosystem() {
    * @return a Manifest record
    */
   public static Provider getProvider(final Path manifestPath) {
-    return Ecosystem.getProvider(manifestPath.getFileName().toString());
+    var manifestType = manifestPath.getFileName().toString();
+    if (manifestType.equals("package.json")) {
+      return getJavaScriptProvider(manifestPath);
+    }
+    return Ecosystem.getProvider(manifestType);
+  }
+
+  /**
+   * Choose the JavaScript provider by the lock file found next to the package.json, npm being the
+   * default when no lock file or a package-lock.json is found.
+   */
+  private static Provider getJavaScriptProvider(final Path manifestPath) {
+    var projectDir = manifestPath.toAbsolutePath().getParent();
+    if (!Files.exists(projectDir.resolve("package-lock.json"))) {
+      if (Files.exists(projectDir.resolve(JavaScriptYarnProvider.LOCK_FILE))) {
+        return new JavaScriptYarnProvider();
+      }
+      if (Files.exists(projectDir.resolve(JavaScriptPnpmProvider.LOCK_FILE))) {
+        return new JavaScriptPnpmProvider();
+      }
+    }
+    return new JavaScriptNpmProvider();
   }
 
   /**
@@ -71,6 +95,7 @@ public static Provider getProvider(final String manifestType) {
       case "package.json":
         return new JavaScriptNpmProvider();
       case "go.mod":
+      case GoModulesProvider.GO_WORK:
         return new GoModulesProvider();
       case "requirements.txt":
         return new PythonPipProvider();
@@ -18,14 +18,18 @@
 import static java.lang.String.join;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /** Utility class used for executing process on the operating system. * */
 public final class Operations {
@@ -52,6 +56,32 @@ public static String getCustomPathOrElse(String defaultExecutable) {
         () -> Objects.requireNonNullElse(System.getProperty(executableKey), defaultExecutable));
   }
 
+  /**
+   * Function for checking whether an executable can be found on the system's PATH environment
+   * variable. An absolute or relative path to an executable will be checked directly.
+   *
+   * @param executable the executable name or path, i.e. mvnd
+   * @return true if the executable was found and is executable.
+   */
+  public static boolean isExecutableOnPath(String executable) {
+    if (executable == null || executable.isBlank()) {
+      return false;
+    }
+    if (executable.contains(File.separator)) {
+      return Files.isExecutable(Path.of(executable));
+    }
+    var path = System.getenv("PATH");
+    if (path == null) {
+      return false;
+    }
+    return Arrays.stream(path.split(File.pathSeparator))
+        .filter(dir -> !dir.isBlank())
+        .anyMatch(
+            dir ->
+                Stream.of(executable, executable + ".cmd", executable + ".exe")
+                    .anyMatch(name -> Files.isExecutable(Path.of(dir, name))));
+  }
+
   /**
    * Function for building a command from the command parts list and execute it as a process on the
    * operating system. Will throw a RuntimeException if the command build or execution failed.
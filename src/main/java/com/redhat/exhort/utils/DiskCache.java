@@ -0,0 +1,195 @@
+/*
+ * Copyright © 2023 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.exhort.utils;
+
+import static com.redhat.exhort.impl.ExhortApi.getStringValueEnvironment;
+
+import com.redhat.exhort.logging.LoggersFactory;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * A file based cache, storing an entry per key in a cache directory. Entries are evicted in a least
+ * recently used order once the cache exceeds its maximum number of entries or its maximum size. The
+ * last modified time of an entry's file is used for tracking its last usage, so the cache can be
+ * shared between processes.
+ */
+public final class DiskCache {
+
+  private static final Logger log = LoggersFactory.getLogger(DiskCache.class.getName());
+
+  private static final String TEMP_SUFFIX = ".tmp";
+
+  private final Path directory;
+  private final int maxEntries;
+  private final long maxSizeBytes;
+
+  /**
+   * @param directory the directory holding the cache entries, created when first needed
+   * @param maxEntries the maximum number of entries kept in the cache
+   * @param maxSizeBytes the maximum total size of the entries kept in the cache
+   */
+  public DiskCache(Path directory, int maxEntries, long maxSizeBytes) {
+    this.directory = directory;
+    this.maxEntries = maxEntries;
+    this.maxSizeBytes = maxSizeBytes;
+  }
+
+  /**
+   * Get the directory of a named cache, under the base cache directory set with environment
+   * variable/system property EXHORT_CACHE_DIR, defaults to $HOME/.exhort/cache.
+   *
+   * @param name the name of the cache, i.e. effective-pom
+   * @return the cache directory path
+   */
+  public static Path getCacheDirectory(String name) {
+    var defaultBaseDir = Path.of(System.getProperty("user.home"), ".exhort", "cache");
+    return Path.of(getStringValueEnvironment("EXHORT_CACHE_DIR", defaultBaseDir.toString()))
+        .resolve(name);
+  }
+
+  /**
+   * Calculate a cache key out of the given parts, as a hex encoded SHA-256 digest.
+   *
+   * @param parts the parts identifying an entry, i.e. the content of the files it was created from
+   * @return the cache key
+   */
+  public static String key(byte[]... parts) {
+    try {
+      var digest = MessageDigest.getInstance("SHA-256");
+      for (byte[] part : parts) {
+        // prefix each part with its length, so different splits of the same bytes won't collide
+        digest.update(ByteBuffer.allocate(Integer.BYTES).putInt(part.length).array());
+        digest.update(part);
+      }
+      var key = new StringBuilder();
+      for (byte b : digest.digest()) {
+        key.append(String.format("%02x", b));
+      }
+      return key.toString();
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Get the file of a cached entry, marking it as the most recently used one.
+   *
+   * @param key the cache key of the entry
+   * @return the path of the entry's file, or empty if not cached
+   */
+  public synchronized Optional<Path> get(String key) {
+    var entry = directory.resolve(key);
+    if (!Files.isRegularFile(entry)) {
+      return Optional.empty();
+    }
+    try {
+      Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+    } catch (IOException e) {
+      // the entry was evicted in the meantime
+      return Optional.empty();
+    }
+    return Optional.of(entry);
+  }
+
+  /**
+   * Store a copy of the given file as the entry of the given key, evicting the least recently used
+   * entries if the cache exceeded its limits.
+   *
+   * @param key the cache key of the entry
+   * @param source the file to be cached
+   * @return the path of the entry's file
+   * @throws IOException when failed to write the entry
+   */
+  public synchronized Path put(String key, Path source) throws IOException {
+    Files.createDirectories(directory);
+    var entry = directory.resolve(key);
+    // copy to a temporary file first, so other processes never see a partially written entry
+    var tmpEntry = Files.createTempFile(directory, key, TEMP_SUFFIX);
+    try {
+      Files.copy(source, tmpEntry, StandardCopyOption.REPLACE_EXISTING);
+      Files.move(
+          tmpEntry, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(tmpEntry);
+    }
+    evict();
+    return entry;
+  }
+
+  private void evict() throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      evict(files);
+    }
+  }
+
+  /**
+   * Evict the least recently used of the given entries' files. The cache may be shared with other
+   * processes, so an entry removed while being evicted was already evicted by another one.
+   *
+   * @param files the files of the cache directory
+   * @throws IOException when failed to delete an entry
+   */
+  void evict(Stream<Path> files) throws IOException {
+    Map<Path, BasicFileAttributes> entries = new HashMap<>();
+    files
+        .filter(file -> !file.getFileName().toString().endsWith(TEMP_SUFFIX))
+        .forEach(
+            file -> {
+              var attributes = readAttributes(file);
+              if (attributes != null && attributes.isRegularFile()) {
+                entries.put(file, attributes);
+              }
+            });
+    List<Path> byLastUsage = new ArrayList<>(entries.keySet());
+    byLastUsage.sort(
+        Comparator.comparing((Path entry) -> entries.get(entry).lastModifiedTime()).reversed());
+    long totalSize = 0;
+    for (int i = 0; i < byLastUsage.size(); i++) {
+      var entry = byLastUsage.get(i);
+      totalSize += entries.get(entry).size();
+      // always keep the most recently used entry
+      if (i > 0 && (i >= maxEntries || totalSize > maxSizeBytes)) {
+        log.fine(String.format("evicting cache entry %s", entry));
+        Files.deleteIfExists(entry);
+      }
+    }
+  }
+
+  private static BasicFileAttributes readAttributes(Path file) {
+    try {
+      return Files.readAttributes(file, BasicFileAttributes.class);
+    } catch (IOException e) {
+      // removed in the meantime
+      return null;
+    }
+  }
+}
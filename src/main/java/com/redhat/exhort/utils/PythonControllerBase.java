@@ -31,7 +31,6 @@
 import java.util.*;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 public abstract class PythonControllerBase {
   public static void main(String[] args) {
@@ -86,6 +85,9 @@ public static void main(String[] args) {
 
   protected String pipBinaryLocation;
 
+  // the packages resolved by pip for the analyzed requirements, when not installed
+  private List<PythonDependency> resolvedEnvironmentDeps;
+
   //  public int counter =0;
 
   public abstract void prepareEnvironment(String pathToPythonBin);
@@ -198,10 +200,58 @@ void installPackages(String pathToRequirements) {
 
   public final List<Map<String, Object>> getDependencies(
       String pathToRequirements, boolean includeTransitive) {
-    if (isVirtualEnv() || isRealEnv()) {
-      prepareEnvironment(pathToPythonBin);
+    resolvedEnvironmentDeps = null;
+    selectEnvironment(pathToRequirements);
+    boolean analyzed = false;
+    List<Map<String, Object>> dependencies;
+    try {
+      if (isVirtualEnv() || isRealEnv()) {
+        prepareEnvironment(pathToPythonBin);
+      }
+      installRequirements(pathToRequirements);
+      dependencies = getDependenciesImpl(pathToRequirements, includeTransitive);
+      analyzed = true;
+    } finally {
+      if (isVirtualEnv()) {
+        releaseEnvironment(analyzed);
+      }
+    }
+
+    return dependencies;
+  }
+
+  /**
+   * Select the environment the requirements are analyzed on, before it's prepared.
+   *
+   * @param pathToRequirements the requirements file to be analyzed
+   */
+  protected void selectEnvironment(String pathToRequirements) {
+    // the environment is fixed by default
+  }
+
+  /**
+   * Release the environment once the requirements were analyzed on it, or failed to.
+   *
+   * @param analyzed whether the requirements were analyzed successfully
+   */
+  protected void releaseEnvironment(boolean analyzed) {
+    if (analyzed && !isResolvedOnly()) {
+      cleanEnvironment(false);
     }
-    if (automaticallyInstallPackageOnEnvironment()) {
+  }
+
+  /**
+   * @return whether the requirements were resolved by pip without being installed on the
+   *     environment
+   */
+  protected boolean isResolvedOnly() {
+    return resolvedEnvironmentDeps != null;
+  }
+
+  private void installRequirements(String pathToRequirements) {
+    boolean resolveOnly =
+        isVirtualEnv() && getBooleanValueEnvironment("EXHORT_PYTHON_RESOLVE_ONLY", "false");
+    if (resolveOnly || automaticallyInstallPackageOnEnvironment()) {
       boolean installBestEfforts =
           getBooleanValueEnvironment("EXHORT_PYTHON_INSTALL_BEST_EFFORTS", "false");
       /*
@@ -217,20 +267,67 @@ public final List<Map<String, Object>> getDependencies(
           throw new RuntimeException(
               "Conflicting settings, EXHORT_PYTHON_INSTALL_BEST_EFFORTS=true can only work with"
                   + " MATCH_MANIFEST_VERSIONS=false");
+        } else if (resolveOnly) {
+          resolvedEnvironmentDeps = resolveRequirements(pathToRequirements, true);
         } else {
           installingRequirementsOneByOne(pathToRequirements);
         }
+      } else if (resolveOnly) {
+        resolvedEnvironmentDeps = resolveRequirements(pathToRequirements, false);
       } else {
         installPackages(pathToRequirements);
       }
     }
-    List<Map<String, Object>> dependencies =
-        getDependenciesImpl(pathToRequirements, includeTransitive);
-    if (isVirtualEnv()) {
-      cleanEnvironment(false);
-    }
+  }
 
-    return dependencies;
+  /**
+   * Resolve the requirements with a single pip process, reading the packages pip would install out
+   * of its installation report, without downloading or building them all and installing them.
+   * Environment variable/system property EXHORT_PIP_FIND_LINKS makes pip resolve the packages out
+   * of a local directory (or a URL) of distributions instead of the package index.
+   *
+   * @param bestEfforts whether to resolve the packages regardless of their declared versions
+   * @return the packages that would be installed, with their direct dependencies
+   */
+  private List<PythonDependency> resolveRequirements(
+      String pathToRequirements, boolean bestEfforts) {
+    List<String> command =
+        new ArrayList<>(
+            List.of(
+                pipBinaryLocation,
+                "install",
+                "--dry-run",
+                "--ignore-installed",
+                "--quiet",
+                "--report",
+                "-"));
+    String findLinks = getStringValueEnvironment("EXHORT_PIP_FIND_LINKS", "").trim();
+    if (!findLinks.isEmpty()) {
+      command.addAll(List.of("--no-index", "--find-links", findLinks));
+    }
+    if (bestEfforts) {
+      try {
+        Files.readAllLines(Path.of(pathToRequirements)).stream()
+            .map(String::trim)
+            .filter(line -> !line.startsWith("#") && !line.isEmpty())
+            .map(PythonControllerBase::getDependencyName)
+            .forEach(command::add);
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    } else {
+      command.addAll(List.of("-r", pathToRequirements));
+    }
+    String report =
+        executeCommandOrExtractFromEnv("EXHORT_PIP_REPORT", command.toArray(String[]::new));
+    if (debugLoggingIsNeeded()) {
+      String reportMessage =
+          String.format(
+              "Package Manager PIP install --dry-run --report command result output -> %s %s",
+              System.lineSeparator(), report);
+      log.info(reportMessage);
+    }
+    return mapInstallationReportToPythonDependencies(report);
   }
 
   private void installingRequirementsOneByOne(String pathToRequirements) {
@@ -284,6 +381,8 @@ private List<Map<String, Object>> getDependenciesImpl(
       throw new RuntimeException(e);
     }
     boolean matchManifestVersions = getBooleanValueEnvironment("MATCH_MANIFEST_VERSIONS", "true");
+    PythonDependencyTreeBuilder treeBuilder =
+        new PythonDependencyTreeBuilder(cachedEnvironmentDeps);
 
     for (String dep : linesOfRequirements) {
       if (matchManifestVersions) {
@@ -318,11 +417,8 @@ private List<Map<String, Object>> getDependenciesImpl(
           }
         }
       }
-      List<String> path = new ArrayList<>();
       String selectedDepName = getDependencyName(dep.toLowerCase());
-      path.add(selectedDepName);
-      bringAllDependencies(
-          dependencies, selectedDepName, cachedEnvironmentDeps, includeTransitive, path);
+      treeBuilder.addDependency(dependencies, selectedDepName, includeTransitive);
     }
 
     return dependencies;
@@ -360,6 +456,40 @@ List<PythonDependency> getDependencyTreeJsonFromPipDepTree() {
     return mapToPythonDependencies(pipdeptreeJsonString);
   }
 
+  /**
+   * Map a pip installation report (pip install --report) to the packages it would install. Their
+   * requirements are evaluated against the environment markers of the report, as pip show does for
+   * installed packages.
+   */
+  static List<PythonDependency> mapInstallationReportToPythonDependencies(String jsonString) {
+    JsonNode report;
+    try {
+      report = new ObjectMapper().readTree(jsonString);
+    } catch (JsonProcessingException e) {
+      throw new RuntimeException(
+          "Could not parse the JSON report of 'pip install --dry-run --report' command, output => "
+              + jsonString,
+          e);
+    }
+    Map<String, String> environment = new HashMap<>();
+    report
+        .path("environment")
+        .fields()
+        .forEachRemaining(entry -> environment.put(entry.getKey(), entry.getValue().asText()));
+    List<PythonDependency> dependencies = new ArrayList<>();
+    for (JsonNode installed : report.path("install")) {
+      var metadata = installed.get("metadata");
+      List<String> requirements = new ArrayList<>();
+      metadata.path("requires_dist").forEach(r -> requirements.add(r.asText()));
+      dependencies.add(
+          new PythonDependency(
+              metadata.get("name").asText(),
+              metadata.get("version").asText(),
+              PythonEnvironmentMarkers.getApplicableRequirementNames(requirements, environment)));
+    }
+    return dependencies;
+  }
+
   List<PythonDependency> mapToPythonDependencies(String jsonString) {
     try {
       // Parse JSON and store in a list of JsonNodes
@@ -389,6 +519,34 @@ List<PythonDependency> mapToPythonDependencies(String jsonString) {
     }
   }
 
+  /**
+   * Probe the interpreter of the analyzed environment for its sys.path and environment markers,
+   * with a single python process.
+   */
+  PythonInstalledDistributions probeEnvironment() {
+    String probeOutput =
+        executeCommandOrExtractFromEnv(
+            "EXHORT_PYTHON_ENVIRONMENT_PROBE",
+            getEnvironmentPythonBin(),
+            "-c",
+            PythonInstalledDistributions.PROBE_SCRIPT);
+    if (debugLoggingIsNeeded()) {
+      String probeMessage =
+          String.format(
+              "Python environment probe result output -> %s %s",
+              System.lineSeparator(), probeOutput);
+      log.info(probeMessage);
+    }
+    return PythonInstalledDistributions.fromProbe(probeOutput);
+  }
+
+  /**
+   * @return the python interpreter of the analyzed environment
+   */
+  protected String getEnvironmentPythonBin() {
+    return pathToPythonBin;
+  }
+
   private String executeCommandOrExtractFromEnv(String EnvVar, String... cmdList) {
     String envValue = getStringValueEnvironment(EnvVar, "");
     if (envValue.trim().equals(""))
@@ -396,57 +554,6 @@ private String executeCommandOrExtractFromEnv(String EnvVar, String... cmdList)
     return new String(Base64.getDecoder().decode(envValue));
   }
 
-  private void bringAllDependencies(
-      List<Map<String, Object>> dependencyList,
-      String depName,
-      Map<StringInsensitive, PythonDependency> cachedTree,
-      boolean includeTransitive,
-      List<String> path) {
-
-    if (dependencyList == null || depName.trim().equals("")) return;
-
-    PythonDependency pythonDependency = cachedTree.get(new StringInsensitive(depName));
-    if (pythonDependency == null) {
-      throw new PackageNotInstalledException(
-          String.format(
-              "Package name=>%s is not installed on your python environment, either install it ("
-                  + " better to install requirements.txt altogether) or turn on environment"
-                  + " variable EXHORT_PYTHON_VIRTUAL_ENV=true to automatically installs it on"
-                  + " virtual environment ( will slow down the analysis)",
-              depName));
-    }
-
-    Map<String, Object> dataMap = new HashMap<>();
-    dataMap.put("name", pythonDependency.getName());
-    dataMap.put("version", pythonDependency.getVersion());
-    dependencyList.add(dataMap);
-
-    List<Map<String, Object>> targetDeps = new ArrayList<>();
-    List<String> directDeps = pythonDependency.getDependencies();
-    for (String directDep : directDeps) {
-      if (!path.contains(directDep.toLowerCase())) {
-        List<String> depList = new ArrayList<>();
-        depList.add(directDep.toLowerCase());
-
-        if (includeTransitive) {
-          bringAllDependencies(
-              targetDeps,
-              directDep,
-              cachedTree,
-              true,
-              Stream.concat(path.stream(), depList.stream()).collect(Collectors.toList()));
-        }
-      }
-      targetDeps.sort(
-          (map1, map2) -> {
-            String string1 = (String) (map1.get("name"));
-            String string2 = (String) (map2.get("name"));
-            return Arrays.compare(string1.toCharArray(), string2.toCharArray());
-          });
-      dataMap.put("dependencies", targetDeps);
-    }
-  }
-
   protected List<String> getDepsList(String pipShowOutput) {
     int requiresKeyIndex = pipShowOutput.indexOf("Requires:");
     String requiresToken = pipShowOutput.substring(requiresKeyIndex + 9);
@@ -517,34 +624,142 @@ private PythonDependency getPythonDependencyByShowStringBlock(String pipShowStri
   }
 
   private void fillCacheWithEnvironmentDeps(Map<StringInsensitive, PythonDependency> cache) {
+    var snapshotCache = getEnvironmentSnapshotCache();
+    List<PythonDependency> environmentDeps;
+    if (isResolvedOnly()) {
+      environmentDeps = resolvedEnvironmentDeps;
+    } else if (snapshotCache == null) {
+      environmentDeps = getEnvironmentDeps(null);
+    } else {
+      var environment = probeEnvironment();
+      var snapshotKey = getEnvironmentSnapshotKey(environment);
+      var snapshot = snapshotCache.get(snapshotKey);
+      if (snapshot.isPresent()) {
+        if (debugLoggingIsNeeded()) {
+          log.info(String.format("Using cached python environment snapshot %s", snapshot.get()));
+        }
+        environmentDeps = readEnvironmentSnapshot(snapshot.get());
+      } else {
+        environmentDeps = getEnvironmentDeps(environment);
+        writeEnvironmentSnapshot(snapshotCache, snapshotKey, environmentDeps);
+      }
+    }
+    environmentDeps.forEach(d -> saveToCacheWithKeyVariations(cache, d));
+  }
+
+  /**
+   * Get all the packages installed on the environment, with their direct dependencies.
+   *
+   * @param environment the probed environment, or null if it wasn't probed yet
+   */
+  private List<PythonDependency> getEnvironmentDeps(PythonInstalledDistributions environment) {
     boolean usePipDepTree = getBooleanValueEnvironment("EXHORT_PIP_USE_DEP_TREE", "false");
     if (usePipDepTree) {
-      getDependencyTreeJsonFromPipDepTree().forEach(d -> saveToCacheWithKeyVariations(cache, d));
+      return getDependencyTreeJsonFromPipDepTree();
+    }
+    if (useMetadata()) {
+      return (environment != null ? environment : probeEnvironment()).read();
+    }
+    String freezeOutput = getPipFreezeFromEnvironment();
+    if (debugLoggingIsNeeded()) {
+      String freezeMessage =
+          String.format(
+              "Package Manager PIP freeze --all command result output -> %s %s",
+              System.lineSeparator(), freezeOutput);
+      log.info(freezeMessage);
+    }
+    String[] deps = freezeOutput.split(System.lineSeparator());
+    String depNames =
+        Arrays.stream(deps)
+            .map(PythonControllerBase::getDependencyName)
+            .collect(Collectors.joining(" "));
+    String pipShowOutput = getPipShowFromEnvironment(depNames);
+    if (debugLoggingIsNeeded()) {
+      String pipShowMessage =
+          String.format(
+              "Package Manager PIP show command result output -> %s %s",
+              System.lineSeparator(), pipShowOutput);
+      log.info(pipShowMessage);
+    }
+    return splitPipShowLines(pipShowOutput).stream()
+        .map(this::getPythonDependencyByShowStringBlock)
+        .collect(Collectors.toList());
+  }
+
+  private static boolean useMetadata() {
+    return getBooleanValueEnvironment("EXHORT_PYTHON_USE_METADATA", "false");
+  }
+
+  private static DiskCache getEnvironmentSnapshotCache() {
+    if (!getBooleanValueEnvironment("EXHORT_PYTHON_ENVIRONMENT_CACHE", "false")) {
+      return null;
+    }
+    return new DiskCache(
+        DiskCache.getCacheDirectory("python-environment"),
+        Integer.parseInt(
+            getStringValueEnvironment("EXHORT_PYTHON_ENVIRONMENT_CACHE_MAX_ENTRIES", "64").trim()),
+        Long.parseLong(
+                getStringValueEnvironment("EXHORT_PYTHON_ENVIRONMENT_CACHE_MAX_SIZE_MB", "64")
+                    .trim())
+            * 1024
+            * 1024);
+  }
+
+  /**
+   * The installed packages are determined by the interpreter and the content of its sys.path
+   * directories. The data source is part of the key too, as pip and pipdeptree may differ in the
+   * packages they list.
+   */
+  private String getEnvironmentSnapshotKey(PythonInstalledDistributions environment) {
+    String dataSource;
+    if (getBooleanValueEnvironment("EXHORT_PIP_USE_DEP_TREE", "false")) {
+      dataSource = "pipdeptree";
+    } else if (useMetadata()) {
+      dataSource = "metadata";
     } else {
-      String freezeOutput = getPipFreezeFromEnvironment();
-      if (debugLoggingIsNeeded()) {
-        String freezeMessage =
-            String.format(
-                "Package Manager PIP freeze --all command result output -> %s %s",
-                System.lineSeparator(), freezeOutput);
-        log.info(freezeMessage);
+      dataSource = "pip";
+    }
+    return DiskCache.key(
+        Path.of(getEnvironmentPythonBin()).toAbsolutePath().normalize().toString().getBytes(),
+        String.valueOf(pipBinaryLocation).getBytes(),
+        dataSource.getBytes(),
+        environment.fingerprint());
+  }
+
+  private static List<PythonDependency> readEnvironmentSnapshot(Path snapshot) {
+    try {
+      List<PythonDependency> environmentDeps = new ArrayList<>();
+      for (JsonNode dependency : new ObjectMapper().readTree(snapshot.toFile())) {
+        List<String> dependencies = new ArrayList<>();
+        dependency.get("dependencies").forEach(d -> dependencies.add(d.asText()));
+        environmentDeps.add(
+            new PythonDependency(
+                dependency.get("name").asText(), dependency.get("version").asText(), dependencies));
       }
-      String[] deps = freezeOutput.split(System.lineSeparator());
-      String depNames =
-          Arrays.stream(deps)
-              .map(PythonControllerBase::getDependencyName)
-              .collect(Collectors.joining(" "));
-      String pipShowOutput = getPipShowFromEnvironment(depNames);
-      if (debugLoggingIsNeeded()) {
-        String pipShowMessage =
-            String.format(
-                "Package Manager PIP show command result output -> %s %s",
-                System.lineSeparator(), pipShowOutput);
-        log.info(pipShowMessage);
+      return environmentDeps;
+    } catch (IOException e) {
+      throw new RuntimeException("Could not read the python environment snapshot " + snapshot, e);
+    }
+  }
+
+  private void writeEnvironmentSnapshot(
+      DiskCache snapshotCache, String snapshotKey, List<PythonDependency> environmentDeps) {
+    Path tmpSnapshot = null;
+    try {
+      tmpSnapshot = Files.createTempFile("exhort_python_env_", ".json");
+      new ObjectMapper().writeValue(tmpSnapshot.toFile(), environmentDeps);
+      snapshotCache.put(snapshotKey, tmpSnapshot);
+    } catch (IOException e) {
+      // the analysis doesn't depend on the snapshot being cached
+      log.warning("Could not cache the python environment snapshot: " + e.getMessage());
+    } finally {
+      if (tmpSnapshot != null) {
+        try {
+          Files.deleteIfExists(tmpSnapshot);
+        } catch (IOException e) {
+          log.fine("Could not delete " + tmpSnapshot);
+        }
       }
-      splitPipShowLines(pipShowOutput).stream()
-          .map(this::getPythonDependencyByShowStringBlock)
-          .forEach(d -> saveToCacheWithKeyVariations(cache, d));
     }
   }
 
@@ -15,15 +15,39 @@
  */
 package com.redhat.exhort.utils;
 
+import static com.redhat.exhort.impl.ExhortApi.getBooleanValueEnvironment;
+
+import com.redhat.exhort.logging.LoggersFactory;
 import com.redhat.exhort.tools.Operations;
 import java.io.IOException;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public class PythonControllerVirtualEnv extends PythonControllerBase {
 
+  private static final Logger log =
+      LoggersFactory.getLogger(PythonControllerVirtualEnv.class.getName());
+
+  // -r/--requirement and -c/--constraint options, referencing another file
+  private static final Pattern REQUIREMENTS_REFERENCE =
+      Pattern.compile("(?:-[rc]|--requirement|--constraint)\\s*=?\\s*(\\S+)");
+
+  // editable installs and local directories or archives, e.g. -e ., ./lib, pkg @ file:///lib
+  private static final Pattern LOCAL_REQUIREMENT =
+      Pattern.compile("^(?:-e|--editable)\\b|^(?:\\.|/|~|file:)|@\\s*file:");
+
+  private PythonVirtualEnvPool pool;
+  private PythonVirtualEnvPool.Lease lease;
+
   //  private System.Logger log = System.getLogger("name");
   public PythonControllerVirtualEnv(String pathToPythonBin) {
     this.pipBinaryDir =
@@ -33,8 +57,100 @@ public PythonControllerVirtualEnv(String pathToPythonBin) {
     this.pathToPythonBin = pathToPythonBin;
   }
 
+  /**
+   * When environment variable/system property EXHORT_PYTHON_VIRTUAL_ENV_POOL=true, lease a virtual
+   * environment of the pool for the requirements instead of using the fixed one, so concurrent
+   * analyses don't share an environment and repeated ones reuse the installed packages.
+   * Requirements installing local projects use the fixed environment, as the installed packages
+   * depend on the projects' content.
+   */
+  @Override
+  protected void selectEnvironment(String pathToRequirements) {
+    if (!getBooleanValueEnvironment("EXHORT_PYTHON_VIRTUAL_ENV_POOL", "false")) {
+      return;
+    }
+    List<byte[]> parts = new ArrayList<>();
+    try {
+      if (!readRequirements(Path.of(pathToRequirements), parts, new HashSet<>())) {
+        log.fine(
+            String.format(
+                "%s installs local projects, using the fixed virtual environment",
+                pathToRequirements));
+        return;
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    // the installed packages are determined by the interpreter and the requirements
+    parts.add(0, pathToPythonBin.getBytes());
+    parts.add(
+        String.valueOf(getBooleanValueEnvironment("EXHORT_PYTHON_INSTALL_BEST_EFFORTS", "false"))
+            .getBytes());
+    var key = DiskCache.key(parts.toArray(byte[][]::new));
+    this.pool = PythonVirtualEnvPool.getDefault();
+    this.lease = pool.lease(key);
+    this.pythonEnvironmentDir = lease.getDirectory();
+    this.pipBinaryDir = pythonEnvironmentDir.resolve("bin");
+  }
+
+  /**
+   * Read the content of a requirements file and of the requirements and constraints files it
+   * references, in the order pip reads them.
+   *
+   * @param requirementsFile the requirements file
+   * @param contents the list to add the files' content to
+   * @param visited the files read already, as files may reference each other
+   * @return false if the requirements install an editable or a local project, true otherwise
+   */
+  static boolean readRequirements(Path requirementsFile, List<byte[]> contents, Set<Path> visited)
+      throws IOException {
+    var file = requirementsFile.toAbsolutePath().normalize();
+    if (!visited.add(file)) {
+      return true;
+    }
+    byte[] content = Files.readAllBytes(file);
+    contents.add(content);
+    for (String line : new String(content).split("\\R")) {
+      // comments start at a whitespace followed by a hash sign, or at the beginning of the line
+      String requirement = line.replaceFirst("(^|\\s)#.*", "").trim();
+      Matcher reference = REQUIREMENTS_REFERENCE.matcher(requirement);
+      if (reference.matches()) {
+        var referenced = file.resolveSibling(reference.group(1));
+        if (!readRequirements(referenced, contents, visited)) {
+          return false;
+        }
+      } else if (LOCAL_REQUIREMENT.matcher(requirement).find()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  protected void releaseEnvironment(boolean analyzed) {
+    if (lease == null) {
+      super.releaseEnvironment(analyzed);
+      return;
+    }
+    // the installed packages are kept for the next analysis of the same requirements
+    try {
+      pool.release(lease, analyzed && !isResolvedOnly());
+    } finally {
+      lease = null;
+    }
+  }
+
   @Override
   public void prepareEnvironment(String pathToPythonBin) {
+    String envBinDir = pipBinaryDir.toString();
+    if (pathToPythonBin.contains("python3")) {
+      this.pipBinaryLocation = Path.of(envBinDir, "pip3").toString();
+    } else {
+      this.pipBinaryLocation = Path.of(envBinDir, "pip").toString();
+    }
+    if (lease != null && lease.isWarm()) {
+      return;
+    }
     try {
       if (!Files.exists(pythonEnvironmentDir)) {
         Files.createDirectory(pythonEnvironmentDir);
@@ -46,17 +162,17 @@ public void prepareEnvironment(String pathToPythonBin) {
         Operations.runProcessGetOutput(
             Path.of("."),
             new String[] {pathToPythonBin, "-m", "venv", pythonEnvironmentDir.toString()});
-    String envBinDir = pipBinaryDir.toString();
-    if (pathToPythonBin.contains("python3")) {
-      this.pipBinaryLocation = Path.of(envBinDir, "pip3").toString();
-    } else {
-      this.pipBinaryLocation = Path.of(envBinDir, "pip").toString();
-    }
+  }
+
+  @Override
+  protected String getEnvironmentPythonBin() {
+    return pipBinaryDir.resolve("python").toString();
   }
 
   @Override
   public boolean automaticallyInstallPackageOnEnvironment() {
-    return true;
+    // a warm environment of the pool has the requirements installed already
+    return lease == null || !lease.isWarm();
   }
 
   @Override
@@ -0,0 +1,176 @@
+/*
+ * Copyright © 2023 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.exhort.utils;
+
+import com.redhat.exhort.exception.PackageNotInstalledException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Builds the dependency trees of the packages installed on a Python environment, out of the
+ * environment's packages graph. A package reached again along the path from its root package is
+ * left out, so cycles are cut the same way wherever they're entered.
+ *
+ * <p>The subtree of a package which isn't part of a cycle doesn't depend on the path it's reached
+ * by, so it's expanded once and shared by all the packages depending on it. Only the packages of a
+ * cycle, i.e. of a strongly connected component of the graph, are expanded per path.
+ */
+final class PythonDependencyTreeBuilder {
+
+  private static final Comparator<Map<String, Object>> BY_NAME =
+      Comparator.comparing(dependency -> (String) dependency.get("name"));
+
+  private final Map<StringInsensitive, PythonDependency> environmentDeps;
+
+  // the expanded subtrees of the packages out of cycles, by lower case package name
+  private final Map<String, Map<String, Object>> subtrees = new HashMap<>();
+
+  // Tarjan's strongly connected components state, by lower case package name
+  private final Map<String, Integer> indexes = new HashMap<>();
+  private final Map<String, Integer> lowLinks = new HashMap<>();
+  private final Deque<String> stack = new ArrayDeque<>();
+  private final Set<String> onStack = new HashSet<>();
+  private final Set<String> cyclic = new HashSet<>();
+
+  /**
+   * @param environmentDeps the packages installed on the environment, by name
+   */
+  PythonDependencyTreeBuilder(Map<StringInsensitive, PythonDependency> environmentDeps) {
+    this.environmentDeps = environmentDeps;
+  }
+
+  /**
+   * Add the dependency tree of a package to a list of dependencies.
+   *
+   * @param dependencyList the list to add the package to
+   * @param depName the name of the package
+   * @param includeTransitive whether to add the transitive dependencies of the package
+   * @throws PackageNotInstalledException when the package or one of its dependencies isn't
+   *     installed on the environment
+   */
+  void addDependency(
+      List<Map<String, Object>> dependencyList, String depName, boolean includeTransitive) {
+    if (dependencyList == null || depName.trim().equals("")) return;
+
+    if (includeTransitive) {
+      String key = depName.toLowerCase();
+      if (!indexes.containsKey(key)) {
+        connect(key);
+      }
+      Set<String> path = new HashSet<>();
+      path.add(key);
+      dependencyList.add(expand(depName, path));
+    } else {
+      PythonDependency pythonDependency = getPythonDependency(depName);
+      Map<String, Object> dataMap = new HashMap<>();
+      dataMap.put("name", pythonDependency.getName());
+      dataMap.put("version", pythonDependency.getVersion());
+      if (!pythonDependency.getDependencies().isEmpty()) {
+        dataMap.put("dependencies", new ArrayList<>());
+      }
+      dependencyList.add(dataMap);
+    }
+  }
+
+  private Map<String, Object> expand(String depName, Set<String> path) {
+    String key = depName.toLowerCase();
+    Map<String, Object> subtree = subtrees.get(key);
+    if (subtree != null) {
+      return subtree;
+    }
+    PythonDependency pythonDependency = getPythonDependency(depName);
+
+    Map<String, Object> dataMap = new HashMap<>();
+    dataMap.put("name", pythonDependency.getName());
+    dataMap.put("version", pythonDependency.getVersion());
+
+    List<String> directDeps = pythonDependency.getDependencies();
+    List<Map<String, Object>> targetDeps = new ArrayList<>(directDeps.size());
+    for (String directDep : directDeps) {
+      String directDepKey = directDep.toLowerCase();
+      if (path.add(directDepKey)) {
+        targetDeps.add(expand(directDep, path));
+        path.remove(directDepKey);
+      }
+    }
+    if (!directDeps.isEmpty()) {
+      targetDeps.sort(BY_NAME);
+      dataMap.put("dependencies", targetDeps);
+    }
+    if (!cyclic.contains(key)) {
+      subtrees.put(key, dataMap);
+    }
+    return dataMap;
+  }
+
+  private PythonDependency getPythonDependency(String depName) {
+    PythonDependency pythonDependency = environmentDeps.get(new StringInsensitive(depName));
+    if (pythonDependency == null) {
+      throw new PackageNotInstalledException(
+          String.format(
+              "Package name=>%s is not installed on your python environment, either install it ("
+                  + " better to install requirements.txt altogether) or turn on environment"
+                  + " variable EXHORT_PYTHON_VIRTUAL_ENV=true to automatically installs it on"
+                  + " virtual environment ( will slow down the analysis)",
+              depName));
+    }
+    return pythonDependency;
+  }
+
+  /** Find the strongly connected components reachable from a package, marking the cyclic ones. */
+  private void connect(String key) {
+    int index = indexes.size();
+    indexes.put(key, index);
+    lowLinks.put(key, index);
+    stack.push(key);
+    onStack.add(key);
+
+    // packages which aren't installed have no edges, they fail the analysis once expanded
+    PythonDependency pythonDependency = environmentDeps.get(new StringInsensitive(key));
+    List<String> directDeps =
+        pythonDependency != null ? pythonDependency.getDependencies() : List.of();
+    for (String directDep : directDeps) {
+      String directDepKey = directDep.toLowerCase();
+      if (!indexes.containsKey(directDepKey)) {
+        connect(directDepKey);
+        lowLinks.put(key, Math.min(lowLinks.get(key), lowLinks.get(directDepKey)));
+      } else if (onStack.contains(directDepKey)) {
+        lowLinks.put(key, Math.min(lowLinks.get(key), indexes.get(directDepKey)));
+      }
+    }
+
+    if (lowLinks.get(key) == index) {
+      List<String> component = new ArrayList<>();
+      String member;
+      do {
+        member = stack.pop();
+        onStack.remove(member);
+        component.add(member);
+      } while (!member.equals(key));
+      // a package depending on itself is always cut right away, so it's not expanded per path
+      if (component.size() > 1) {
+        cyclic.addAll(component);
+      }
+    }
+  }
+}
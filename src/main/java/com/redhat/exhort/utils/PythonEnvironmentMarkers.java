@@ -0,0 +1,309 @@
+/*
+ * Copyright © 2023 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.exhort.utils;
+
+import com.redhat.exhort.logging.LoggersFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Evaluates the requirements of Python distributions (PEP 508), i.e. {@code Requires-Dist} values,
+ * against the environment markers of an interpreter, the same way pip does when listing the
+ * requirements of an installed distribution: requirements of extras are left out, and so are the
+ * ones whose markers don't match the interpreter, or can't be parsed.
+ */
+final class PythonEnvironmentMarkers {
+
+  private static final Logger log =
+      LoggersFactory.getLogger(PythonEnvironmentMarkers.class.getName());
+
+  private static final Pattern REQUIREMENT_NAME =
+      Pattern.compile("^\\s*([A-Za-z0-9](?:[A-Za-z0-9._-]*[A-Za-z0-9])?)");
+
+  private static final Pattern TOKEN =
+      Pattern.compile(
+          "\\s*(?:(\\()|(\\))|'([^']*)'|\"([^\"]*)\"|(===|==|!=|~=|<=|>=|<|>)"
+              + "|(not\\s+in\\b|in\\b|and\\b|or\\b)|([A-Za-z_][A-Za-z0-9_.]*))");
+
+  private static final Pattern RELEASE = Pattern.compile("^\\d+(\\.\\d+)*");
+
+  private static final List<String> VERSION_MARKERS =
+      List.of("python_version", "python_full_version", "implementation_version");
+
+  private PythonEnvironmentMarkers() {}
+
+  /**
+   * Get the name of the distribution required by a requirement, if the requirement applies to the
+   * given environment.
+   *
+   * @param requirement a PEP 508 requirement, i.e. {@code idna (<4,>=2.5) ; python_version >= "3"}
+   * @param environment the environment markers values of the interpreter, by marker name
+   * @return the required distribution name, or empty if the requirement doesn't apply, or its
+   *     markers can't be parsed
+   */
+  static Optional<String> getApplicableRequirementName(
+      String requirement, Map<String, String> environment) {
+    Matcher name = REQUIREMENT_NAME.matcher(requirement);
+    if (!name.find()) {
+      return Optional.empty();
+    }
+    int markerIndex = requirement.indexOf(';');
+    if (markerIndex > -1) {
+      try {
+        if (!evaluate(requirement.substring(markerIndex + 1).trim(), environment)) {
+          return Optional.empty();
+        }
+      } catch (IllegalArgumentException e) {
+        log.warning(
+            String.format("Skipping requirement %s, %s", requirement.trim(), e.getMessage()));
+        return Optional.empty();
+      }
+    }
+    return Optional.of(name.group(1));
+  }
+
+  /**
+   * Get the names of the distributions required by a distribution, as pip lists them.
+   *
+   * @param requirements the PEP 508 requirements of the distribution, i.e. its Requires-Dist
+   * @param environment the environment markers values of the interpreter, by marker name
+   * @return the distinct names of the applicable requirements, sorted case-insensitively
+   */
+  static List<String> getApplicableRequirementNames(
+      List<String> requirements, Map<String, String> environment) {
+    return requirements.stream()
+        .map(requirement -> getApplicableRequirementName(requirement, environment))
+        .flatMap(Optional::stream)
+        .distinct()
+        .sorted(String.CASE_INSENSITIVE_ORDER)
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * Evaluate a PEP 508 marker expression, with the {@code extra} marker being empty. Markers which
+   * are unknown to the given environment are compared as empty strings.
+   *
+   * @param marker the marker expression, i.e. {@code python_version < "3.8" and os_name == "nt"}
+   * @param environment the environment markers values of the interpreter, by marker name
+   * @return whether the marker matches the environment
+   * @throws IllegalArgumentException when the marker expression can't be parsed
+   */
+  static boolean evaluate(String marker, Map<String, String> environment) {
+    var parser = new Parser(tokenize(marker), environment);
+    boolean result = parser.orExpression();
+    if (parser.position != parser.tokens.size()) {
+      throw new IllegalArgumentException("Invalid environment marker: " + marker);
+    }
+    return result;
+  }
+
+  private static List<String[]> tokenize(String marker) {
+    List<String[]> tokens = new ArrayList<>();
+    Matcher matcher = TOKEN.matcher(marker);
+    int position = 0;
+    while (position < marker.length()) {
+      if (marker.substring(position).isBlank()) {
+        break;
+      }
+      if (!matcher.find(position) || matcher.start() != position) {
+        throw new IllegalArgumentException("Invalid environment marker: " + marker);
+      }
+      if (matcher.group(1) != null || matcher.group(2) != null) {
+        tokens.add(new String[] {"paren", matcher.group(1) != null ? "(" : ")"});
+      } else if (matcher.group(3) != null || matcher.group(4) != null) {
+        tokens.add(
+            new String[] {
+              "string", matcher.group(3) != null ? matcher.group(3) : matcher.group(4)
+            });
+      } else if (matcher.group(5) != null) {
+        tokens.add(new String[] {"op", matcher.group(5)});
+      } else if (matcher.group(6) != null) {
+        var keyword = matcher.group(6).replaceAll("\\s+", " ");
+        tokens.add(
+            new String[] {keyword.equals("and") || keyword.equals("or") ? keyword : "op", keyword});
+      } else {
+        tokens.add(new String[] {"variable", matcher.group(7)});
+      }
+      position = matcher.end();
+    }
+    return tokens;
+  }
+
+  private static final class Parser {
+    private final List<String[]> tokens;
+    private final Map<String, String> environment;
+    private int position;
+
+    private Parser(List<String[]> tokens, Map<String, String> environment) {
+      this.tokens = tokens;
+      this.environment = environment;
+    }
+
+    private boolean orExpression() {
+      boolean result = andExpression();
+      while (accept("or")) {
+        // both sides are parsed regardless of the result
+        result = andExpression() | result;
+      }
+      return result;
+    }
+
+    private boolean andExpression() {
+      boolean result = atom();
+      while (accept("and")) {
+        result = atom() & result;
+      }
+      return result;
+    }
+
+    private boolean atom() {
+      if (position < tokens.size() && tokens.get(position)[1].equals("(")) {
+        position++;
+        boolean result = orExpression();
+        expect("paren");
+        return result;
+      }
+      String[] left = expect("variable", "string");
+      String operator = expect("op")[1];
+      String[] right = expect("variable", "string");
+      String variable = left[0].equals("variable") ? left[1] : right[1];
+      return compare(value(left), operator, value(right), variable);
+    }
+
+    private String value(String[] token) {
+      if (token[0].equals("string")) {
+        return token[1];
+      }
+      if (token[1].equals("extra")) {
+        return "";
+      }
+      return environment.getOrDefault(token[1], "");
+    }
+
+    private boolean accept(String type) {
+      if (position < tokens.size() && tokens.get(position)[0].equals(type)) {
+        position++;
+        return true;
+      }
+      return false;
+    }
+
+    private String[] expect(String... types) {
+      if (position < tokens.size()) {
+        var token = tokens.get(position);
+        for (String type : types) {
+          if (token[0].equals(type)) {
+            position++;
+            return token;
+          }
+        }
+      }
+      throw new IllegalArgumentException("Invalid environment marker, expected " + types[0]);
+    }
+  }
+
+  private static boolean compare(String left, String operator, String right, String variable) {
+    switch (operator) {
+      case "in":
+        return right.contains(left);
+      case "not in":
+        return !right.contains(left);
+      case "===":
+        return left.equals(right);
+      default:
+        break;
+    }
+    if (VERSION_MARKERS.contains(variable) && isVersion(left) && isVersion(right)) {
+      if (right.endsWith(".*") && (operator.equals("==") || operator.equals("!="))) {
+        // prefix matching, i.e. == 3.* matches any 3.x release
+        var prefix = right.substring(0, right.length() - 2);
+        boolean matches = compareVersions(left, prefix, prefix.split("\\.").length) == 0;
+        return operator.equals("==") == matches;
+      }
+      int comparison = compareVersions(left, right);
+      switch (operator) {
+        case "==":
+          return comparison == 0;
+        case "!=":
+          return comparison != 0;
+        case "<":
+          return comparison < 0;
+        case "<=":
+          return comparison <= 0;
+        case ">":
+          return comparison > 0;
+        case ">=":
+          return comparison >= 0;
+        case "~=":
+          // compatible release, i.e. ~= 3.8 is >= 3.8, == 3.*
+          var prefix = right.substring(0, Math.max(right.lastIndexOf('.'), 0));
+          return comparison >= 0 && compareVersions(left, prefix, prefix.split("\\.").length) == 0;
+        default:
+          return false;
+      }
+    }
+    switch (operator) {
+      case "==":
+        return left.equals(right);
+      case "!=":
+        return !left.equals(right);
+      default:
+        // ordering non version values is undefined
+        return false;
+    }
+  }
+
+  private static boolean isVersion(String value) {
+    return RELEASE.matcher(value).find();
+  }
+
+  private static int compareVersions(String left, String right) {
+    return compareVersions(left, right, Integer.MAX_VALUE);
+  }
+
+  private static int compareVersions(String left, String right, int segments) {
+    var leftSegments = releaseSegments(left);
+    var rightSegments = releaseSegments(right);
+    int length = Math.min(Math.max(leftSegments.length, rightSegments.length), segments);
+    for (int i = 0; i < length; i++) {
+      long leftSegment = i < leftSegments.length ? leftSegments[i] : 0;
+      long rightSegment = i < rightSegments.length ? rightSegments[i] : 0;
+      if (leftSegment != rightSegment) {
+        return Long.compare(leftSegment, rightSegment);
+      }
+    }
+    return 0;
+  }
+
+  private static long[] releaseSegments(String version) {
+    Matcher release = RELEASE.matcher(version);
+    if (!release.find()) {
+      return new long[0];
+    }
+    String[] parts = release.group().split("\\.");
+    long[] segments = new long[parts.length];
+    for (int i = 0; i < parts.length; i++) {
+      segments[i] = Long.parseLong(parts[i]);
+    }
+    return segments;
+  }
+}
@@ -0,0 +1,277 @@
+/*
+ * Copyright © 2023 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.exhort.utils;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Reads the distributions installed on a Python environment out of their metadata files, instead of
+ * invoking pip. The distributions are looked up on the interpreter's {@code sys.path} as pip does:
+ * {@code *.dist-info} directories holding a METADATA file, and {@code *.egg-info} directories or
+ * files holding the PKG-INFO content. A distribution found on more than one path entry is taken
+ * from the first one.
+ */
+final class PythonInstalledDistributions {
+
+  /**
+   * A python script printing the interpreter's sys.path and environment markers (PEP 508) as JSON.
+   * It holds no whitespace, as the command line is split on whitespace when run.
+   */
+  static final String PROBE_SCRIPT =
+      "j,o,p,s=map(__import__,('json','os','platform','sys'));i=s.implementation;v=i.version;"
+          + "print(j.dumps({'sys_path':s.path,'markers':{'implementation_name':i.name,"
+          + "'implementation_version':'%d.%d.%d'%v[:3]+(''if(v[3]=='final')else(v[3][0]+str(v[4]))),"
+          + "'os_name':o.name,'platform_machine':p.machine(),"
+          + "'platform_python_implementation':p.python_implementation(),"
+          + "'platform_release':p.release(),'platform_system':p.system(),"
+          + "'platform_version':p.version(),'python_full_version':p.python_version(),"
+          + "'python_version':'.'.join(p.python_version_tuple()[:2]),'sys_platform':s.platform}}))";
+
+  private static final String DIST_INFO = ".dist-info";
+  private static final String EGG_INFO = ".egg-info";
+
+  private final List<Path> sysPath;
+  private final Map<String, String> markers;
+
+  private PythonInstalledDistributions(List<Path> sysPath, Map<String, String> markers) {
+    this.sysPath = sysPath;
+    this.markers = markers;
+  }
+
+  /**
+   * Parse the output of the {@link #PROBE_SCRIPT}.
+   *
+   * @param probeOutput the JSON printed by the probe script
+   * @return the installed distributions reader of the probed interpreter
+   */
+  static PythonInstalledDistributions fromProbe(String probeOutput) {
+    JsonNode probe;
+    try {
+      probe = new ObjectMapper().readTree(probeOutput);
+    } catch (JsonProcessingException e) {
+      throw new RuntimeException("Could not parse the python environment probe output", e);
+    }
+    List<Path> sysPath = new ArrayList<>();
+    // the current directory ('') and zipped entries can't hold installed distributions
+    probe
+        .get("sys_path")
+        .forEach(
+            entry -> {
+              if (!entry.asText().isEmpty()) {
+                sysPath.add(Path.of(entry.asText()));
+              }
+            });
+    Map<String, String> markers = new HashMap<>();
+    probe
+        .get("markers")
+        .fields()
+        .forEachRemaining(e -> markers.put(e.getKey(), e.getValue().asText()));
+    return new PythonInstalledDistributions(sysPath, markers);
+  }
+
+  /**
+   * Read the metadata of all the installed distributions, in parallel.
+   *
+   * @return the installed distributions, with their requirements applicable to the interpreter
+   */
+  List<PythonDependency> read() {
+    List<Path> metadataPaths = new ArrayList<>();
+    for (Path entry : sysPath) {
+      metadataPaths.addAll(listMetadataPaths(entry));
+    }
+    List<PythonDependency> distributions =
+        metadataPaths.parallelStream()
+            .map(this::readDistribution)
+            .flatMap(Optional::stream)
+            .collect(Collectors.toList());
+    // keep the first distribution found on sys.path, as python imports it
+    Set<String> names = new HashSet<>();
+    return distributions.stream()
+        .filter(distribution -> names.add(canonicalName(distribution.getName())))
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * Fingerprint the content of the interpreter's sys.path directories, by the names and last
+   * modified times of their entries. Installing, upgrading or removing a distribution adds,
+   * replaces or removes its metadata entry, so it changes the fingerprint.
+   *
+   * @return the fingerprint bytes, i.e. as a {@link DiskCache} key part
+   */
+  byte[] fingerprint() {
+    var fingerprint = new StringBuilder();
+    for (Path entry : sysPath) {
+      fingerprint.append(entry).append('\n');
+      if (!Files.isDirectory(entry)) {
+        continue;
+      }
+      try (Stream<Path> files = Files.list(entry)) {
+        files
+            .sorted(Comparator.comparing(Path::getFileName))
+            .forEach(
+                file -> {
+                  long lastModified;
+                  try {
+                    lastModified = Files.getLastModifiedTime(file).toMillis();
+                  } catch (IOException e) {
+                    // removed in the meantime
+                    lastModified = -1;
+                  }
+                  fingerprint
+                      .append(file.getFileName())
+                      .append(' ')
+                      .append(lastModified)
+                      .append('\n');
+                });
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+    return fingerprint.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static List<Path> listMetadataPaths(Path sysPathEntry) {
+    if (!Files.isDirectory(sysPathEntry)) {
+      return List.of();
+    }
+    try (Stream<Path> files = Files.list(sysPathEntry)) {
+      return files
+          .filter(
+              file -> {
+                var fileName = file.getFileName().toString();
+                return fileName.endsWith(DIST_INFO) || fileName.endsWith(EGG_INFO);
+              })
+          .sorted(Comparator.comparing(Path::getFileName))
+          .collect(Collectors.toList());
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private Optional<PythonDependency> readDistribution(Path metadataPath) {
+    boolean distInfo = metadataPath.getFileName().toString().endsWith(DIST_INFO);
+    boolean eggInfoDirectory = !distInfo && Files.isDirectory(metadataPath);
+    Path metadataFile;
+    if (distInfo) {
+      metadataFile = metadataPath.resolve("METADATA");
+    } else if (eggInfoDirectory) {
+      metadataFile = metadataPath.resolve("PKG-INFO");
+    } else {
+      metadataFile = metadataPath;
+    }
+    if (!Files.isRegularFile(metadataFile)) {
+      return Optional.empty();
+    }
+    Map<String, List<String>> headers = readHeaders(metadataFile);
+    var name = headers.getOrDefault("name", List.of());
+    var version = headers.getOrDefault("version", List.of());
+    if (name.isEmpty() || version.isEmpty()) {
+      return Optional.empty();
+    }
+    List<String> requirements = headers.getOrDefault("requires-dist", List.of());
+    var requiresTxt = metadataPath.resolve("requires.txt");
+    if (eggInfoDirectory && requirements.isEmpty() && Files.isRegularFile(requiresTxt)) {
+      // egg-info directories hold their requirements apart from PKG-INFO
+      requirements = readRequiresTxt(requiresTxt);
+    }
+    return Optional.of(
+        new PythonDependency(
+            name.get(0),
+            version.get(0),
+            PythonEnvironmentMarkers.getApplicableRequirementNames(requirements, markers)));
+  }
+
+  /**
+   * Read the RFC 822 headers of a metadata file, stopping at the description body.
+   *
+   * @return the header values, by lower case header name
+   */
+  static Map<String, List<String>> readHeaders(Path metadataFile) {
+    Map<String, List<String>> headers = new HashMap<>();
+    try (BufferedReader reader = Files.newBufferedReader(metadataFile, StandardCharsets.UTF_8)) {
+      String line;
+      while ((line = reader.readLine()) != null && !line.isEmpty()) {
+        // continuation lines of multi line values (i.e. License) are not needed
+        if (Character.isWhitespace(line.charAt(0))) {
+          continue;
+        }
+        int colon = line.indexOf(':');
+        if (colon > 0) {
+          headers
+              .computeIfAbsent(
+                  line.substring(0, colon).trim().toLowerCase(), k -> new ArrayList<>())
+              .add(line.substring(colon + 1).trim());
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return headers;
+  }
+
+  /**
+   * Read the requirements of an egg-info requires.txt file as PEP 508 requirements. Its sections
+   * are named after an extra, a marker (prefixed with a colon) or both.
+   */
+  static List<String> readRequiresTxt(Path requiresTxt) {
+    List<String> requirements = new ArrayList<>();
+    String section = "";
+    try {
+      for (String line : Files.readAllLines(requiresTxt, StandardCharsets.UTF_8)) {
+        line = line.trim();
+        if (line.isEmpty() || line.startsWith("#")) {
+          continue;
+        }
+        if (line.startsWith("[") && line.endsWith("]")) {
+          section = line.substring(1, line.length() - 1).trim();
+          continue;
+        }
+        if (section.isEmpty()) {
+          requirements.add(line);
+        } else if (section.startsWith(":")) {
+          requirements.add(line + " ; " + section.substring(1));
+        }
+        // requirements of extras are not installed along with the distribution
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return requirements;
+  }
+
+  /** The normalized name of a distribution (PEP 503). */
+  static String canonicalName(String name) {
+    return name.replaceAll("[-_.]+", "-").toLowerCase();
+  }
+}
@@ -0,0 +1,268 @@
+/*
+ * Copyright © 2023 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.exhort.utils;
+
+import static com.redhat.exhort.impl.ExhortApi.getStringValueEnvironment;
+
+import com.redhat.exhort.logging.LoggersFactory;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A pool of python virtual environments, each one holding the packages of a requirements file
+ * installed by an interpreter. An analysis leases an environment for its exclusive use, so
+ * concurrent analyses never share one, and releases it afterwards with its packages kept installed.
+ * A later analysis of the same requirements with the same interpreter reuses the warm environment
+ * without installing anything. Leases are guarded by file locks, so the pool can be shared between
+ * processes, and the least recently used environments are deleted once the pool exceeds its maximum
+ * number of environments.
+ */
+final class PythonVirtualEnvPool {
+
+  private static final Logger log = LoggersFactory.getLogger(PythonVirtualEnvPool.class.getName());
+
+  private static final String LOCK_SUFFIX = ".lock";
+  private static final String READY_MARKER = ".exhort-ready";
+
+  // the locks of a file are held per process, so the leases of this process are tracked apart
+  private static final Set<Path> leased = ConcurrentHashMap.newKeySet();
+
+  private final Path directory;
+  private final int maxEntries;
+
+  /**
+   * @param directory the directory holding the environments, created when first needed
+   * @param maxEntries the maximum number of environments kept in the pool
+   */
+  PythonVirtualEnvPool(Path directory, int maxEntries) {
+    this.directory = directory;
+    this.maxEntries = maxEntries;
+  }
+
+  /**
+   * Get the pool under the base cache directory set with environment variable/system property
+   * EXHORT_CACHE_DIR, limited by EXHORT_PYTHON_VIRTUAL_ENV_POOL_MAX_ENTRIES.
+   */
+  static PythonVirtualEnvPool getDefault() {
+    return new PythonVirtualEnvPool(
+        DiskCache.getCacheDirectory("python-virtualenv"),
+        Integer.parseInt(
+            getStringValueEnvironment("EXHORT_PYTHON_VIRTUAL_ENV_POOL_MAX_ENTRIES", "8").trim()));
+  }
+
+  /**
+   * Lease an environment for installing the given requirements, preferring a warm one. An
+   * environment of the same requirements leased by another analysis is never shared, another one is
+   * leased instead.
+   *
+   * @param key the key of the installed packages, i.e. of the interpreter and the requirements
+   * @return the leased environment, to be released once the analysis is over
+   */
+  Lease lease(String key) {
+    try {
+      Files.createDirectories(directory);
+      for (int slot = 0; ; slot++) {
+        var environmentDir = directory.resolve(key + "-" + slot);
+        var lease = tryLease(environmentDir);
+        if (lease != null) {
+          return lease;
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private Lease tryLease(Path environmentDir) throws IOException {
+    if (!leased.add(environmentDir)) {
+      return null;
+    }
+    FileChannel channel = null;
+    try {
+      channel =
+          FileChannel.open(
+              lockFile(environmentDir), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+      FileLock lock = tryLock(channel);
+      // the lock file of an evicted environment is deleted once unlocked, so it's locked again
+      if (lock != null && !Files.exists(lockFile(environmentDir))) {
+        lock = null;
+      }
+      if (lock != null) {
+        var warm = Files.exists(environmentDir.resolve(READY_MARKER));
+        return new Lease(environmentDir, channel, warm);
+      }
+    } catch (IOException | RuntimeException e) {
+      leased.remove(environmentDir);
+      if (channel != null) {
+        channel.close();
+      }
+      throw e;
+    }
+    leased.remove(environmentDir);
+    channel.close();
+    return null;
+  }
+
+  /**
+   * Release a leased environment, evicting the least recently used environments if the pool
+   * exceeded its maximum number of environments.
+   *
+   * @param lease the leased environment
+   * @param ready whether the requirements were installed on the environment, so it's warm
+   */
+  void release(Lease lease, boolean ready) {
+    try {
+      var environmentDir = lease.getDirectory();
+      if (Files.isDirectory(environmentDir)) {
+        var readyMarker = environmentDir.resolve(READY_MARKER);
+        if (ready && !Files.exists(readyMarker)) {
+          Files.createFile(readyMarker);
+        }
+        Files.setLastModifiedTime(environmentDir, FileTime.fromMillis(System.currentTimeMillis()));
+      }
+    } catch (IOException e) {
+      log.warning("Could not mark the python virtual environment: " + e.getMessage());
+    } finally {
+      lease.close(false);
+    }
+    evict(lease.getDirectory());
+  }
+
+  private void evict(Path releasedDir) {
+    List<Path> environments;
+    try (Stream<Path> files = Files.list(directory)) {
+      environments =
+          files
+              .filter(Files::isDirectory)
+              .filter(environmentDir -> !environmentDir.equals(releasedDir))
+              .sorted(Comparator.comparing(PythonVirtualEnvPool::lastModified).reversed())
+              .collect(Collectors.toCollection(ArrayList::new));
+    } catch (IOException e) {
+      log.warning("Could not list the python virtual environments: " + e.getMessage());
+      return;
+    }
+    // always keep the released environment, as the most recently used one
+    environments.add(0, releasedDir);
+    for (int i = Math.max(maxEntries, 1); i < environments.size(); i++) {
+      var environmentDir = environments.get(i);
+      try {
+        // environments leased by running analyses are kept
+        var lease = tryLease(environmentDir);
+        if (lease != null) {
+          log.fine(String.format("evicting python virtual environment %s", environmentDir));
+          try {
+            deleteDirectory(environmentDir);
+          } finally {
+            lease.close(true);
+          }
+        }
+      } catch (IOException | UncheckedIOException e) {
+        log.warning(
+            String.format(
+                "Could not evict the python virtual environment %s: %s",
+                environmentDir, e.getMessage()));
+      }
+    }
+  }
+
+  private static FileLock tryLock(FileChannel channel) throws IOException {
+    try {
+      return channel.tryLock();
+    } catch (OverlappingFileLockException e) {
+      return null;
+    }
+  }
+
+  private static Path lockFile(Path environmentDir) {
+    return environmentDir.resolveSibling(environmentDir.getFileName() + LOCK_SUFFIX);
+  }
+
+  private static FileTime lastModified(Path file) {
+    try {
+      return Files.getLastModifiedTime(file);
+    } catch (IOException e) {
+      // removed in the meantime
+      return FileTime.fromMillis(0);
+    }
+  }
+
+  private static void deleteDirectory(Path directory) throws IOException {
+    try (Stream<Path> files = Files.walk(directory)) {
+      for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+        Files.delete(file);
+      }
+    }
+  }
+
+  /** An environment leased for the exclusive use of an analysis. */
+  static final class Lease {
+    private final Path directory;
+    private final FileChannel channel;
+    private final boolean warm;
+
+    private Lease(Path directory, FileChannel channel, boolean warm) {
+      this.directory = directory;
+      this.channel = channel;
+      this.warm = warm;
+    }
+
+    /**
+     * @return the directory of the virtual environment, not created yet if not warm
+     */
+    Path getDirectory() {
+      return directory;
+    }
+
+    /**
+     * @return whether the requirements were already installed on the environment
+     */
+    boolean isWarm() {
+      return warm;
+    }
+
+    /**
+     * @param evicted whether the environment was deleted, so its lock file is deleted as well
+     */
+    private void close(boolean evicted) {
+      try {
+        // closing the channel releases its lock
+        channel.close();
+        if (evicted) {
+          Files.deleteIfExists(lockFile(directory));
+        }
+      } catch (IOException e) {
+        log.warning("Could not release the python virtual environment lock: " + e.getMessage());
+      } finally {
+        leased.remove(directory);
+      }
+    }
+  }
+}
@@ -0,0 +1,786 @@
+/*
+ * Copyright © 2023 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.exhort.vcs;
+
+import com.redhat.exhort.utils.DiskCache;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Reads the metadata of a git repository in-process: its HEAD, loose and packed refs, and the
+ * commit and tag objects, loose or packed. Repository layouts and formats it does not support are
+ * reported by an {@link IOException}, for the caller to fall back to the git command line. The
+ * objects read are kept until the repository is closed.
+ */
+final class GitRepository implements Closeable {
+
+  // the maximum number of commits walked looking for the tag describing HEAD
+  static final int MAX_DESCRIBE_WALK = 1000;
+
+  // the maximum number of tags considered to describe HEAD, as git describe --candidates
+  static final int MAX_DESCRIBE_CANDIDATES = 10;
+
+  private static final int OBJ_COMMIT = 1;
+  private static final int OBJ_TAG = 4;
+  private static final int OBJ_OFS_DELTA = 6;
+  private static final int OBJ_REF_DELTA = 7;
+  private static final String[] TYPE_NAMES = {
+    null, "commit", "tree", "blob", "tag", null, "ofs-delta", "ref-delta"
+  };
+
+  private static final int MAX_CACHED_DESCRIPTIONS = 64;
+
+  // the described HEAD commits, by repository, HEAD and a digest of the tags, least recently used
+  // ones evicted first
+  private static final Map<String, TagInfo> describeCache =
+      Collections.synchronizedMap(
+          new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, TagInfo> eldest) {
+              return size() > MAX_CACHED_DESCRIPTIONS;
+            }
+          });
+
+  private final Path gitDir;
+  // the directory of the shared refs and objects, differs from gitDir for linked worktrees
+  private final Path commonDir;
+  private List<PackIndex> packIndexes;
+  private Set<String> shallowCommits;
+  // the objects read, by name
+  private final Map<String, GitObject> objects = new HashMap<>();
+
+  private GitRepository(Path gitDir, Path commonDir) {
+    this.gitDir = gitDir;
+    this.commonDir = commonDir;
+  }
+
+  /**
+   * Find the git directory of the work tree holding a directory, as git rev-parse does without
+   * environment overrides.
+   *
+   * @param directory a directory inside the work tree
+   * @return the git directory, or null if the directory is not inside a work tree
+   * @throws IOException when failed to read a .git file
+   */
+  static Path findGitDir(Path directory) throws IOException {
+    for (Path dir = directory.toAbsolutePath().normalize(); dir != null; dir = dir.getParent()) {
+      var dotGit = dir.resolve(".git");
+      if (Files.isDirectory(dotGit) && Files.isRegularFile(dotGit.resolve("HEAD"))) {
+        return dotGit;
+      }
+      if (Files.isRegularFile(dotGit)) {
+        // linked worktrees and submodules point to their git directory
+        var content = Files.readString(dotGit).trim();
+        if (content.startsWith("gitdir:")) {
+          return dir.resolve(content.substring("gitdir:".length()).trim()).normalize();
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @param directory a directory inside the work tree
+   * @return the repository of the work tree
+   * @throws IOException when the directory is not inside a work tree, or the repository is not
+   *     supported
+   */
+  static GitRepository open(Path directory) throws IOException {
+    var gitDir = findGitDir(directory);
+    if (gitDir == null) {
+      throw new IOException("Not a git work tree: " + directory);
+    }
+    var commonDir = gitDir;
+    var commonDirFile = gitDir.resolve("commondir");
+    if (Files.isRegularFile(commonDirFile)) {
+      commonDir = gitDir.resolve(Files.readString(commonDirFile).trim()).normalize();
+    }
+    var config = commonDir.resolve("config");
+    if (Files.isRegularFile(config)) {
+      var content = Files.readString(config).toLowerCase();
+      // sha256 objects and reftable refs are not supported
+      if (content.contains("objectformat") || content.contains("refstorage")) {
+        throw new IOException("Unsupported repository format: " + config);
+      }
+    }
+    return new GitRepository(gitDir, commonDir);
+  }
+
+  /**
+   * Describe the HEAD commit by its nearest tag, preferring annotated tags as git describe does and
+   * falling back to lightweight tags as git describe --tags does. The results of the recently
+   * described repositories are cached by repository, HEAD and tags.
+   *
+   * @return the tag info of the HEAD commit
+   * @throws IOException when failed to read the repository, or the nearest tag is ambiguous or not
+   *     found within {@link #MAX_DESCRIBE_WALK} commits
+   */
+  TagInfo describeHead() throws IOException {
+    var head = resolveHead();
+    if (head == null) {
+      // empty git repo with no commits
+      var tagInfo = new TagInfo();
+      tagInfo.setTagName("");
+      tagInfo.setCurrentCommitPointedByTag(false);
+      tagInfo.setCommitTimestamp(LocalDateTime.MIN);
+      tagInfo.setCurrentCommitDigest("");
+      return tagInfo;
+    }
+    var tags = readTags();
+    var key =
+        DiskCache.key(gitDir.toString().getBytes(), head.getBytes(), tags.toString().getBytes());
+    var cached = describeCache.get(key);
+    if (cached == null) {
+      cached = describe(head, tags);
+      describeCache.put(key, cached);
+    }
+    return copyOf(cached);
+  }
+
+  private TagInfo describe(String head, Map<String, String> tags) throws IOException {
+    // the tags of each commit, annotated or lightweight
+    Map<String, List<String>> annotatedTags = new HashMap<>();
+    Map<String, List<String>> lightweightTags = new HashMap<>();
+    for (Map.Entry<String, String> tag : tags.entrySet()) {
+      var object = readObject(tag.getValue());
+      var target = tag.getValue();
+      boolean annotated = object.type == OBJ_TAG;
+      // peel the tags of tags
+      for (int depth = 0; object.type == OBJ_TAG && depth < 10; depth++) {
+        target = object.header("object");
+        object = readObject(target);
+      }
+      if (object.type == OBJ_COMMIT) {
+        (annotated ? annotatedTags : lightweightTags)
+            .computeIfAbsent(target, commit -> new ArrayList<>())
+            .add(tag.getKey());
+      }
+    }
+    var headCommit = readObject(head);
+    var tagInfo = new TagInfo();
+    tagInfo.setCurrentCommitDigest(head);
+    tagInfo.setCommitTimestamp(headCommit.committerTimestamp());
+
+    var annotated = findNearestTag(head, annotatedTags, annotatedTags.keySet());
+    var nearest = annotated;
+    if (annotated == null && !lightweightTags.isEmpty()) {
+      Map<String, List<String>> allTags = new HashMap<>(lightweightTags);
+      annotatedTags.forEach(
+          (commit, names) ->
+              allTags.merge(
+                  commit,
+                  names,
+                  (first, second) ->
+                      Stream.concat(first.stream(), second.stream()).collect(Collectors.toList())));
+      nearest = findNearestTag(head, allTags, annotatedTags.keySet());
+    }
+    if (nearest == null) {
+      tagInfo.setTagName("");
+      tagInfo.setCurrentCommitPointedByTag(false);
+    } else {
+      tagInfo.setTagName(nearest[1]);
+      tagInfo.setCurrentCommitPointedByTag(nearest[0].equals(head));
+    }
+    return tagInfo;
+  }
+
+  /**
+   * Walk the history of a commit, most recent commits first, for the nearest tagged commit as git
+   * describe does: the first {@link #MAX_DESCRIBE_CANDIDATES} tagged commits found are the
+   * candidates, and the one with the fewest commits reachable from HEAD but not from it wins, the
+   * first one found on ties.
+   *
+   * @param annotatedCommits the commits of annotated tags, whose candidates end the walk once all
+   *     the remaining commits are reachable from the best of them
+   * @return the tagged commit and its tag name, or null if no commit of the history is tagged
+   */
+  private String[] findNearestTag(
+      String head, Map<String, List<String>> tagsByCommit, Set<String> annotatedCommits)
+      throws IOException {
+    if (tagsByCommit.isEmpty()) {
+      return null;
+    }
+    // the candidates each commit is reachable from, a bit per candidate
+    Map<String, Integer> reachableFrom = new HashMap<>();
+    List<String> candidates = new ArrayList<>();
+    List<Integer> depths = new ArrayList<>();
+    int annotatedCandidates = 0;
+    PriorityQueue<QueuedCommit> queue = new PriorityQueue<>();
+    int queued = 0;
+    reachableFrom.put(head, 0);
+    queue.add(new QueuedCommit(head, readObject(head).committerTime(), queued++));
+    int seen = 0;
+    while (!queue.isEmpty()) {
+      var commit = queue.poll().name;
+      seen++;
+      if (seen > MAX_DESCRIBE_WALK) {
+        throw new IOException("No tag found within " + MAX_DESCRIBE_WALK + " commits");
+      }
+      var names = tagsByCommit.get(commit);
+      if (names != null) {
+        if (names.size() > 1) {
+          throw new IOException("Ambiguous tags of commit " + commit + ": " + names);
+        }
+        if (candidates.size() == MAX_DESCRIBE_CANDIDATES) {
+          break;
+        }
+        candidates.add(commit);
+        depths.add(seen - 1);
+        reachableFrom.merge(
+            commit, 1 << (candidates.size() - 1), (first, second) -> first | second);
+        if (annotatedCommits.contains(commit)) {
+          annotatedCandidates++;
+        }
+      }
+      int flags = reachableFrom.get(commit);
+      for (int i = 0; i < candidates.size(); i++) {
+        if ((flags & (1 << i)) == 0) {
+          depths.set(i, depths.get(i) + 1);
+        }
+      }
+      // stop once the last remaining path is reachable from the best candidates
+      if (annotatedCandidates > 0 && queue.isEmpty()) {
+        int bestDepth = Integer.MAX_VALUE;
+        int bestFlags = 0;
+        for (int i = 0; i < candidates.size(); i++) {
+          if (depths.get(i) < bestDepth) {
+            bestDepth = depths.get(i);
+            bestFlags = 1 << i;
+          } else if (depths.get(i) == bestDepth) {
+            bestFlags |= 1 << i;
+          }
+        }
+        if ((flags & bestFlags) == bestFlags) {
+          break;
+        }
+      }
+      if (getShallowCommits().contains(commit)) {
+        continue;
+      }
+      for (String parent : readObject(commit).headers("parent")) {
+        var parentFlags = reachableFrom.get(parent);
+        if (parentFlags == null) {
+          reachableFrom.put(parent, flags);
+          queue.add(new QueuedCommit(parent, readObject(parent).committerTime(), queued++));
+        } else {
+          reachableFrom.put(parent, parentFlags | flags);
+        }
+      }
+    }
+    if (candidates.isEmpty()) {
+      return null;
+    }
+    int best = 0;
+    for (int i = 1; i < candidates.size(); i++) {
+      if (depths.get(i) < depths.get(best)) {
+        best = i;
+      }
+    }
+    var commit = candidates.get(best);
+    return new String[] {commit, tagsByCommit.get(commit).get(0)};
+  }
+
+  private static TagInfo copyOf(TagInfo tagInfo) {
+    var copy = new TagInfo();
+    copy.setTagName(tagInfo.getTagName());
+    copy.setCurrentCommitPointedByTag(tagInfo.isCurrentCommitPointedByTag());
+    copy.setCurrentCommitDigest(tagInfo.getCurrentCommitDigest());
+    copy.setCommitTimestamp(tagInfo.getCommitTimestamp());
+    return copy;
+  }
+
+  /**
+   * @return the commit of HEAD, or null if its branch has no commits yet
+   */
+  String resolveHead() throws IOException {
+    var target = Files.readString(gitDir.resolve("HEAD")).trim();
+    for (int depth = 0; target.startsWith("ref:") && depth < 5; depth++) {
+      target = readRef(target.substring("ref:".length()).trim());
+      if (target == null) {
+        return null;
+      }
+    }
+    if (!isObjectName(target)) {
+      throw new IOException("Unsupported HEAD: " + target);
+    }
+    return target;
+  }
+
+  /**
+   * @return the content of a loose or packed ref, or null if it does not exist
+   */
+  private String readRef(String ref) throws IOException {
+    // HEAD and the worktree refs are kept in the git directory, the others in the common one
+    for (Path dir : List.of(gitDir, commonDir)) {
+      var refFile = dir.resolve(ref);
+      if (Files.isRegularFile(refFile)) {
+        return Files.readString(refFile).trim();
+      }
+    }
+    return readPackedRefs().get(ref);
+  }
+
+  /**
+   * @return the objects referenced by the tags, by their names
+   */
+  private Map<String, String> readTags() throws IOException {
+    Map<String, String> tags = new TreeMap<>();
+    readPackedRefs()
+        .forEach(
+            (ref, object) -> {
+              if (ref.startsWith("refs/tags/")) {
+                tags.put(ref.substring("refs/tags/".length()), object);
+              }
+            });
+    // loose refs take precedence over the packed ones
+    var tagsDir = commonDir.resolve("refs").resolve("tags");
+    if (Files.isDirectory(tagsDir)) {
+      try (Stream<Path> files = Files.walk(tagsDir)) {
+        for (Path file : files.filter(Files::isRegularFile).collect(Collectors.toList())) {
+          var object = Files.readString(file).trim();
+          if (isObjectName(object)) {
+            tags.put(tagsDir.relativize(file).toString().replace('\\', '/'), object);
+          }
+        }
+      }
+    }
+    return tags;
+  }
+
+  private Map<String, String> readPackedRefs() throws IOException {
+    Map<String, String> refs = new HashMap<>();
+    var packedRefs = commonDir.resolve("packed-refs");
+    if (Files.isRegularFile(packedRefs)) {
+      for (String line : Files.readAllLines(packedRefs)) {
+        // skip the header and the peeled objects of annotated tags
+        if (line.startsWith("#") || line.startsWith("^") || line.length() < 42) {
+          continue;
+        }
+        refs.put(line.substring(41).trim(), line.substring(0, 40));
+      }
+    }
+    return refs;
+  }
+
+  private Set<String> getShallowCommits() throws IOException {
+    if (shallowCommits == null) {
+      var shallow = commonDir.resolve("shallow");
+      shallowCommits =
+          Files.isRegularFile(shallow) ? new HashSet<>(Files.readAllLines(shallow)) : Set.of();
+    }
+    return shallowCommits;
+  }
+
+  private static boolean isObjectName(String value) {
+    return value.matches("[0-9a-f]{40}");
+  }
+
+  /**
+   * Read a loose or packed object.
+   *
+   * @param name the object name, a hex SHA-1
+   * @throws IOException when the object is not found or failed to read it
+   */
+  GitObject readObject(String name) throws IOException {
+    var object = objects.get(name);
+    if (object == null) {
+      object = readUncachedObject(name);
+      objects.put(name, object);
+    }
+    return object;
+  }
+
+  private GitObject readUncachedObject(String name) throws IOException {
+    var looseObject =
+        commonDir.resolve("objects").resolve(name.substring(0, 2)).resolve(name.substring(2));
+    if (Files.isRegularFile(looseObject)) {
+      try (InputStream in = new InflaterInputStream(Files.newInputStream(looseObject))) {
+        var content = in.readAllBytes();
+        int headerEnd = indexOf(content, (byte) 0, 0);
+        var header = new String(content, 0, headerEnd, StandardCharsets.US_ASCII);
+        var typeName = header.substring(0, header.indexOf(' '));
+        int type = Arrays.asList(TYPE_NAMES).indexOf(typeName);
+        return new GitObject(type, Arrays.copyOfRange(content, headerEnd + 1, content.length));
+      }
+    }
+    var objectId = toBytes(name);
+    for (PackIndex packIndex : getPackIndexes()) {
+      long offset = packIndex.find(objectId);
+      if (offset >= 0) {
+        return readPackedObject(packIndex, offset, 0);
+      }
+    }
+    throw new IOException("Object not found: " + name);
+  }
+
+  private List<PackIndex> getPackIndexes() throws IOException {
+    if (packIndexes == null) {
+      packIndexes = new ArrayList<>();
+      var packDir = commonDir.resolve("objects").resolve("pack");
+      if (Files.isDirectory(packDir)) {
+        try (Stream<Path> files = Files.list(packDir)) {
+          for (Path index :
+              files
+                  .filter(file -> file.getFileName().toString().endsWith(".idx"))
+                  .collect(Collectors.toList())) {
+            var fileName = index.getFileName().toString();
+            var pack = index.resolveSibling(fileName.substring(0, fileName.length() - 4) + ".pack");
+            if (Files.isRegularFile(pack)) {
+              packIndexes.add(new PackIndex(index, pack));
+            }
+          }
+        }
+      }
+    }
+    return packIndexes;
+  }
+
+  private GitObject readPackedObject(PackIndex pack, long offset, int depth) throws IOException {
+    var object = pack.objects.get(offset);
+    if (object == null) {
+      object = readUncachedPackedObject(pack, offset, depth);
+      pack.objects.put(offset, object);
+    }
+    return object;
+  }
+
+  private GitObject readUncachedPackedObject(PackIndex pack, long offset, int depth)
+      throws IOException {
+    if (depth > 50) {
+      throw new IOException("Delta chain too long in " + pack.pack);
+    }
+    var file = pack.getFile();
+    file.seek(offset);
+    int c = file.read();
+    int type = (c >> 4) & 7;
+    long size = c & 15;
+    for (int shift = 4; (c & 0x80) != 0; shift += 7) {
+      c = file.read();
+      size |= (long) (c & 0x7f) << shift;
+    }
+    if (type == OBJ_OFS_DELTA) {
+      c = file.read();
+      long baseOffset = c & 0x7f;
+      while ((c & 0x80) != 0) {
+        c = file.read();
+        baseOffset = ((baseOffset + 1) << 7) | (c & 0x7f);
+      }
+      // the data follows the header, read it before the base object moves the file pointer
+      var data = inflate(file, size);
+      var base = readPackedObject(pack, offset - baseOffset, depth + 1);
+      return new GitObject(base.type, applyDelta(base.content, data));
+    }
+    if (type == OBJ_REF_DELTA) {
+      var baseName = new byte[20];
+      file.readFully(baseName);
+      var data = inflate(file, size);
+      var base = readObject(toHex(baseName));
+      return new GitObject(base.type, applyDelta(base.content, data));
+    }
+    if (type < 1 || type > 4) {
+      throw new IOException("Unsupported object type " + type + " in " + pack.pack);
+    }
+    return new GitObject(type, inflate(file, size));
+  }
+
+  /** Inflate the compressed data at the file pointer, releasing the native zlib memory. */
+  private static byte[] inflate(RandomAccessFile file, long size) throws IOException {
+    var inflater = new Inflater();
+    try {
+      // the stream is not closed, as it would close the pack file
+      return new InflaterInputStream(Channels.newInputStream(file.getChannel()), inflater)
+          .readNBytes((int) size);
+    } finally {
+      inflater.end();
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (packIndexes != null) {
+      for (PackIndex packIndex : packIndexes) {
+        packIndex.close();
+      }
+    }
+    objects.clear();
+  }
+
+  private static byte[] applyDelta(byte[] base, byte[] delta) throws IOException {
+    int[] position = {0};
+    readDeltaSize(delta, position);
+    var result = new ByteArrayOutputStream((int) readDeltaSize(delta, position));
+    while (position[0] < delta.length) {
+      int instruction = delta[position[0]++] & 0xff;
+      if ((instruction & 0x80) != 0) {
+        // copy a range of the base object
+        long copyOffset = 0;
+        for (int i = 0; i < 4; i++) {
+          if ((instruction & (1 << i)) != 0) {
+            copyOffset |= (long) (delta[position[0]++] & 0xff) << (8 * i);
+          }
+        }
+        int copySize = 0;
+        for (int i = 0; i < 3; i++) {
+          if ((instruction & (0x10 << i)) != 0) {
+            copySize |= (delta[position[0]++] & 0xff) << (8 * i);
+          }
+        }
+        result.write(base, (int) copyOffset, copySize == 0 ? 0x10000 : copySize);
+      } else if (instruction != 0) {
+        // insert the following bytes
+        result.write(delta, position[0], instruction);
+        position[0] += instruction;
+      } else {
+        throw new IOException("Invalid delta instruction");
+      }
+    }
+    return result.toByteArray();
+  }
+
+  private static long readDeltaSize(byte[] delta, int[] position) {
+    long size = 0;
+    int shift = 0;
+    int c;
+    do {
+      c = delta[position[0]++] & 0xff;
+      size |= (long) (c & 0x7f) << shift;
+      shift += 7;
+    } while ((c & 0x80) != 0);
+    return size;
+  }
+
+  private static int indexOf(byte[] content, byte value, int from) {
+    for (int i = from; i < content.length; i++) {
+      if (content[i] == value) {
+        return i;
+      }
+    }
+    return content.length;
+  }
+
+  private static byte[] toBytes(String hex) {
+    var bytes = new byte[hex.length() / 2];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = (byte) Integer.parseInt(hex.substring(2 * i, 2 * i + 2), 16);
+    }
+    return bytes;
+  }
+
+  private static String toHex(byte[] bytes) {
+    var hex = new StringBuilder(bytes.length * 2);
+    for (byte b : bytes) {
+      hex.append(String.format("%02x", b));
+    }
+    return hex.toString();
+  }
+
+  /**
+   * A pack index (version 2), mapping the names of the objects to their offsets in the pack. The
+   * pack is kept open, and its objects read, until the index is closed.
+   */
+  private static final class PackIndex {
+
+    private final Path pack;
+    private final MappedByteBuffer index;
+    private final int count;
+    // the objects read from the pack, by offset, i.e. the bases of the deltas
+    private final Map<Long, GitObject> objects = new HashMap<>();
+    private RandomAccessFile file;
+
+    private PackIndex(Path indexFile, Path pack) throws IOException {
+      this.pack = pack;
+      try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+        this.index = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      }
+      if (index.getInt(0) != 0xff744f63 || index.getInt(4) != 2) {
+        throw new IOException("Unsupported pack index version: " + indexFile);
+      }
+      this.count = index.getInt(8 + 255 * 4);
+    }
+
+    private RandomAccessFile getFile() throws IOException {
+      if (file == null) {
+        file = new RandomAccessFile(pack.toFile(), "r");
+      }
+      return file;
+    }
+
+    private void close() throws IOException {
+      objects.clear();
+      if (file != null) {
+        file.close();
+        file = null;
+      }
+    }
+
+    /**
+     * @return the offset of the object in the pack, or -1 if not found
+     */
+    private long find(byte[] objectId) {
+      int first = objectId[0] & 0xff;
+      // the fanout table counts the objects whose first byte is lower or equal
+      int low = first == 0 ? 0 : index.getInt(8 + (first - 1) * 4);
+      int high = index.getInt(8 + first * 4) - 1;
+      int namesStart = 8 + 256 * 4;
+      while (low <= high) {
+        int middle = (low + high) >>> 1;
+        int comparison = compare(namesStart + middle * 20, objectId);
+        if (comparison < 0) {
+          low = middle + 1;
+        } else if (comparison > 0) {
+          high = middle - 1;
+        } else {
+          int offsetsStart = namesStart + count * 20 + count * 4;
+          int offset = index.getInt(offsetsStart + middle * 4);
+          if ((offset & 0x80000000) == 0) {
+            return offset;
+          }
+          // offsets over 2GB are stored in the large offsets table
+          int largeOffsetsStart = offsetsStart + count * 4;
+          return index.getLong(largeOffsetsStart + (offset & 0x7fffffff) * 8);
+        }
+      }
+      return -1;
+    }
+
+    private int compare(int position, byte[] objectId) {
+      for (int i = 0; i < 20; i++) {
+        int result = Integer.compare(index.get(position + i) & 0xff, objectId[i] & 0xff);
+        if (result != 0) {
+          return result;
+        }
+      }
+      return 0;
+    }
+  }
+
+  /**
+   * A commit queued by the history walk, ordered by committer date, most recent first, then by
+   * queuing order as git orders its commit lists.
+   */
+  private static final class QueuedCommit implements Comparable<QueuedCommit> {
+
+    private final String name;
+    private final long time;
+    private final int order;
+
+    private QueuedCommit(String name, long time, int order) {
+      this.name = name;
+      this.time = time;
+      this.order = order;
+    }
+
+    @Override
+    public int compareTo(QueuedCommit other) {
+      int comparison = Long.compare(other.time, time);
+      return comparison != 0 ? comparison : Integer.compare(order, other.order);
+    }
+  }
+
+  /** An inflated git object, its type and content without the header. */
+  static final class GitObject {
+
+    private final int type;
+    private final byte[] content;
+
+    private GitObject(int type, byte[] content) {
+      this.type = type;
+      this.content = content;
+    }
+
+    /**
+     * @return the values of a header of a commit or tag object, in their order
+     */
+    List<String> headers(String name) {
+      List<String> values = new ArrayList<>();
+      int start = 0;
+      while (start < content.length && content[start] != '\n') {
+        int end = indexOf(content, (byte) '\n', start);
+        var line = new String(content, start, end - start, StandardCharsets.UTF_8);
+        if (line.startsWith(name + " ")) {
+          values.add(line.substring(name.length() + 1));
+        }
+        start = end + 1;
+      }
+      return values;
+    }
+
+    String header(String name) throws IOException {
+      var values = headers(name);
+      if (values.isEmpty()) {
+        throw new IOException("Missing " + name + " header");
+      }
+      return values.get(0);
+    }
+
+    /**
+     * @return the committer date of a commit, in seconds since the epoch
+     */
+    long committerTime() throws IOException {
+      var committer = committer();
+      return Long.parseLong(committer[committer.length - 2]);
+    }
+
+    /**
+     * @return the committer date of a commit, in the committer time zone, as git show --format=%cI
+     */
+    LocalDateTime committerTimestamp() throws IOException {
+      var committer = committer();
+      long seconds = Long.parseLong(committer[committer.length - 2]);
+      var timeZone = committer[committer.length - 1];
+      var offset =
+          ZoneOffset.ofHoursMinutes(
+              Integer.parseInt(timeZone.substring(0, 3)),
+              Integer.parseInt(timeZone.charAt(0) + timeZone.substring(3, 5)));
+      return LocalDateTime.ofEpochSecond(seconds, 0, offset);
+    }
+
+    private String[] committer() throws IOException {
+      if (type != OBJ_COMMIT) {
+        throw new IOException("Not a commit object");
+      }
+      // Name <email> seconds +hhmm
+      return header("committer").split(" ");
+    }
+  }
+}
@@ -15,15 +15,23 @@
  */
 package com.redhat.exhort.vcs;
 
+import static com.redhat.exhort.impl.ExhortApi.debugLoggingIsNeeded;
+
+import com.redhat.exhort.logging.LoggersFactory;
 import com.redhat.exhort.tools.Operations;
+import java.io.IOException;
 import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.Arrays;
+import java.util.logging.Logger;
 import java.util.regex.Pattern;
 
 public class GitVersionControlSystemImpl implements VersionControlSystem {
 
+  private static final Logger log =
+      LoggersFactory.getLogger(GitVersionControlSystemImpl.class.getName());
+
   private String gitBinary;
 
   public GitVersionControlSystemImpl() {
@@ -32,6 +40,26 @@ public GitVersionControlSystemImpl() {
 
   @Override
   public TagInfo getLatestTag(Path repoLocation) {
+    if (!isGitEnvironmentOverridden()) {
+      try {
+        // read the repository in-process, without forking git
+        try (var repository = GitRepository.open(repoLocation)) {
+          return repository.describeHead();
+        }
+      } catch (IOException e) {
+        // an unsupported repository layout, or an ambiguous or distant tag
+        if (debugLoggingIsNeeded()) {
+          log.info(
+              String.format(
+                  "Falling back to the git command line for describing %s: %s",
+                  repoLocation, e.getMessage()));
+        }
+      }
+    }
+    return getLatestTagFromCli(repoLocation);
+  }
+
+  TagInfo getLatestTagFromCli(Path repoLocation) {
     TagInfo tagInfo = new TagInfo();
 
     // get current commit hash digest
@@ -91,13 +119,27 @@ public TagInfo getLatestTag(Path repoLocation) {
 
   @Override
   public boolean isDirectoryRepo(Path repoLocation) {
-
+    if (!isGitEnvironmentOverridden()) {
+      try {
+        return GitRepository.findGitDir(repoLocation) != null;
+      } catch (IOException e) {
+        // fall back to git
+      }
+    }
     String resultFromInvocation =
         Operations.runProcessGetOutput(
             repoLocation, gitBinary, "rev-parse", "--is-inside-work-tree");
     return resultFromInvocation.trim().equals("true");
   }
 
+  /**
+   * @return true if the git directory or work tree are set by the environment, in which case the
+   *     repository is only read by git itself
+   */
+  private static boolean isGitEnvironmentOverridden() {
+    return System.getenv("GIT_DIR") != null || System.getenv("GIT_WORK_TREE") != null;
+  }
+
   @Override
   public String getNextTagVersion(TagInfo tagInfo) {
     String result = "";
@@ -138,7 +180,7 @@ private static void fetchLatestTag(TagInfo tagInfo, String resultFromInvocation)
 
   private static void analyzeGitDescribeResult(TagInfo tagInfo, String[] parts) {
     if (Pattern.matches("g[0-9a-f]{12}", parts[parts.length - 1])
-        && Pattern.matches("[1-9]*", parts[parts.length - 2])) {
+        && Pattern.matches("[0-9]+", parts[parts.length - 2])) {
       String[] tagNameParts = Arrays.copyOfRange(parts, 0, parts.length - 2);
       tagInfo.setTagName(String.join("-", tagNameParts));
       tagInfo.setCurrentCommitDigest(parts[parts.length - 1].replace("g", ""));
@@ -15,10 +15,16 @@
  */
 package com.redhat.exhort;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Objects;
 
 public class ExhortTest {
@@ -81,4 +87,31 @@ protected String getFileFromString(String fileName, String content) {
     }
     return tmpFile.toString();
   }
+
+  /** The SBOM content regardless of the order of its components and dependencies. */
+  protected static JsonNode normalized(byte[] sbom) throws IOException {
+    var root = (ObjectNode) new ObjectMapper().readTree(sbom);
+    ((ObjectNode) root.get("metadata")).remove("timestamp");
+    sortArray(root, "components", "bom-ref");
+    sortArray(root, "dependencies", "ref");
+    for (JsonNode dependency : root.get("dependencies")) {
+      var dependsOn = new ArrayList<String>();
+      dependency.get("dependsOn").forEach(ref -> dependsOn.add(ref.asText()));
+      Collections.sort(dependsOn);
+      var sorted = ((ObjectNode) dependency).putArray("dependsOn");
+      dependsOn.forEach(sorted::add);
+    }
+    return root;
+  }
+
+  protected static JsonNode normalized(String sbom) throws IOException {
+    return normalized(sbom.getBytes());
+  }
+
+  private static void sortArray(ObjectNode parent, String field, String key) {
+    var elements = new ArrayList<JsonNode>();
+    parent.get(field).forEach(elements::add);
+    elements.sort(Comparator.comparing(element -> element.get(key).asText()));
+    parent.putArray(field).addAll(elements);
+  }
 }
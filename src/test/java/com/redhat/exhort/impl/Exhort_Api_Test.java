@@ -54,6 +54,7 @@
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
@@ -862,6 +863,61 @@ void test_get_batch_image_analysis_reports() throws IOException, MalformedPackag
     }
   }
 
+  @Test
+  void stackAnalysisBatch_with_reactor_pom_xml_should_return_json_objects_per_module()
+      throws IOException, ExecutionException, InterruptedException {
+    var tmpFile = Files.createTempFile("exhort_test_pom_", ".xml");
+    try (var is =
+        getResourceAsStreamDecision(
+            this.getClass(), new String[] {"tst_manifests", "maven", "reactor", "pom.xml"})) {
+      Files.write(tmpFile, is.readAllBytes());
+    }
+    var moduleA = "pkg:maven/org.acme/a@1.0";
+    var moduleB = "pkg:maven/org.acme/b@1.0";
+
+    // stub the mocked provider with a batch of fake sboms
+    given(mockProvider.provideBatchStack(tmpFile))
+        .willReturn(
+            new Provider.Content(
+                String.format("{\"%s\":{},\"%s\":{}}", moduleA, moduleB).getBytes(),
+                Api.CYCLONEDX_MEDIA_TYPE));
+
+    ArgumentMatcher<HttpRequest> matchesRequest =
+        r ->
+            r.uri().getPath().equals("/api/v4/batch-analysis")
+                && r.headers().firstValue("Accept").get().equals("application/json")
+                && r.headers().firstValue("rhda-operation-type").get().equals("Stack Analysis")
+                && r.method().equals("POST");
+
+    var mapper = new ObjectMapper().disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    AnalysisReport expectedAnalysis;
+    try (var is =
+        getResourceAsStreamDecision(
+            this.getClass(), new String[] {"dummy_responses", "maven", "analysis-report.json"})) {
+      expectedAnalysis = mapper.readValue(is, AnalysisReport.class);
+    }
+
+    var mockHttpResponse = mock(HttpResponse.class);
+    given(mockHttpResponse.body())
+        .willReturn(
+            mapper.writeValueAsString(
+                Map.of(moduleA, expectedAnalysis, moduleB, expectedAnalysis)));
+    given(mockHttpResponse.statusCode()).willReturn(200);
+
+    try (var ecosystemTool = mockStatic(Ecosystem.class)) {
+      ecosystemTool.when(() -> Ecosystem.getProvider(tmpFile)).thenReturn(mockProvider);
+      given(mockHttpClient.sendAsync(argThat(matchesRequest), any()))
+          .willReturn(CompletableFuture.completedFuture(mockHttpResponse));
+
+      var responseAnalysis = exhortApiSut.stackAnalysisBatch(tmpFile.toString()).get();
+
+      then(responseAnalysis).containsOnlyKeys(moduleA, moduleB);
+      then(responseAnalysis.get(moduleA)).isEqualTo(expectedAnalysis);
+    } finally {
+      Files.deleteIfExists(tmpFile);
+    }
+  }
+
   @Test
   void test_get_batch_image_analysis_reports_error_response() {
     var httpResponse = mock(HttpResponse.class);
@@ -0,0 +1,72 @@
+/*
+ * Copyright © 2023 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.exhort.providers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Measures the grouping of a synthetic go mod graph output of 50k edges by module. Does not require
+ * go, the latencies are printed and not asserted.
+ */
+@Tag("IntegrationTest")
+class GoModulesProviderBenchmarkIT {
+
+  private static final int MODULES = 5_000;
+  private static final int DEPENDENCIES_PER_MODULE = 10;
+  private static final int RUNS = 5;
+
+  @Test
+  void benchmark_go_mod_graph_grouping() {
+    var graph = syntheticGraph();
+
+    List<Long> millis = new ArrayList<>();
+    for (int i = 0; i < RUNS; i++) {
+      var start = System.nanoTime();
+      var edges = GoModulesProvider.getModulesDirectDependencies(graph);
+      millis.add((System.nanoTime() - start) / 1_000_000);
+
+      assertThat(edges).hasSize(MODULES);
+      assertThat(edges.values().stream().mapToInt(List::size).sum())
+          .isEqualTo(MODULES * DEPENDENCIES_PER_MODULE);
+    }
+    System.out.printf(
+        "go mod graph grouping of %d edges: %s ms%n", MODULES * DEPENDENCIES_PER_MODULE, millis);
+  }
+
+  /** Each module depends on the next modules, wrapping around, as go mod graph lists them. */
+  private static String syntheticGraph() {
+    var graph = new StringBuilder();
+    for (int module = 0; module < MODULES; module++) {
+      var parent = module == 0 ? "example.com/root" : "example.com/mod" + module + "@v1.0.0";
+      for (int dep = 1; dep <= DEPENDENCIES_PER_MODULE; dep++) {
+        int child = (module + dep) % MODULES;
+        graph
+            .append(parent)
+            .append(' ')
+            .append("example.com/mod")
+            .append(child == 0 ? MODULES : child)
+            .append("@v1.0.0")
+            .append(System.lineSeparator());
+      }
+    }
+    return graph.toString();
+  }
+}
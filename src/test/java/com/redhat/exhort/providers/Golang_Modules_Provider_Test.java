@@ -17,16 +17,26 @@
 
 import static org.assertj.core.api.Assertions.*;
 import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.redhat.exhort.Api;
 import com.redhat.exhort.ExhortTest;
+import com.redhat.exhort.tools.Ecosystem;
+import com.redhat.exhort.tools.Operations;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import org.apache.commons.io.FileUtils;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledOnOs;
+import org.junit.jupiter.api.condition.OS;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.MethodSource;
@@ -105,6 +115,204 @@ void test_the_provideComponent(String testFolder) throws IOException, Interrupte
     assertThat(dropIgnored(new String(content.buffer))).isEqualTo(dropIgnored(expectedSbom));
   }
 
+  @Test
+  void test_the_go_mod_graph_edges_are_grouped_by_module() {
+    var graph =
+        String.join(
+            "\n",
+            "github.com/acme/app github.com/acme/lib@v1.0.0",
+            "github.com/acme/app golang.org/x/text@v0.3.0",
+            "github.com/acme/lib@v1.0.0 golang.org/x/text@v0.3.0",
+            "",
+            "golang.org/x/text@v0.3.0 golang.org/x/tools@v0.1.0");
+
+    assertThat(GoModulesProvider.getModulesDirectDependencies(graph))
+        .containsExactlyInAnyOrderEntriesOf(
+            Map.of(
+                "github.com/acme/app",
+                List.of("github.com/acme/lib@v1.0.0", "golang.org/x/text@v0.3.0"),
+                "github.com/acme/lib@v1.0.0",
+                List.of("golang.org/x/text@v0.3.0"),
+                // the last edge of the graph is kept as well
+                "golang.org/x/text@v0.3.0",
+                List.of("golang.org/x/tools@v0.1.0")));
+  }
+
+  @Test
+  void test_the_minimal_version_selection_picks_the_highest_required_versions() {
+    var edges =
+        GoModulesProvider.getModulesDirectDependencies(
+            String.join(
+                "\n",
+                "example.com/app go@1.21",
+                "example.com/app example.com/a@v1.2.0",
+                "example.com/app example.com/b@v1.0.0",
+                "example.com/a@v1.2.0 example.com/c@v1.1.0",
+                "example.com/a@v1.2.0 example.com/d@v0.0.0-20230101000000-abcdefabcdef",
+                "example.com/b@v1.0.0 example.com/c@v1.10.0-rc.1",
+                "example.com/b@v1.0.0 example.com/d@v0.1.0",
+                "example.com/b@v1.0.0 example.com/e@v2.0.0+incompatible",
+                "example.com/c@v1.10.0-rc.1 example.com/e@v2.1.0+incompatible",
+                // not reachable from the main module
+                "example.com/z@v1.0.0 example.com/c@v9.0.0"));
+
+    assertThat(GoMinimalVersionSelection.selectVersions("example.com/app", edges))
+        .containsExactlyInAnyOrderEntriesOf(
+            Map.of(
+                "example.com/a", "v1.2.0",
+                "example.com/b", "v1.0.0",
+                "example.com/c", "v1.10.0-rc.1",
+                "example.com/d", "v0.1.0",
+                "example.com/e", "v2.1.0+incompatible"));
+  }
+
+  @Test
+  void test_the_minimal_version_selection_matches_go_list() throws IOException {
+    assumeTrue(Operations.isExecutableOnPath("go"), "go is not installed");
+    var goModPath = Path.of(getFileFromResource("go.mod", "msc", "golang", "mvs_logic", "go.mod"));
+    var graph = Operations.runProcessGetOutput(goModPath.getParent(), "go", "mod", "graph");
+    var goList = Operations.runProcessGetOutput(goModPath.getParent(), "go", "list", "-m", "all");
+    // the main module is listed first and without a version
+    Map<String, String> expected =
+        goList
+            .lines()
+            .skip(1)
+            .map(line -> line.trim().split(" "))
+            .collect(Collectors.toMap(parts -> parts[0], parts -> parts[1]));
+    var mainModule = goList.lines().findFirst().orElseThrow().trim();
+
+    assertThat(
+            GoMinimalVersionSelection.selectVersions(
+                mainModule, GoModulesProvider.getModulesDirectDependencies(graph)))
+        .containsExactlyInAnyOrderEntriesOf(expected);
+  }
+
+  @Test
+  @DisabledOnOs(OS.WINDOWS)
+  void test_the_provideBatchStack_with_go_workspace() throws IOException {
+    var tmpFolder = Files.createTempDirectory("exhort_test_");
+    try {
+      Files.writeString(
+          tmpFolder.resolve("go.work"),
+          String.join(
+              "\n",
+              "go 1.21",
+              "",
+              "use ./cmd // the command line",
+              "use (",
+              "\t./lib",
+              "\t\"./tools\" // quoted",
+              ")",
+              ""));
+      writeModule(
+          tmpFolder.resolve("cmd"),
+          "example.com/cmd example.com/lib@v1.0.0",
+          "example.com/lib@v1.0.0 golang.org/x/text@v0.3.0");
+      writeModule(tmpFolder.resolve("lib"), "example.com/lib golang.org/x/text@v0.3.0");
+      writeModule(tmpFolder.resolve("tools"), "example.com/tools golang.org/x/mod@v0.12.0");
+      // a fake go binary, printing the graph of the module it is invoked in
+      var go = tmpFolder.resolve("go");
+      Files.writeString(
+          go,
+          String.join(
+              "\n",
+              "#!/bin/sh",
+              "if [ \"$1\" = env ]; then",
+              "  echo 'GOHOSTARCH=\"amd64\"'",
+              "  echo 'GOHOSTOS=\"linux\"'",
+              "elif [ \"$GOWORK\" = off ]; then",
+              "  cat graph.txt",
+              "fi",
+              ""));
+      go.toFile().setExecutable(true);
+      System.setProperty("EXHORT_GO_PATH", go.toString());
+
+      var provider = Ecosystem.getProvider(tmpFolder.resolve("go.work"));
+      var sboms =
+          new ObjectMapper()
+              .readTree(provider.provideBatchStack(tmpFolder.resolve("go.work")).buffer);
+
+      var purls = new ArrayList<String>();
+      sboms.fieldNames().forEachRemaining(purls::add);
+      assertThat(purls)
+          .containsExactly(
+              "pkg:golang/example.com/cmd@v0.0.0",
+              "pkg:golang/example.com/lib@v0.0.0",
+              "pkg:golang/example.com/tools@v0.0.0");
+      var cmdSbom = sboms.get(purls.get(0));
+      assertThat(cmdSbom.at("/dependencies/0/dependsOn/0").asText())
+          .isEqualTo("pkg:golang/example.com/lib@v1.0.0");
+      assertThat(cmdSbom.at("/components").size()).isEqualTo(3);
+      assertThat(sboms.get(purls.get(2)).at("/dependencies/0/dependsOn/0").asText())
+          .isEqualTo("pkg:golang/golang.org/x/mod@v0.12.0");
+      assertThatIllegalArgumentException()
+          .isThrownBy(() -> provider.provideStack(tmpFolder.resolve("go.work")));
+
+      // modules with the same package url would replace each other's SBOMs
+      writeModule(tmpFolder.resolve("tools"), "example.com/lib golang.org/x/mod@v0.12.0");
+      assertThatIllegalStateException()
+          .isThrownBy(() -> provider.provideBatchStack(tmpFolder.resolve("go.work")))
+          .withMessageContaining("pkg:golang/example.com/lib@v0.0.0");
+    } finally {
+      System.clearProperty("EXHORT_GO_PATH");
+      FileUtils.deleteDirectory(tmpFolder.toFile());
+    }
+  }
+
+  private static void writeModule(Path moduleDir, String... graph) throws IOException {
+    Files.createDirectories(moduleDir);
+    var module = graph[0].split(" ")[0];
+    Files.writeString(moduleDir.resolve("go.mod"), "module " + module + "\n\ngo 1.21\n");
+    Files.writeString(moduleDir.resolve("graph.txt"), String.join("\n", graph) + "\n");
+  }
+
+  @Test
+  void test_the_go_mod_requirements_are_read_in_a_single_pass() throws IOException {
+    var goModManifest =
+        GoModManifest.parse(
+            List.of(
+                "module example.com/app",
+                "",
+                "go 1.21",
+                "",
+                "require example.com/single v1.0.0 //exhortignore",
+                "",
+                "require (",
+                "\texample.com/a v1.2.0",
+                "\t\"example.com/quoted\" v0.1.0 // indirect //exhortignore",
+                "\texample.com/b v0.0.0-20230101000000-abcdefabcdef // indirect",
+                ")",
+                "",
+                "replace example.com/a v1.2.0 => example.com/fork v1.2.1",
+                "",
+                "replace (",
+                "\texample.com/b => ../b",
+                ")",
+                "",
+                "exclude example.com/a v1.1.0 //exhortignore"));
+
+    assertThat(goModManifest.getRequires())
+        .containsExactly(
+            Map.entry("example.com/single", "v1.0.0"),
+            Map.entry("example.com/a", "v1.2.0"),
+            Map.entry("example.com/quoted", "v0.1.0"),
+            Map.entry("example.com/b", "v0.0.0-20230101000000-abcdefabcdef"));
+    assertThat(goModManifest.getIgnored())
+        .containsExactly("example.com/single", "example.com/quoted");
+
+    try (var is =
+        getResourceAsStreamDecision(
+            this.getClass(),
+            new String[] {"tst_manifests", "golang", "go_mod_with_ignore", "go.mod"})) {
+      var lines = new String(is.readAllBytes()).lines().collect(Collectors.toList());
+      assertThat(GoModManifest.parse(lines).getIgnored())
+          .containsExactly(
+              "github.com/jessevdk/go-flags",
+              "github.com/go-logr/logr",
+              "github.com/google/gnostic");
+    }
+  }
+
   @Test
   void Test_The_ProvideComponent_Path_Should_Throw_Exception() {
 
@@ -0,0 +1,98 @@
+/*
+ * Copyright © 2023 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.exhort.providers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.redhat.exhort.ExhortTest;
+import com.redhat.exhort.tools.Operations;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junitpioneer.jupiter.SetSystemProperty;
+
+/**
+ * Compares the stack analysis latency of a cold gradle invocation, starting a fresh daemon, to the
+ * latency of the following invocations reusing the warm daemon. Requires gradle on the system PATH
+ * and access to maven central, the latencies are printed and not asserted.
+ */
+@Tag("IntegrationTest")
+@SetSystemProperty(key = "EXHORT_GRADLE_JSON_EXPORT", value = "true")
+@SetSystemProperty(key = "EXHORT_GRADLE_DAEMON", value = "true")
+class GradleProviderBenchmarkIT extends ExhortTest {
+
+  private static final int WARM_RUNS = 3;
+
+  @ParameterizedTest
+  @CsvSource({
+    "gradle-groovy,build.gradle,settings.gradle",
+    "gradle-kotlin,build.gradle.kts,settings.gradle.kts"
+  })
+  void benchmark_cold_vs_warm_daemon_stack_analysis(
+      String providerFolder, String manifestName, String settingsName) throws IOException {
+    assumeTrue(Operations.isExecutableOnPath("gradle"), "gradle is not installed");
+    var projectDir = Files.createTempDirectory("exhort_benchmark_");
+    try {
+      for (String fileName : List.of(manifestName, settingsName)) {
+        try (InputStream is =
+            getResourceAsStreamDecision(
+                getClass(),
+                new String[] {
+                  "tst_manifests", providerFolder, "deps_with_json_export", fileName
+                })) {
+          Files.write(projectDir.resolve(fileName), is.readAllBytes());
+        }
+      }
+      var manifest = projectDir.resolve(manifestName);
+      // make sure the first run starts a fresh daemon
+      Operations.runProcessGetOutput(projectDir, "gradle", "--stop");
+
+      var start = System.nanoTime();
+      var coldSbom = analyze(manifest);
+      var coldMillis = (System.nanoTime() - start) / 1_000_000;
+
+      List<Long> warmMillis = new ArrayList<>();
+      for (int i = 0; i < WARM_RUNS; i++) {
+        start = System.nanoTime();
+        assertThat(analyze(manifest)).isEqualTo(coldSbom);
+        warmMillis.add((System.nanoTime() - start) / 1_000_000);
+      }
+      System.out.printf(
+          "%s stack analysis: cold %d ms, warm %s ms%n", providerFolder, coldMillis, warmMillis);
+    } finally {
+      FileUtils.deleteDirectory(projectDir.toFile());
+    }
+  }
+
+  private JsonNode analyze(Path manifest) throws IOException {
+    var content = new GradleProvider().provideStack(manifest);
+    var sbom = (ObjectNode) new ObjectMapper().readTree(content.buffer);
+    // the timestamp differs between the runs
+    ((ObjectNode) sbom.get("metadata")).remove("timestamp");
+    return sbom;
+  }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright © 2023 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.exhort.providers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class GradleVersionCatalogTest {
+
+  private static final String CATALOG =
+      String.join(
+          "\n",
+          "[versions]",
+          "slf4j = \"2.0.7\"",
+          "guava = { strictly = \"32.1.2-jre\" }",
+          "quarkus = \"2.13.5.Final\"",
+          "",
+          "[libraries]",
+          "slf4j-api = { module = \"org.slf4j:slf4j-api\", version.ref = \"slf4j\" }",
+          "slf4j_simple = { group = \"org.slf4j\", name = \"slf4j-simple\", version = { ref ="
+              + " \"slf4j\" } }",
+          "commons-io = { module = \"commons-io:commons-io\", version = \"2.11.0\" }",
+          "guava = { module = \"com.google.guava:guava\", version.ref = \"guava\" }",
+          "log4j = \"log4j:log4j:1.2.17\"",
+          "",
+          "[bundles]",
+          "slf4j = [\"slf4j-api\", \"slf4j-simple\"]",
+          "",
+          "[plugins]",
+          "quarkus = { id = \"io.quarkus\", version.ref = \"quarkus\" }",
+          "");
+
+  @TempDir Path projectDir;
+
+  @Test
+  void when_getting_libraries_should_resolve_their_versions() throws IOException {
+    var catalog = GradleVersionCatalog.load(writeCatalog(CATALOG));
+
+    assertThat(catalog.getDependencies("slf4j.api"))
+        .containsExactly(new String[] {"org.slf4j", "slf4j-api", "2.0.7"});
+    assertThat(catalog.getDependencies("slf4j.simple"))
+        .containsExactly(new String[] {"org.slf4j", "slf4j-simple", "2.0.7"});
+    assertThat(catalog.getDependencies("commons.io"))
+        .containsExactly(new String[] {"commons-io", "commons-io", "2.11.0"});
+    assertThat(catalog.getDependencies("guava"))
+        .containsExactly(new String[] {"com.google.guava", "guava", "32.1.2-jre"});
+    assertThat(catalog.getDependencies("log4j"))
+        .containsExactly(new String[] {"log4j", "log4j", "1.2.17"});
+    assertThat(catalog.getDependencies("not.in.catalog")).isEmpty();
+  }
+
+  @Test
+  void when_getting_bundles_and_plugins_should_resolve_their_dependencies() throws IOException {
+    var catalog = GradleVersionCatalog.load(writeCatalog(CATALOG));
+
+    assertThat(catalog.getDependencies("bundles.slf4j"))
+        .containsExactly(
+            new String[] {"org.slf4j", "slf4j-api", "2.0.7"},
+            new String[] {"org.slf4j", "slf4j-simple", "2.0.7"});
+    assertThat(catalog.getDependencies("plugins.quarkus"))
+        .containsExactly(new String[] {"io.quarkus", "io.quarkus.gradle.plugin", "2.13.5.Final"});
+  }
+
+  @Test
+  void when_loading_an_unmodified_catalog_should_return_the_cached_one() throws IOException {
+    var tomlPath = writeCatalog(CATALOG);
+    var catalog = GradleVersionCatalog.load(tomlPath);
+
+    assertThat(GradleVersionCatalog.load(tomlPath)).isSameAs(catalog);
+
+    Files.writeString(tomlPath, CATALOG.replace("2.0.7", "2.0.9"));
+    Files.setLastModifiedTime(tomlPath, FileTime.fromMillis(System.currentTimeMillis() + 1000));
+    assertThat(GradleVersionCatalog.load(tomlPath).getDependencies("slf4j.api"))
+        .containsExactly(new String[] {"org.slf4j", "slf4j-api", "2.0.9"});
+  }
+
+  private Path writeCatalog(String content) throws IOException {
+    return Files.writeString(projectDir.resolve("libs.versions.toml"), content);
+  }
+}
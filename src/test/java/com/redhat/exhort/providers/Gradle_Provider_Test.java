@@ -17,19 +17,33 @@
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.mockStatic;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.redhat.exhort.Api;
 import com.redhat.exhort.ExhortTest;
 import com.redhat.exhort.tools.Operations;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.stream.Stream;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.MethodSource;
+import org.junitpioneer.jupiter.SetSystemProperty;
 import org.mockito.ArgumentMatcher;
 import org.mockito.MockedStatic;
 
@@ -283,6 +297,368 @@ void test_the_provideComponent_With_Path(String testFolder)
     assertThat(dropIgnored(new String(content.buffer))).isEqualTo(dropIgnored(expectedSbom));
   }
 
+  @Test
+  @SetSystemProperty(key = "EXHORT_GRADLE_JSON_EXPORT", value = "true")
+  @SetSystemProperty(key = "EXHORT_GRADLE_CONFIGURATION_CACHE", value = "true")
+  void test_the_provideStack_and_provideComponent_with_json_export() throws IOException {
+    var testFolder = "deps_with_json_export";
+    var tmpGradleDir = Files.createTempDirectory("exhort_test_");
+    var tmpGradleFile = tmpGradleDir.resolve(getManifestName());
+    Files.write(tmpGradleFile, readResource(testFolder, getManifestName()).getBytes());
+    var dependenciesExport = readResource(testFolder, "dependencies.json");
+    var expectedStackSbom = readResource(testFolder, "expected_stack_sbom.json");
+    var expectedComponentSbom = readResource(testFolder, "expected_component_sbom.json");
+
+    List<List<String>> invokedCommands = new ArrayList<>();
+    try (MockedStatic<Operations> mockedOperations = mockStatic(Operations.class)) {
+      mockedOperations.when(() -> Operations.getCustomPathOrElse("gradle")).thenReturn("gradle");
+      mockedOperations
+          .when(() -> Operations.runProcessGetOutput(any(Path.class), any(String[].class)))
+          .thenAnswer(
+              invocationOnMock -> {
+                var command = Arrays.asList((String[]) invocationOnMock.getRawArguments()[1]);
+                invokedCommands.add(command);
+                command.stream()
+                    .filter(arg -> arg.startsWith("-Dexhort.output="))
+                    .findFirst()
+                    .ifPresent(
+                        arg ->
+                            writeExport(
+                                arg.substring("-Dexhort.output=".length()), dependenciesExport));
+                return "";
+              });
+
+      var stackContent = new GradleProvider().provideStack(tmpGradleFile);
+      var componentContent = new GradleProvider().provideComponent(tmpGradleFile);
+
+      assertThat(dropIgnored(new String(stackContent.buffer)))
+          .isEqualTo(dropIgnored(expectedStackSbom));
+      assertThat(dropIgnored(new String(componentContent.buffer)))
+          .isEqualTo(dropIgnored(expectedComponentSbom));
+    } finally {
+      Files.deleteIfExists(tmpGradleFile);
+      Files.deleteIfExists(tmpGradleDir);
+    }
+    // a single gradle invocation per analysis, exporting the dependencies with the init script
+    assertThat(invokedCommands).hasSize(2);
+    // the export task isn't compatible with the configuration cache
+    assertThat(invokedCommands.get(0))
+        .contains("--init-script", "exhortDependencies", "-Dexhort.configurations=runtimeClasspath")
+        .doesNotContain("--configuration-cache");
+    assertThat(invokedCommands.get(1))
+        .contains(
+            "-Dexhort.configurations=runtimeClasspath,api,implementation,compileOnlyApi,compileOnly,runtimeOnly");
+  }
+
+  @Test
+  @SetSystemProperty(key = "EXHORT_GRADLE_JSON_EXPORT", value = "true")
+  void test_the_provideStack_with_json_export_leaves_out_constraints(@TempDir Path tmpDir)
+      throws IOException {
+    assumeTrue(Operations.isExecutableOnPath("gradle"), "gradle is not installed");
+    // a repository of a platform aligning lib, and lib depending on other
+    var repository = Files.createDirectories(tmpDir.resolve("repository"));
+    mavenModule(
+        repository,
+        "bom",
+        "1.0",
+        "<packaging>pom</packaging><dependencyManagement><dependencies><dependency>"
+            + "<groupId>org.acme</groupId><artifactId>lib</artifactId><version>1.0</version>"
+            + "</dependency></dependencies></dependencyManagement>");
+    mavenModule(
+        repository,
+        "lib",
+        "1.0",
+        "<dependencies><dependency><groupId>org.acme</groupId><artifactId>other</artifactId>"
+            + "<version>0.9</version></dependency></dependencies>");
+    mavenModule(repository, "other", "0.9", "");
+    mavenModule(repository, "other", "1.0", "");
+    var projectDir = Files.createDirectories(tmpDir.resolve("gradle-constraints"));
+    Files.createFile(projectDir.resolve(getSettingsName()));
+    var manifest = projectDir.resolve(getManifestName());
+    Files.writeString(
+        manifest,
+        readResource("deps_with_constraints", getManifestName())
+            .replace("${repository}", repository.toUri().toString()));
+
+    var content = new GradleProvider().provideStack(manifest);
+
+    Map<String, List<String>> dependencies = new HashMap<>();
+    for (JsonNode dependency : new ObjectMapper().readTree(content.buffer).get("dependencies")) {
+      List<String> dependsOn = new ArrayList<>();
+      dependency.get("dependsOn").forEach(target -> dependsOn.add(target.asText()));
+      dependencies.put(dependency.get("ref").asText(), dependsOn);
+    }
+    // the constraints of the platform and of the constraints block are no dependencies
+    assertThat(dependencies.get("pkg:maven/org.acme/gradle-constraints@1.0.0"))
+        .containsExactlyInAnyOrder("pkg:maven/org.acme/bom@1.0", "pkg:maven/org.acme/lib@1.0");
+    assertThat(dependencies.get("pkg:maven/org.acme/bom@1.0")).isEmpty();
+    assertThat(dependencies.get("pkg:maven/org.acme/lib@1.0"))
+        .containsExactly("pkg:maven/org.acme/other@1.0");
+  }
+
+  private static void mavenModule(Path repository, String artifactId, String version, String body)
+      throws IOException {
+    var moduleDir =
+        Files.createDirectories(repository.resolve(Path.of("org", "acme", artifactId, version)));
+    Files.writeString(
+        moduleDir.resolve(artifactId + "-" + version + ".pom"),
+        String.format(
+            "<project><modelVersion>4.0.0</modelVersion><groupId>org.acme</groupId>"
+                + "<artifactId>%s</artifactId><version>%s</version>%s</project>",
+            artifactId, version, body));
+  }
+
+  @Test
+  @SetSystemProperty(key = "EXHORT_GRADLE_JSON_EXPORT", value = "true")
+  void test_the_provideStack_with_json_export_of_a_subproject() throws IOException {
+    var testFolder = "deps_with_json_export";
+    var rootDir = Files.createTempDirectory("exhort_test_");
+    Files.createFile(rootDir.resolve(getSettingsName()));
+    var subprojectDir = Files.createDirectories(rootDir.resolve("lib"));
+    var manifest = subprojectDir.resolve(getManifestName());
+    Files.write(manifest, readResource(testFolder, getManifestName()).getBytes());
+    var dependenciesExport = readResource(testFolder, "dependencies.json");
+    var expectedStackSbom = readResource(testFolder, "expected_stack_sbom.json");
+
+    List<Path> invokedDirs = new ArrayList<>();
+    List<List<String>> invokedCommands = new ArrayList<>();
+    try (MockedStatic<Operations> mockedOperations = mockStatic(Operations.class)) {
+      mockedOperations.when(() -> Operations.getCustomPathOrElse("gradle")).thenReturn("gradle");
+      mockedOperations
+          .when(() -> Operations.runProcessGetOutput(any(Path.class), any(String[].class)))
+          .thenAnswer(
+              invocationOnMock -> {
+                invokedDirs.add((Path) invocationOnMock.getRawArguments()[0]);
+                var command = Arrays.asList((String[]) invocationOnMock.getRawArguments()[1]);
+                invokedCommands.add(command);
+                command.stream()
+                    .filter(arg -> arg.startsWith("-Dexhort.output="))
+                    .findFirst()
+                    .ifPresent(
+                        arg ->
+                            writeExport(
+                                arg.substring("-Dexhort.output=".length()), dependenciesExport));
+                return "";
+              });
+
+      var stackContent = new GradleProvider().provideStack(manifest);
+
+      assertThat(dropIgnored(new String(stackContent.buffer)))
+          .isEqualTo(dropIgnored(expectedStackSbom));
+    } finally {
+      FileUtils.deleteDirectory(rootDir.toFile());
+    }
+    // the task of the subproject gradle runs in is exported, not the root project's one
+    assertThat(invokedDirs).containsExactly(subprojectDir);
+    assertThat(invokedCommands.get(0))
+        .contains("exhortDependencies")
+        .doesNotContain(":exhortDependencies");
+  }
+
+  @Test
+  @SetSystemProperty(key = "EXHORT_GRADLE_MULTI_PROJECT_ENABLED", value = "true")
+  void test_the_provideStack_and_provideBatchStack_with_multi_project() throws IOException {
+    var testFolder = "multi_project";
+    var tmpGradleDir = copyMultiProjectToTempDir();
+    var expectedStackSbom = readResource(testFolder, "expected_stack_sbom.json");
+    var expectedBatchStackSbom = readResource(testFolder, "expected_batch_stack_sbom.json");
+
+    List<List<String>> invokedCommands = new ArrayList<>();
+    try (MockedStatic<Operations> mockedOperations =
+        mockMultiProjectExport(tmpGradleDir, invokedCommands, "root", "a", "b")) {
+      var manifest = tmpGradleDir.resolve(getManifestName());
+      var stackContent = new GradleProvider().provideStack(manifest);
+      var batchStackContent = new GradleProvider().provideBatchStack(manifest);
+
+      assertThat(dropIgnored(new String(stackContent.buffer)))
+          .isEqualTo(dropIgnored(expectedStackSbom));
+      assertThat(dropIgnored(new String(batchStackContent.buffer)))
+          .isEqualTo(dropIgnored(expectedBatchStackSbom));
+    } finally {
+      FileUtils.deleteDirectory(tmpGradleDir.toFile());
+    }
+    // a single gradle invocation per analysis, running the export task of all the projects
+    assertThat(invokedCommands).hasSize(2);
+    assertThat(invokedCommands.get(0))
+        .contains("exhortDependencies")
+        .doesNotContain(":exhortDependencies");
+  }
+
+  @Test
+  @SetSystemProperty(key = "EXHORT_GRADLE_MULTI_PROJECT_ENABLED", value = "true")
+  void test_the_provideStack_with_multi_project_of_a_single_project() throws IOException {
+    var tmpGradleDir = copyMultiProjectToTempDir();
+    List<List<String>> invokedCommands = new ArrayList<>();
+    try (MockedStatic<Operations> mockedOperations =
+        mockMultiProjectExport(tmpGradleDir, invokedCommands, "b")) {
+      var content =
+          new GradleProvider().provideStack(tmpGradleDir.resolve("b").resolve(getManifestName()));
+
+      var sbom = new ObjectMapper().readTree(content.buffer);
+      assertThat(sbom.at("/metadata/component/purl").asText())
+          .isEqualTo("pkg:maven/org.acme/b@1.0.0");
+      assertThat(sbom.get("components").findValuesAsText("purl"))
+          .contains("pkg:maven/org.slf4j/slf4j-api@2.0.7");
+    } finally {
+      FileUtils.deleteDirectory(tmpGradleDir.toFile());
+    }
+    // the export of the single project is analyzed, gradle isn't run again
+    assertThat(invokedCommands).hasSize(1);
+  }
+
+  @Test
+  @SetSystemProperty(key = "EXHORT_GRADLE_MULTI_PROJECT_ENABLED", value = "true")
+  void test_the_provideStack_with_multi_project_ignores_dependencies_per_project()
+      throws IOException {
+    var tmpGradleDir = copyMultiProjectToTempDir();
+    // a ignores slf4j-api, which b depends on through slf4j-simple
+    var aBuildFile = tmpGradleDir.resolve("a").resolve(getManifestName());
+    Files.writeString(
+        aBuildFile,
+        Files.readString(aBuildFile).replaceAll("(?m)^(.*slf4j-api.*)$", "$1 // exhortignore"));
+    try (MockedStatic<Operations> mockedOperations =
+        mockMultiProjectExport(tmpGradleDir, new ArrayList<>(), "root", "a", "b")) {
+      var content = new GradleProvider().provideStack(tmpGradleDir.resolve(getManifestName()));
+
+      Map<String, List<String>> dependencies = new HashMap<>();
+      for (JsonNode dependency : new ObjectMapper().readTree(content.buffer).get("dependencies")) {
+        List<String> dependsOn = new ArrayList<>();
+        dependency.get("dependsOn").forEach(target -> dependsOn.add(target.asText()));
+        dependencies.put(dependency.get("ref").asText(), dependsOn);
+      }
+      assertThat(dependencies.get("pkg:maven/org.acme/a@1.0.0")).isEmpty();
+      assertThat(dependencies.get("pkg:maven/org.acme/b@1.0.0"))
+          .containsExactlyInAnyOrder(
+              "pkg:maven/org.slf4j/slf4j-api@2.0.7", "pkg:maven/org.slf4j/slf4j-simple@2.0.7");
+      assertThat(dependencies.get("pkg:maven/org.slf4j/slf4j-simple@2.0.7"))
+          .containsExactly("pkg:maven/org.slf4j/slf4j-api@2.0.7");
+    } finally {
+      FileUtils.deleteDirectory(tmpGradleDir.toFile());
+    }
+  }
+
+  @Test
+  void test_the_provideBatchStack_with_multi_project_of_projects_with_the_same_coordinates()
+      throws IOException {
+    var tmpGradleDir = copyMultiProjectToTempDir();
+    // b's export is written with a's coordinates
+    Files.writeString(
+        tmpGradleDir.resolve("b.json"),
+        readResource("multi_project", "b.json").replace("\"name\": \"b\"", "\"name\": \"a\""));
+    try (MockedStatic<Operations> mockedOperations =
+        mockMultiProjectExport(tmpGradleDir, new ArrayList<>(), "root", "a", "b")) {
+      var manifest = tmpGradleDir.resolve(getManifestName());
+      assertThatIllegalStateException()
+          .isThrownBy(() -> new GradleProvider().provideBatchStack(manifest))
+          .withMessageContaining(":a, :b")
+          .withMessageContaining("pkg:maven/org.acme/a@1.0.0");
+    } finally {
+      FileUtils.deleteDirectory(tmpGradleDir.toFile());
+    }
+  }
+
+  private Path copyMultiProjectToTempDir() throws IOException {
+    var testFolder = "multi_project";
+    var tmpGradleDir = Files.createTempDirectory("exhort_test_");
+    for (String buildFile : List.of(getSettingsName(), getManifestName())) {
+      Files.write(tmpGradleDir.resolve(buildFile), readResource(testFolder, buildFile).getBytes());
+    }
+    for (String subproject : List.of("a", "b")) {
+      var buildFile = Path.of(subproject, getManifestName());
+      Files.createDirectories(tmpGradleDir.resolve(subproject));
+      Files.write(
+          tmpGradleDir.resolve(buildFile),
+          readResource(testFolder, buildFile.toString()).getBytes());
+    }
+    return tmpGradleDir;
+  }
+
+  /**
+   * Mock the export of the given projects of the multi_project build, an export found in the
+   * project directory takes precedence over the test resource.
+   */
+  private MockedStatic<Operations> mockMultiProjectExport(
+      Path tmpGradleDir, List<List<String>> invokedCommands, String... projects) {
+    MockedStatic<Operations> mockedOperations = mockStatic(Operations.class);
+    mockedOperations.when(() -> Operations.getCustomPathOrElse("gradle")).thenReturn("gradle");
+    mockedOperations
+        .when(() -> Operations.runProcessGetOutput(any(Path.class), any(String[].class)))
+        .thenAnswer(
+            invocationOnMock -> {
+              var command = Arrays.asList((String[]) invocationOnMock.getRawArguments()[1]);
+              invokedCommands.add(command);
+              var exportDir =
+                  command.stream()
+                      .filter(arg -> arg.startsWith("-Dexhort.outputDir="))
+                      .map(arg -> Path.of(arg.substring("-Dexhort.outputDir=".length())))
+                      .findFirst()
+                      .orElseThrow();
+              // every project of the build writes its own export
+              for (String project : projects) {
+                var export = tmpGradleDir.resolve(project + ".json");
+                writeExport(
+                    exportDir.resolve(project + ".json").toString(),
+                    (Files.exists(export)
+                            ? Files.readString(export)
+                            : readResource("multi_project", project + ".json"))
+                        .replace("${projectDir}", tmpGradleDir.toString()));
+              }
+              return "";
+            });
+    return mockedOperations;
+  }
+
+  @Test
+  @SetSystemProperty(key = "EXHORT_GRADLE_DAEMON", value = "true")
+  @SetSystemProperty(key = "EXHORT_GRADLE_CONFIGURATION_CACHE", value = "true")
+  @SetSystemProperty(key = "EXHORT_GRADLE_OFFLINE", value = "true")
+  void test_the_gradle_command_prefers_the_project_wrapper() throws IOException {
+    var rootDir = Files.createTempDirectory("exhort_test_");
+    try (MockedStatic<Operations> mockedOperations = mockStatic(Operations.class)) {
+      mockedOperations.when(() -> Operations.getCustomPathOrElse("gradle")).thenReturn("gradle");
+      Files.createFile(rootDir.resolve(getSettingsName()));
+      var subprojectDir = Files.createDirectories(rootDir.resolve("lib"));
+      var manifest = Files.createFile(subprojectDir.resolve(getManifestName()));
+
+      // without a wrapper, gradle from the system PATH is used
+      assertThat(new GradleProvider().buildGradleCommand(manifest, "dependencies"))
+          .containsExactly(
+              "gradle", "dependencies", "--daemon", "--configuration-cache", "--offline");
+
+      // the root project's wrapper is used for its subprojects
+      var wrapper = Files.createFile(rootDir.resolve("gradlew"));
+      wrapper.toFile().setExecutable(true);
+      assertThat(new GradleProvider().buildGradleCommand(manifest, "dependencies"))
+          .startsWith(wrapper.toString(), "dependencies");
+
+      // the wrapper of another build isn't used for a single project build nested in it
+      Files.delete(rootDir.resolve(getSettingsName()));
+      Files.createFile(rootDir.resolve(getManifestName()));
+      assertThat(new GradleProvider().buildGradleCommand(manifest, "dependencies"))
+          .startsWith("gradle", "dependencies");
+    } finally {
+      FileUtils.deleteDirectory(rootDir.toFile());
+    }
+  }
+
+  private String readResource(String testFolder, String fileName) throws IOException {
+    try (var is =
+        getClass()
+            .getClassLoader()
+            .getResourceAsStream(
+                String.join("/", "tst_manifests", getProviderFolder(), testFolder, fileName))) {
+      return new String(is.readAllBytes());
+    }
+  }
+
+  private static void writeExport(String exportFile, String content) {
+    try {
+      Files.writeString(Path.of(exportFile), content);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
   private String dropIgnored(String s) {
     return s.replaceAll("\\s+", "").replaceAll("\"timestamp\":\"[a-zA-Z0-9\\-\\:]+\",", "");
   }
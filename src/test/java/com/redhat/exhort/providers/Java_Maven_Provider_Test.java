@@ -16,21 +16,31 @@
 package com.redhat.exhort.providers;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mockStatic;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.redhat.exhort.Api;
 import com.redhat.exhort.ExhortTest;
 import com.redhat.exhort.tools.Operations;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Stream;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.junitpioneer.jupiter.SetSystemProperty;
 import org.mockito.MockedStatic;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -101,6 +111,319 @@ void test_the_provideStack(String testFolder) throws IOException, InterruptedExc
     assertThat(dropIgnored(new String(content.buffer))).isEqualTo(dropIgnored(expectedSbom));
   }
 
+  @Test
+  @SetSystemProperty(key = "EXHORT_MVN_SINGLE_INVOCATION", value = "true")
+  @SetSystemProperty(key = "EXHORT_MVN_OFFLINE", value = "true")
+  void test_the_provideStack_in_single_invocation_mode() throws IOException {
+    var testFolder = "deps_with_ignore_on_artifact";
+    var tmpPomFile = Files.createTempFile("exhort_test_", ".xml");
+    try (var is =
+        getResourceAsStreamDecision(
+            getClass(), new String[] {"tst_manifests", "maven", testFolder, "pom.xml"})) {
+      Files.write(tmpPomFile, is.readAllBytes());
+    }
+    String expectedSbom;
+    try (var is =
+        getResourceAsStreamDecision(
+            getClass(),
+            new String[] {"tst_manifests", "maven", testFolder, "expected_stack_sbom.json"})) {
+      expectedSbom = new String(is.readAllBytes());
+    }
+    String depTree;
+    try (var is =
+        getResourceAsStreamDecision(
+            getClass(), new String[] {"tst_manifests", "maven", testFolder, "depTree.txt"})) {
+      depTree = new String(is.readAllBytes());
+    }
+    List<List<String>> invokedCommands = new ArrayList<>();
+    try (MockedStatic<Operations> mockedOperations = mockStatic(Operations.class)) {
+      mockedOperations.when(() -> Operations.getCustomPathOrElse("mvn")).thenReturn("mvn");
+      mockedOperations.when(() -> Operations.getCustomPathOrElse("mvnd")).thenReturn("mvnd");
+      mockedOperations.when(() -> Operations.isExecutableOnPath("mvnd")).thenReturn(true);
+      mockedOperations
+          .when(() -> Operations.runProcess(any(), any()))
+          .thenAnswer(
+              invocationOnMock -> {
+                invokedCommands.add(
+                    Arrays.asList((String[]) invocationOnMock.getRawArguments()[0]));
+                return getOutputFileAndOverwriteItWithMock(
+                    depTree, invocationOnMock, "-DoutputFile");
+              });
+
+      var content = new JavaMavenProvider().provideStack(tmpPomFile);
+
+      assertThat(dropIgnored(new String(content.buffer))).isEqualTo(dropIgnored(expectedSbom));
+    } finally {
+      Files.deleteIfExists(tmpPomFile);
+    }
+    // a single maven daemon invocation, without cleaning the project first
+    assertThat(invokedCommands).hasSize(1);
+    assertThat(invokedCommands.get(0))
+        .startsWith("mvnd")
+        .doesNotContain("clean")
+        .contains("-B", "-q", "--no-transfer-progress", "-o");
+  }
+
+  @Test
+  @SetSystemProperty(key = "EXHORT_MVN_REACTOR_ENABLED", value = "true")
+  void test_the_provideStack_of_a_reactor() throws IOException {
+    var reactorDir = copyReactorToTempDir();
+    String expectedSbom;
+    try (var is =
+        getResourceAsStreamDecision(
+            getClass(),
+            new String[] {"tst_manifests", "maven", "reactor", "expected_stack_sbom.json"})) {
+      expectedSbom = new String(is.readAllBytes());
+    }
+    List<List<String>> invokedCommands = new ArrayList<>();
+    try (MockedStatic<Operations> mockedOperations = mockReactorDependencyTree(invokedCommands)) {
+      var content = new JavaMavenProvider().provideStack(reactorDir.resolve("pom.xml"));
+
+      assertThat(content.type).isEqualTo(Api.CYCLONEDX_MEDIA_TYPE);
+      assertThat(dropIgnored(new String(content.buffer))).isEqualTo(dropIgnored(expectedSbom));
+    } finally {
+      FileUtils.deleteDirectory(reactorDir.toFile());
+    }
+    // all the modules are resolved by a single tree invocation at the aggregator
+    assertThat(invokedCommands).hasSize(2);
+    assertThat(invokedCommands.get(1)).contains("-DappendOutput=true");
+  }
+
+  @Test
+  @SetSystemProperty(key = "EXHORT_MVN_REACTOR_ENABLED", value = "true")
+  void test_the_provideStack_of_a_reactor_building_the_aggregator_last() throws IOException {
+    var reactorDir = copyReactorToTempDir();
+    // maven builds a module first, which also depends on the dependency ignored by b
+    var depTree =
+        String.join(
+            "\n",
+            "org.acme:a:jar:1.0",
+            "+- commons-io:commons-io:jar:2.11.0:compile",
+            "\\- org.slf4j:slf4j-simple:jar:2.0.7:compile",
+            "   \\- org.slf4j:slf4j-api:jar:2.0.7:compile",
+            "org.acme:b:jar:1.0",
+            "+- org.acme:a:jar:1.0:compile",
+            "\\- org.slf4j:slf4j-simple:jar:2.0.7:compile",
+            "   \\- org.slf4j:slf4j-api:jar:2.0.7:compile",
+            "org.acme:parent:pom:1.0",
+            "");
+    try (MockedStatic<Operations> mockedOperations =
+        mockReactorDependencyTree(depTree, new ArrayList<>())) {
+      var content = new JavaMavenProvider().provideStack(reactorDir.resolve("pom.xml"));
+
+      var sbom = new ObjectMapper().readTree(content.buffer);
+      assertThat(sbom.at("/metadata/component/purl").asText())
+          .isEqualTo("pkg:maven/org.acme/parent@1.0");
+      Map<String, List<String>> dependsOn = new HashMap<>();
+      sbom.get("dependencies")
+          .forEach(
+              dependency -> {
+                List<String> refs = new ArrayList<>();
+                dependency.get("dependsOn").forEach(ref -> refs.add(ref.asText()));
+                dependsOn.put(dependency.get("ref").asText(), refs);
+              });
+      assertThat(dependsOn.get("pkg:maven/org.acme/parent@1.0"))
+          .containsExactly("pkg:maven/org.acme/a@1.0", "pkg:maven/org.acme/b@1.0");
+      // b's ignored dependency is left out of b only
+      assertThat(dependsOn.get("pkg:maven/org.acme/a@1.0"))
+          .containsExactly(
+              "pkg:maven/commons-io/commons-io@2.11.0", "pkg:maven/org.slf4j/slf4j-simple@2.0.7");
+      assertThat(dependsOn.get("pkg:maven/org.acme/b@1.0"))
+          .containsExactly("pkg:maven/org.acme/a@1.0");
+      assertThat(dependsOn.get("pkg:maven/org.slf4j/slf4j-simple@2.0.7"))
+          .containsExactly("pkg:maven/org.slf4j/slf4j-api@2.0.7");
+    } finally {
+      FileUtils.deleteDirectory(reactorDir.toFile());
+    }
+  }
+
+  @Test
+  void test_the_provideBatchStack_of_a_reactor() throws IOException {
+    var reactorDir = copyReactorToTempDir();
+    String expectedSboms;
+    try (var is =
+        getResourceAsStreamDecision(
+            getClass(),
+            new String[] {"tst_manifests", "maven", "reactor", "expected_batch_stack_sbom.json"})) {
+      expectedSboms = new String(is.readAllBytes());
+    }
+    try (MockedStatic<Operations> mockedOperations = mockReactorDependencyTree(new ArrayList<>())) {
+      var content = new JavaMavenProvider().provideBatchStack(reactorDir.resolve("pom.xml"));
+
+      assertThat(content.type).isEqualTo(Api.CYCLONEDX_MEDIA_TYPE);
+      assertThat(dropIgnored(new String(content.buffer))).isEqualTo(dropIgnored(expectedSboms));
+    } finally {
+      FileUtils.deleteDirectory(reactorDir.toFile());
+    }
+  }
+
+  @Test
+  void test_the_reactor_modules_are_keyed_by_their_group_and_artifact_ids() throws IOException {
+    var reactorDir = copyReactorToTempDir();
+    try {
+      // b moves to another group under the same artifact id as a
+      var bPom = reactorDir.resolve("b").resolve("pom.xml");
+      Files.writeString(
+          bPom,
+          Files.readString(bPom)
+              .replace(
+                  "<artifactId>b</artifactId>",
+                  "<groupId>org.other</groupId><artifactId>a</artifactId>"));
+
+      assertThat(new JavaMavenProvider().getModulesPoms(reactorDir.resolve("pom.xml")))
+          .containsOnlyKeys("org.acme:parent", "org.acme:a", "org.other:a");
+
+      Files.writeString(bPom, Files.readString(bPom).replace("<groupId>org.other</groupId>", ""));
+
+      assertThatIllegalStateException()
+          .isThrownBy(() -> new JavaMavenProvider().getModulesPoms(reactorDir.resolve("pom.xml")))
+          .withMessageContaining("org.acme:a")
+          .withMessageContaining(bPom.toString());
+    } finally {
+      FileUtils.deleteDirectory(reactorDir.toFile());
+    }
+  }
+
+  @Test
+  void test_the_provideComponent_with_cached_effective_pom() throws IOException {
+    // the second analysis of the unchanged pom is served from the cache
+    assertThat(countEffectivePomInvocationsOfTwoAnalyses(null)).isEqualTo(1);
+  }
+
+  @ParameterizedTest
+  @ValueSource(
+      strings = {
+        "<parent><groupId>org.acme</groupId><artifactId>parent</artifactId>"
+            + "<version>1.0</version></parent>",
+        "<dependencyManagement><dependencies><dependency><groupId>org.acme</groupId>"
+            + "<artifactId>bom</artifactId><version>1.0</version><type>pom</type>"
+            + "<scope>import</scope></dependency></dependencies></dependencyManagement>"
+      })
+  void test_the_provideComponent_with_cached_effective_pom_of_released_parent_or_bom(String element)
+      throws IOException {
+    // released artifacts resolved from a repository are keyed by their coordinates
+    assertThat(countEffectivePomInvocationsOfTwoAnalyses(element)).isEqualTo(1);
+  }
+
+  @ParameterizedTest
+  @ValueSource(
+      strings = {
+        "<parent><groupId>org.acme</groupId><artifactId>parent</artifactId>"
+            + "<version>1.0-SNAPSHOT</version><relativePath/></parent>",
+        "<properties><bom.version>1.0-SNAPSHOT</bom.version></properties>"
+            + "<dependencyManagement><dependencies><dependency><groupId>org.acme</groupId>"
+            + "<artifactId>bom</artifactId><version>${bom.version}</version><type>pom</type>"
+            + "<scope>import</scope></dependency></dependencies></dependencyManagement>"
+      })
+  void test_the_provideComponent_does_not_cache_effective_pom_of_snapshot_parent_or_bom(
+      String element) throws IOException {
+    assertThat(countEffectivePomInvocationsOfTwoAnalyses(element)).isEqualTo(2);
+  }
+
+  /**
+   * Analyze the same pom twice with the effective pom cache.
+   *
+   * @param element an element to add to the pom, or null
+   * @return the number of effective pom invocations
+   */
+  private int countEffectivePomInvocationsOfTwoAnalyses(String element) throws IOException {
+    var testFolder = "deps_with_ignore_on_artifact";
+    var cacheDir = Files.createTempDirectory("exhort_test_cache_");
+    System.setProperty("EXHORT_MVN_EFFECTIVE_POM_CACHE", "true");
+    System.setProperty("EXHORT_CACHE_DIR", cacheDir.toString());
+    var tmpPomFile = Files.createTempFile("exhort_test_", ".xml");
+    try (var is =
+        getResourceAsStreamDecision(
+            getClass(), new String[] {"tst_manifests", "maven", testFolder, "pom.xml"})) {
+      var pom = new String(is.readAllBytes());
+      if (element != null) {
+        pom = pom.replace("</modelVersion>", "</modelVersion>" + element);
+      }
+      Files.writeString(tmpPomFile, pom);
+    }
+    String expectedSbom;
+    try (var is =
+        getResourceAsStreamDecision(
+            getClass(),
+            new String[] {"tst_manifests", "maven", testFolder, "expected_component_sbom.json"})) {
+      expectedSbom = new String(is.readAllBytes());
+    }
+    String effectivePom;
+    try (var is =
+        getResourceAsStreamDecision(
+            getClass(), new String[] {"tst_manifests", "maven", testFolder, "effectivePom.xml"})) {
+      effectivePom = new String(is.readAllBytes());
+    }
+    List<List<String>> invokedCommands = new ArrayList<>();
+    try (MockedStatic<Operations> mockedOperations = mockStatic(Operations.class)) {
+      mockedOperations.when(() -> Operations.getCustomPathOrElse("mvn")).thenReturn("mvn");
+      mockedOperations
+          .when(() -> Operations.runProcess(any(), any()))
+          .thenAnswer(
+              invocationOnMock -> {
+                invokedCommands.add(
+                    Arrays.asList((String[]) invocationOnMock.getRawArguments()[0]));
+                return getOutputFileAndOverwriteItWithMock(
+                    effectivePom, invocationOnMock, "-Doutput");
+              });
+
+      var provider = new JavaMavenProvider();
+      var first = provider.provideComponent(tmpPomFile);
+      var second = provider.provideComponent(tmpPomFile);
+
+      assertThat(dropIgnored(new String(first.buffer))).isEqualTo(dropIgnored(expectedSbom));
+      assertThat(dropIgnored(new String(second.buffer))).isEqualTo(dropIgnored(expectedSbom));
+      // the generated effective poms are deleted, the cached ones are copies
+      assertThat(invokedCommands)
+          .flatMap(command -> command)
+          .filteredOn(arg -> arg.startsWith("-Doutput="))
+          .allSatisfy(
+              arg -> assertThat(Path.of(arg.substring("-Doutput=".length()))).doesNotExist());
+    } finally {
+      System.clearProperty("EXHORT_MVN_EFFECTIVE_POM_CACHE");
+      System.clearProperty("EXHORT_CACHE_DIR");
+      Files.deleteIfExists(tmpPomFile);
+      FileUtils.deleteDirectory(cacheDir.toFile());
+    }
+    return invokedCommands.size();
+  }
+
+  private Path copyReactorToTempDir() throws IOException {
+    var reactorDir = Files.createTempDirectory("exhort_test_reactor_");
+    for (String pom : List.of("pom.xml", "a/pom.xml", "b/pom.xml")) {
+      var target = reactorDir.resolve(pom);
+      Files.createDirectories(target.getParent());
+      var resourcePath = new ArrayList<>(List.of("tst_manifests", "maven", "reactor"));
+      resourcePath.addAll(List.of(pom.split("/")));
+      try (var is = getResourceAsStreamDecision(getClass(), resourcePath.toArray(String[]::new))) {
+        Files.write(target, is.readAllBytes());
+      }
+    }
+    return reactorDir;
+  }
+
+  private MockedStatic<Operations> mockReactorDependencyTree(List<List<String>> invokedCommands)
+      throws IOException {
+    try (var is =
+        getResourceAsStreamDecision(
+            getClass(), new String[] {"tst_manifests", "maven", "reactor", "depTree.txt"})) {
+      return mockReactorDependencyTree(new String(is.readAllBytes()), invokedCommands);
+    }
+  }
+
+  private MockedStatic<Operations> mockReactorDependencyTree(
+      String depTree, List<List<String>> invokedCommands) {
+    MockedStatic<Operations> mockedOperations = mockStatic(Operations.class);
+    mockedOperations
+        .when(() -> Operations.runProcess(any(), any()))
+        .thenAnswer(
+            invocationOnMock -> {
+              invokedCommands.add(Arrays.asList((String[]) invocationOnMock.getRawArguments()[0]));
+              return getOutputFileAndOverwriteItWithMock(depTree, invocationOnMock, "-DoutputFile");
+            });
+    return mockedOperations;
+  }
+
   public static String getOutputFileAndOverwriteItWithMock(
       String outputFileContent, InvocationOnMock invocationOnMock, String parameterPrefix)
       throws IOException {
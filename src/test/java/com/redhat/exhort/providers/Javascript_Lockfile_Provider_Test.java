@@ -0,0 +1,210 @@
+/*
+ * Copyright © 2023 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.exhort.providers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+import static org.mockito.Mockito.mockStatic;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.redhat.exhort.Api;
+import com.redhat.exhort.ExhortTest;
+import com.redhat.exhort.tools.Ecosystem;
+import com.redhat.exhort.tools.Operations;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.junitpioneer.jupiter.SetSystemProperty;
+import org.mockito.MockedStatic;
+
+@ExtendWith(HelperExtension.class)
+class Javascript_Lockfile_Provider_Test extends ExhortTest {
+  // test folders are located at src/test/resources/tst_manifests/<lock file format>
+  // each folder should contain:
+  // - package.json: the target manifest for testing
+  // - yarn.lock or pnpm-lock.yaml: the lock file of the manifest
+  // - expected_stack_sbom.json and expected_component_sbom.json: the SBOMs expected to be provided
+  static Stream<Arguments> testFolders() {
+    return Stream.of(
+        Arguments.of("yarn-classic", "yarn.lock"),
+        Arguments.of("yarn-berry", "yarn.lock"),
+        Arguments.of("pnpm-v5", "pnpm-lock.yaml"),
+        Arguments.of("pnpm-v6", "pnpm-lock.yaml"),
+        Arguments.of("pnpm-v9", "pnpm-lock.yaml"));
+  }
+
+  @ParameterizedTest
+  @MethodSource("testFolders")
+  void test_the_provideStack_and_provideComponent(String lockfileFormat, String lockfileName)
+      throws IOException {
+    var tmpFolder = Files.createTempDirectory("exhort_test_");
+    try {
+      var tmpManifest = tmpFolder.resolve("package.json");
+      Files.write(tmpManifest, readResource(lockfileFormat, "package.json"));
+      Files.write(tmpFolder.resolve(lockfileName), readResource(lockfileFormat, lockfileName));
+      var expectedStackSbom = readResource(lockfileFormat, "expected_stack_sbom.json");
+      var expectedComponentSbom = readResource(lockfileFormat, "expected_component_sbom.json");
+      try (MockedStatic<Operations> mockedOperations = mockStatic(Operations.class)) {
+        var provider = Ecosystem.getProvider(tmpManifest);
+        var stackContent = provider.provideStack(tmpManifest);
+        var componentContent = provider.provideComponent(tmpManifest);
+
+        // the lock file is read as is, without invoking the package manager
+        mockedOperations.verifyNoInteractions();
+        assertThat(stackContent.type).isEqualTo(Api.CYCLONEDX_MEDIA_TYPE);
+        assertThat(normalized(stackContent.buffer)).isEqualTo(normalized(expectedStackSbom));
+        assertThat(normalized(componentContent.buffer))
+            .isEqualTo(normalized(expectedComponentSbom));
+      }
+    } finally {
+      FileUtils.deleteDirectory(tmpFolder.toFile());
+    }
+  }
+
+  @ParameterizedTest
+  @MethodSource("testFolders")
+  void test_the_lock_file_is_up_to_date_with_the_declared_dependencies(
+      String lockfileFormat, String lockfileName) throws IOException {
+    var tmpFolder = Files.createTempDirectory("exhort_test_");
+    try {
+      var tmpManifest = tmpFolder.resolve("package.json");
+      Files.write(tmpManifest, readResource(lockfileFormat, "package.json"));
+      var lockfilePath =
+          Files.write(tmpFolder.resolve(lockfileName), readResource(lockfileFormat, lockfileName));
+      var provider = (BaseJavaScriptLockfileProvider) Ecosystem.getProvider(tmpManifest);
+      var manifest = (ObjectNode) new ObjectMapper().readTree(tmpManifest.toFile());
+      var lockfile = provider.parseLockfile(lockfilePath, manifest);
+
+      assertThat(provider.isUpToDate(lockfile, manifest, lockfilePath)).isTrue();
+      // dev dependencies are not part of the analysis
+      manifest.putObject("devDependencies").put("left-pad", "^1.3.0");
+      assertThat(provider.isUpToDate(lockfile, manifest, lockfilePath)).isTrue();
+      // a dependency declared with another range
+      var dependencies = (ObjectNode) manifest.get("dependencies");
+      dependencies.put("axios", "^1.6.0");
+      assertThat(provider.isUpToDate(lockfile, manifest, lockfilePath)).isFalse();
+      // a dependency added to the package.json
+      dependencies.put("axios", "^0.19.0").put("left-pad", "^1.3.0");
+      assertThat(provider.isUpToDate(lockfile, manifest, lockfilePath)).isFalse();
+      // a dependency removed from the package.json, yarn's root dependencies are read from the
+      // package.json, while pnpm's are read from the lock file
+      dependencies.remove("left-pad");
+      dependencies.remove("axios");
+      assertThat(provider.isUpToDate(lockfile, manifest, lockfilePath))
+          .isEqualTo(lockfileFormat.startsWith("yarn"));
+    } finally {
+      FileUtils.deleteDirectory(tmpFolder.toFile());
+    }
+  }
+
+  @Test
+  void test_the_provider_is_chosen_by_the_lock_file() throws IOException {
+    var tmpFolder = Files.createTempDirectory("exhort_test_");
+    try {
+      var tmpManifest = Files.createFile(tmpFolder.resolve("package.json"));
+      assertThat(Ecosystem.getProvider(tmpManifest)).isInstanceOf(JavaScriptNpmProvider.class);
+
+      Files.createFile(tmpFolder.resolve("pnpm-lock.yaml"));
+      assertThat(Ecosystem.getProvider(tmpManifest)).isInstanceOf(JavaScriptPnpmProvider.class);
+
+      Files.createFile(tmpFolder.resolve("yarn.lock"));
+      assertThat(Ecosystem.getProvider(tmpManifest)).isInstanceOf(JavaScriptYarnProvider.class);
+
+      // npm is preferred when its own lock file is found
+      Files.createFile(tmpFolder.resolve("package-lock.json"));
+      assertThat(Ecosystem.getProvider(tmpManifest)).isInstanceOf(JavaScriptNpmProvider.class);
+    } finally {
+      FileUtils.deleteDirectory(tmpFolder.toFile());
+    }
+  }
+
+  @Test
+  void test_the_provideStack_without_lock_file_should_throw_an_exception() throws IOException {
+    var tmpFolder = Files.createTempDirectory("exhort_test_");
+    try {
+      var tmpManifest = tmpFolder.resolve("package.json");
+      Files.write(tmpManifest, readResource("yarn-classic", "package.json"));
+      assertThatIllegalStateException()
+          .isThrownBy(() -> new JavaScriptYarnProvider().provideStack(tmpManifest))
+          .withMessageContaining("yarn.lock");
+    } finally {
+      FileUtils.deleteDirectory(tmpFolder.toFile());
+    }
+  }
+
+  @Test
+  @SetSystemProperty(key = "EXHORT_NPM_WORKSPACES_ENABLED", value = "true")
+  void test_the_provideBatchStack_with_yarn_workspaces() throws IOException {
+    var tmpFolder = Files.createTempDirectory("exhort_test_");
+    try {
+      for (String file :
+          List.of(
+              "package.json", "yarn.lock", "packages/a/package.json", "packages/b/package.json")) {
+        var target = tmpFolder.resolve(file);
+        Files.createDirectories(target.getParent());
+        Files.write(target, readResource("yarn-classic", "workspaces", file));
+      }
+      var expectedSboms =
+          new ObjectMapper()
+              .readTree(
+                  readResource("yarn-classic", "workspaces", "expected_batch_stack_sbom.json"));
+      try (MockedStatic<Operations> mockedOperations = mockStatic(Operations.class)) {
+        var content =
+            Ecosystem.getProvider(tmpFolder.resolve("package.json"))
+                .provideBatchStack(tmpFolder.resolve("package.json"));
+
+        mockedOperations.verifyNoInteractions();
+        var sboms = new ObjectMapper().readTree(content.buffer);
+        var purls = new ArrayList<String>();
+        sboms.fieldNames().forEachRemaining(purls::add);
+        // the root project first, then its workspaces, depending on each other
+        assertThat(purls)
+            .containsExactly(
+                "pkg:npm/monorepo@1.0.0",
+                "pkg:npm/%40monorepo/a@1.0.0",
+                "pkg:npm/%40monorepo/b@1.0.0");
+        for (String purl : purls) {
+          assertThat(normalized(sboms.get(purl).toString().getBytes()))
+              .isEqualTo(normalized(expectedSboms.get(purl).toString().getBytes()));
+        }
+      }
+    } finally {
+      FileUtils.deleteDirectory(tmpFolder.toFile());
+    }
+  }
+
+  private byte[] readResource(String lockfileFormat, String fileName) throws IOException {
+    return readResource(lockfileFormat, "deps_with_ignore", fileName);
+  }
+
+  private byte[] readResource(String lockfileFormat, String testFolder, String fileName)
+      throws IOException {
+    var path = new ArrayList<>(List.of("tst_manifests", lockfileFormat, testFolder));
+    path.addAll(List.of(fileName.split("/")));
+    try (var is = getResourceAsStreamDecision(this.getClass(), path.toArray(String[]::new))) {
+      return is.readAllBytes();
+    }
+  }
+}
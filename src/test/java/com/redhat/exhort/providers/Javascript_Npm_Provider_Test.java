@@ -19,16 +19,24 @@
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.redhat.exhort.Api;
 import com.redhat.exhort.ExhortTest;
 import com.redhat.exhort.tools.Operations;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.stream.Stream;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
 import org.junit.jupiter.params.provider.MethodSource;
+import org.junitpioneer.jupiter.SetSystemProperty;
 import org.mockito.*;
 
 @ExtendWith(HelperExtension.class)
@@ -198,6 +206,266 @@ void test_the_provideComponent_with_Path(String testFolder) throws Exception {
     assertThat(dropIgnored(new String(content.buffer))).isEqualTo(dropIgnored(expectedSbom));
   }
 
+  @ParameterizedTest
+  @MethodSource("testFolders")
+  @SetSystemProperty(key = "EXHORT_NPM_LOCKFILE_FAST_PATH", value = "true")
+  void test_the_provideStack_and_provideComponent_from_package_lock(String testFolder)
+      throws IOException {
+    var tmpNpmFolder = Files.createTempDirectory("exhort_test_");
+    var tmpNpmFile = tmpNpmFolder.resolve("package.json");
+    var tmpLockFile = tmpNpmFolder.resolve("package-lock.json");
+    Files.write(tmpNpmFile, readResource(testFolder, "package.json"));
+    Files.write(tmpLockFile, readResource(testFolder, "package-lock.json"));
+    var expectedStackSbom = new String(readResource(testFolder, "expected_stack_sbom.json"));
+    var expectedComponentSbom =
+        new String(readResource(testFolder, "expected_component_sbom.json"));
+    try (MockedStatic<Operations> mockedOperations = mockStatic(Operations.class)) {
+      var stackContent = new JavaScriptNpmProvider().provideStack(tmpNpmFile);
+      var componentContent = new JavaScriptNpmProvider().provideComponent(tmpNpmFile);
+
+      // the up-to-date lock file is used as is, without invoking npm
+      mockedOperations.verifyNoInteractions();
+      assertThat(normalized(stackContent.buffer)).isEqualTo(normalized(expectedStackSbom));
+      assertThat(normalized(componentContent.buffer)).isEqualTo(normalized(expectedComponentSbom));
+    } finally {
+      Files.deleteIfExists(tmpNpmFile);
+      Files.deleteIfExists(tmpLockFile);
+      Files.deleteIfExists(tmpNpmFolder);
+    }
+  }
+
+  @Test
+  @SetSystemProperty(key = "EXHORT_NPM_LOCKFILE_FAST_PATH", value = "true")
+  void test_the_provideStack_with_stale_package_lock_invokes_npm() throws IOException {
+    var testFolder = "deps_with_no_ignore";
+    var tmpNpmFolder = Files.createTempDirectory("exhort_test_");
+    var tmpNpmFile = tmpNpmFolder.resolve("package.json");
+    var tmpLockFile = tmpNpmFolder.resolve("package-lock.json");
+    // a dependency was added to the package.json since the lock file was created
+    var manifest =
+        (ObjectNode) new ObjectMapper().readTree(readResource(testFolder, "package.json"));
+    ((ObjectNode) manifest.get("dependencies")).put("lodash", "^4.17.21");
+    Files.write(tmpNpmFile, new ObjectMapper().writeValueAsBytes(manifest));
+    Files.write(tmpLockFile, readResource(testFolder, "package-lock.json"));
+    var npmListingStack = new String(readResource(testFolder, "npm-ls-stack.json"));
+    try (MockedStatic<Operations> mockedOperations = mockStatic(Operations.class)) {
+      mockedOperations
+          .when(() -> Operations.runProcessGetOutput(any(), any(String[].class)))
+          .thenReturn(npmListingStack);
+
+      new JavaScriptNpmProvider().provideStack(tmpNpmFile);
+
+      mockedOperations.verify(() -> Operations.runProcessGetOutput(any(), any(String[].class)));
+    } finally {
+      Files.deleteIfExists(tmpNpmFile);
+      Files.deleteIfExists(tmpLockFile);
+      Files.deleteIfExists(tmpNpmFolder);
+    }
+  }
+
+  @Test
+  void test_the_provideStack_expands_deduped_packages_once() throws IOException {
+    var tmpNpmFolder = Files.createTempDirectory("exhort_test_");
+    var tmpNpmFile = tmpNpmFolder.resolve("package.json");
+    Files.writeString(tmpNpmFile, "{\"name\": \"root\", \"version\": \"1.0.0\"}");
+    // shared is listed in full under first, and deduped under second
+    var npmListing =
+        "{\"name\": \"root\", \"version\": \"1.0.0\", \"dependencies\": {"
+            + "\"first\": {\"version\": \"1.0.0\", \"dependencies\": {"
+            + "\"shared\": {\"version\": \"2.0.0\", \"dependencies\": {"
+            + "\"leaf\": {\"version\": \"3.0.0\"}}}}},"
+            + "\"second\": {\"version\": \"1.0.0\", \"dependencies\": {"
+            + "\"shared\": {\"version\": \"2.0.0\"}}}}}";
+    try (MockedStatic<Operations> mockedOperations = mockStatic(Operations.class)) {
+      mockedOperations
+          .when(() -> Operations.runProcessGetOutput(any(), any(String[].class)))
+          .thenReturn(npmListing);
+
+      var sbom = normalized(new JavaScriptNpmProvider().provideStack(tmpNpmFile).buffer);
+
+      assertThat(sbom.get("components")).hasSize(5);
+      assertThat(sbom.get("dependencies").toString())
+          .contains(
+              "{\"ref\":\"pkg:npm/second@1.0.0\",\"dependsOn\":[\"pkg:npm/shared@2.0.0\"]}",
+              "{\"ref\":\"pkg:npm/shared@2.0.0\",\"dependsOn\":[\"pkg:npm/leaf@3.0.0\"]}");
+    } finally {
+      Files.deleteIfExists(tmpNpmFile);
+      Files.deleteIfExists(tmpNpmFolder);
+    }
+  }
+
+  @Test
+  void test_the_provideStack_runs_npm_on_a_scratch_copy_of_the_project() throws IOException {
+    var testFolder = "deps_with_no_ignore";
+    var tmpNpmFolder = Files.createTempDirectory("exhort_test_");
+    var tmpNpmFile = tmpNpmFolder.resolve("package.json");
+    Files.write(tmpNpmFile, readResource(testFolder, "package.json"));
+    Files.writeString(tmpNpmFolder.resolve(".npmrc"), "registry=https://registry.npmjs.org/");
+    var npmListingStack = new String(readResource(testFolder, "npm-ls-stack.json"));
+    List<Path> npmPrefixes = new ArrayList<>();
+    try (MockedStatic<Operations> mockedOperations = mockStatic(Operations.class)) {
+      mockedOperations
+          .when(() -> Operations.runProcess(any(), any()))
+          .thenAnswer(
+              invocationOnMock -> {
+                String[] commandParts = (String[]) invocationOnMock.getRawArguments()[0];
+                var prefix = Path.of(commandParts[commandParts.length - 1]);
+                // the files npm needs are copied to the scratch directory
+                assertThat(prefix.resolve("package.json")).hasSameTextualContentAs(tmpNpmFile);
+                assertThat(prefix.resolve(".npmrc")).exists();
+                npmPrefixes.add(prefix);
+                return Files.createFile(prefix.resolve("package-lock.json")).toString();
+              });
+      mockedOperations
+          .when(() -> Operations.runProcessGetOutput(any(), any(String[].class)))
+          .thenReturn(npmListingStack);
+
+      new JavaScriptNpmProvider().provideStack(tmpNpmFile);
+
+      // npm did not write to the project, and the scratch directory was cleaned up
+      assertThat(npmPrefixes).hasSize(1);
+      assertThat(npmPrefixes.get(0)).isNotEqualTo(tmpNpmFolder).doesNotExist();
+      assertThat(tmpNpmFolder.resolve("package-lock.json")).doesNotExist();
+    } finally {
+      FileUtils.deleteDirectory(tmpNpmFolder.toFile());
+    }
+  }
+
+  @ParameterizedTest
+  @CsvSource(
+      delimiter = '|',
+      value = {
+        "{\"description\": \"see file:docs\", \"scripts\": {\"dev\": \"npm link:x\"}}|false",
+        "{\"homepage\": \"https://acme.org/link:home\"}|false",
+        "{\"dependencies\": {\"lib\": \"file:../lib\"}}|true",
+        "{\"devDependencies\": {\"lib\": \"link:../lib\"}}|true",
+        "{\"optionalDependencies\": {\"lib\": \"./lib\"}}|true",
+        "{\"workspaces\": [\"../shared\"]}|true"
+      })
+  void test_the_provideStack_runs_npm_in_place_when_referencing_packages_by_paths(
+      String fields, boolean inPlace) throws IOException {
+    var tmpNpmFolder = Files.createTempDirectory("exhort_test_");
+    var tmpNpmFile = tmpNpmFolder.resolve("package.json");
+    var mapper = new ObjectMapper();
+    var manifest =
+        (ObjectNode) mapper.readTree(readResource("deps_with_no_ignore", "package.json"));
+    mapper.readerForUpdating(manifest).readValue(fields);
+    Files.write(tmpNpmFile, mapper.writeValueAsBytes(manifest));
+    var npmListingStack = new String(readResource("deps_with_no_ignore", "npm-ls-stack.json"));
+    List<Path> npmPrefixes = new ArrayList<>();
+    try (MockedStatic<Operations> mockedOperations = mockStatic(Operations.class)) {
+      mockedOperations
+          .when(() -> Operations.runProcess(any(), any()))
+          .thenAnswer(
+              invocationOnMock -> {
+                String[] commandParts = (String[]) invocationOnMock.getRawArguments()[0];
+                npmPrefixes.add(Path.of(commandParts[commandParts.length - 1]));
+                return "";
+              });
+      mockedOperations
+          .when(() -> Operations.runProcessGetOutput(any(), any(String[].class)))
+          .thenReturn(npmListingStack);
+
+      new JavaScriptNpmProvider().provideStack(tmpNpmFile);
+
+      assertThat(npmPrefixes).hasSize(1);
+      assertThat(npmPrefixes.get(0).equals(tmpNpmFolder)).isEqualTo(inPlace);
+    } finally {
+      FileUtils.deleteDirectory(tmpNpmFolder.toFile());
+    }
+  }
+
+  @Test
+  @SetSystemProperty(key = "EXHORT_NPM_WORKSPACES_ENABLED", value = "true")
+  void test_the_provideBatchStack_with_workspaces() throws IOException {
+    var tmpNpmFolder = createWorkspacesProject();
+    var expectedSboms =
+        new ObjectMapper().readTree(readResource("workspaces", "expected_batch_stack_sbom.json"));
+    try (MockedStatic<Operations> mockedOperations = mockStatic(Operations.class)) {
+      var content =
+          new JavaScriptNpmProvider().provideBatchStack(tmpNpmFolder.resolve("package.json"));
+
+      // the shared lock file is up-to-date with all the workspaces, npm is not invoked
+      mockedOperations.verifyNoInteractions();
+      var sboms = new ObjectMapper().readTree(content.buffer);
+      var purls = new ArrayList<String>();
+      sboms.fieldNames().forEachRemaining(purls::add);
+      // the root project first, then its workspaces
+      assertThat(purls)
+          .containsExactly(
+              "pkg:npm/monorepo@1.0.0",
+              "pkg:npm/%40monorepo/a@1.0.0",
+              "pkg:npm/%40monorepo/b@1.0.0");
+      for (String purl : purls) {
+        assertThat(normalized(sboms.get(purl).toString().getBytes()))
+            .isEqualTo(normalized(expectedSboms.get(purl).toString().getBytes()));
+      }
+    } finally {
+      FileUtils.deleteDirectory(tmpNpmFolder.toFile());
+    }
+  }
+
+  @Test
+  @SetSystemProperty(key = "EXHORT_NPM_WORKSPACES_ENABLED", value = "true")
+  void test_the_provideBatchStack_with_stale_workspaces_lock_invokes_npm_once() throws IOException {
+    var tmpNpmFolder = createWorkspacesProject();
+    // a dependency was removed from a workspace since the lock file was created
+    var workspaceManifest = tmpNpmFolder.resolve(Path.of("packages", "b", "package.json"));
+    var manifest = (ObjectNode) new ObjectMapper().readTree(workspaceManifest.toFile());
+    ((ObjectNode) manifest.get("dependencies")).remove("axios");
+    Files.write(workspaceManifest, new ObjectMapper().writeValueAsBytes(manifest));
+    var packageLock = Files.readString(tmpNpmFolder.resolve("package-lock.json"));
+    List<Path> npmPrefixes = new ArrayList<>();
+    try (MockedStatic<Operations> mockedOperations = mockStatic(Operations.class)) {
+      mockedOperations
+          .when(() -> Operations.runProcess(any(), any()))
+          .thenAnswer(
+              invocationOnMock -> {
+                String[] commandParts = (String[]) invocationOnMock.getRawArguments()[0];
+                var prefix = Path.of(commandParts[commandParts.length - 1]);
+                // the workspaces are copied to the scratch directory at their locations
+                assertThat(prefix.resolve(Path.of("packages", "b", "package.json")))
+                    .hasSameTextualContentAs(workspaceManifest);
+                assertThat(prefix.resolve(Path.of("packages", "a", "package.json"))).exists();
+                npmPrefixes.add(prefix);
+                return "";
+              });
+
+      new JavaScriptNpmProvider().provideBatchStack(tmpNpmFolder.resolve("package.json"));
+
+      mockedOperations.verify(() -> Operations.runProcess(any(String[].class), any()), times(1));
+      // npm did not write to the project, and the scratch directory was cleaned up
+      assertThat(npmPrefixes.get(0)).isNotEqualTo(tmpNpmFolder).doesNotExist();
+      assertThat(tmpNpmFolder.resolve("package-lock.json")).hasContent(packageLock);
+    } finally {
+      FileUtils.deleteDirectory(tmpNpmFolder.toFile());
+    }
+  }
+
+  /** Copy the workspaces monorepo, a root project and its a and b workspaces, to a temp folder. */
+  private Path createWorkspacesProject() throws IOException {
+    var tmpNpmFolder = Files.createTempDirectory("exhort_test_");
+    for (String file :
+        List.of(
+            "package.json",
+            "package-lock.json",
+            "packages/a/package.json",
+            "packages/b/package.json")) {
+      var target = tmpNpmFolder.resolve(file);
+      Files.createDirectories(target.getParent());
+      Files.write(target, readResource("workspaces", file));
+    }
+    return tmpNpmFolder;
+  }
+
+  private byte[] readResource(String testFolder, String fileName) throws IOException {
+    var path = new ArrayList<>(List.of("tst_manifests", "npm", testFolder));
+    path.addAll(List.of(fileName.split("/")));
+    try (var is = getResourceAsStreamDecision(this.getClass(), path.toArray(String[]::new))) {
+      return is.readAllBytes();
+    }
+  }
+
   private String dropIgnored(String s) {
     return s.replaceAll("\\s+", "").replaceAll("\"timestamp\":\"[a-zA-Z0-9\\-\\:]+\"", "");
   }
@@ -15,6 +15,7 @@
  */
 package com.redhat.exhort.tools;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatNoException;
 import static org.assertj.core.api.Assertions.assertThatRuntimeException;
 
@@ -50,4 +51,11 @@ void when_running_process_get_full_output_for_existing_command_should_not_throw_
                     new String[] {"unknown", "--command"},
                     new String[] {"PATH=123"}));
   }
+
+  @Test
+  void when_looking_up_executables_on_path_should_find_only_existing_ones() {
+    assertThat(Operations.isExecutableOnPath("ls")).isTrue();
+    assertThat(Operations.isExecutableOnPath("unknown-made-up-cmd")).isFalse();
+    assertThat(Operations.isExecutableOnPath("")).isFalse();
+  }
 }
@@ -0,0 +1,117 @@
+/*
+ * Copyright © 2023 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.exhort.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class DiskCacheTest {
+
+  @TempDir Path cacheDir;
+
+  @TempDir Path sourceDir;
+
+  @Test
+  void when_getting_a_stored_entry_should_return_its_content() throws IOException {
+    var cache = new DiskCache(cacheDir, 10, 1024);
+    var key = DiskCache.key("content".getBytes());
+
+    assertThat(cache.get(key)).isEmpty();
+    cache.put(key, source("a", "content"));
+
+    assertThat(cache.get(key)).hasValueSatisfying(entry -> assertThat(entry).hasContent("content"));
+  }
+
+  @Test
+  void when_exceeding_max_entries_should_evict_least_recently_used() throws IOException {
+    var cache = new DiskCache(cacheDir, 2, 1024);
+    cache.put("first", source("a", "a"));
+    cache.put("second", source("b", "b"));
+    // make the first entry older than the second, then use it again
+    Files.setLastModifiedTime(cacheDir.resolve("first"), FileTime.fromMillis(1000));
+    Files.setLastModifiedTime(cacheDir.resolve("second"), FileTime.fromMillis(2000));
+    cache.get("first");
+
+    cache.put("third", source("c", "c"));
+
+    assertThat(cache.get("first")).isPresent();
+    assertThat(cache.get("second")).isEmpty();
+    assertThat(cache.get("third")).isPresent();
+  }
+
+  @Test
+  void when_exceeding_max_size_should_evict_least_recently_used() throws IOException {
+    var cache = new DiskCache(cacheDir, 10, 15);
+    cache.put("first", source("a", "0123456789"));
+    Files.setLastModifiedTime(cacheDir.resolve("first"), FileTime.fromMillis(1000));
+
+    cache.put("second", source("b", "0123456789"));
+
+    assertThat(cache.get("first")).isEmpty();
+    assertThat(cache.get("second")).isPresent();
+  }
+
+  @Test
+  void when_an_entry_is_removed_while_evicting_should_treat_it_as_evicted() throws IOException {
+    var cache = new DiskCache(cacheDir, 10, 1024);
+    cache.put("first", source("a", "a"));
+    cache.put("second", source("b", "b"));
+    cache.put("third", source("c", "c"));
+    Files.setLastModifiedTime(cacheDir.resolve("first"), FileTime.fromMillis(1000));
+    Files.setLastModifiedTime(cacheDir.resolve("second"), FileTime.fromMillis(2000));
+    Files.setLastModifiedTime(cacheDir.resolve("third"), FileTime.fromMillis(3000));
+    var limitedCache = new DiskCache(cacheDir, 1, 1024);
+
+    // another process removes the second entry once it's listed
+    try (Stream<Path> files = Files.list(cacheDir)) {
+      limitedCache.evict(
+          files.peek(
+              file -> {
+                if (file.getFileName().toString().equals("second")) {
+                  try {
+                    Files.delete(file);
+                  } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                  }
+                }
+              }));
+    }
+
+    assertThat(cacheDir.resolve("first")).doesNotExist();
+    assertThat(cacheDir.resolve("second")).doesNotExist();
+    assertThat(cacheDir.resolve("third")).exists();
+  }
+
+  @Test
+  void when_calculating_keys_should_distinguish_parts_boundaries() {
+    assertThat(DiskCache.key("ab".getBytes(), "c".getBytes()))
+        .isEqualTo(DiskCache.key("ab".getBytes(), "c".getBytes()))
+        .isNotEqualTo(DiskCache.key("a".getBytes(), "bc".getBytes()))
+        .hasSize(64);
+  }
+
+  private Path source(String name, String content) throws IOException {
+    return Files.writeString(sourceDir.resolve(name), content);
+  }
+}
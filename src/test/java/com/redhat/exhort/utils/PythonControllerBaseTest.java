@@ -61,6 +61,28 @@ void when_spliting_pip_show_dep_with_license() {
     assertEquals(EXPECTED_PIP_SHOW_RESULTS, results);
   }
 
+  @Test
+  void when_mapping_pip_installation_report_should_evaluate_requirements_markers() {
+    String report =
+        "{\"version\": \"1\", \"install\": ["
+            + "{\"metadata\": {\"name\": \"requests\", \"version\": \"2.31.0\","
+            + " \"requires_dist\": [\"urllib3<3,>=1.21.1\", \"idna<4,>=2.5\","
+            + " \"PySocks!=1.5.7,>=1.5.6; extra == \\\"socks\\\"\","
+            + " \"win-inet-pton; sys_platform == \\\"win32\\\"\"]}},"
+            + "{\"metadata\": {\"name\": \"idna\", \"version\": \"3.4\"}}],"
+            + " \"environment\": {\"sys_platform\": \"linux\", \"python_version\": \"3.11\"}}";
+
+    List<PythonDependency> dependencies =
+        PythonControllerBase.mapInstallationReportToPythonDependencies(report);
+
+    assertEquals(2, dependencies.size());
+    assertEquals("requests", dependencies.get(0).getName());
+    assertEquals("2.31.0", dependencies.get(0).getVersion());
+    assertEquals(List.of("idna", "urllib3"), dependencies.get(0).getDependencies());
+    assertEquals("idna", dependencies.get(1).getName());
+    assertEquals(List.of(), dependencies.get(1).getDependencies());
+  }
+
   private static final String PIP_SHOW_LINES;
 
   static {
@@ -16,18 +16,28 @@
 package com.redhat.exhort.utils;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 import static org.mockito.Mockito.*;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.redhat.exhort.ExhortTest;
+import com.redhat.exhort.tools.Operations;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junitpioneer.jupiter.ClearSystemProperty;
+import org.junitpioneer.jupiter.SetSystemProperty;
 import org.mockito.Mockito;
 
 class PythonControllerVirtualEnvTest extends ExhortTest {
@@ -44,6 +54,35 @@ static void setUp() {
     spiedPythonControllerVirtualEnv = Mockito.spy(pythonControllerVirtualEnv);
   }
 
+  @Test
+  void test_Read_Requirements_Including_Referenced_Files(@TempDir Path dir) throws IOException {
+    Files.createDirectories(dir.resolve("constraints"));
+    var requirements =
+        Files.writeString(
+            dir.resolve("requirements.txt"),
+            "flask==2.0.3 # web\n-r base.txt\n--constraint=constraints/pins.txt\n");
+    Files.writeString(dir.resolve("base.txt"), "-r requirements.txt\nrequests==2.25.1\n");
+    Files.writeString(dir.resolve("constraints").resolve("pins.txt"), "urllib3==1.26.5\n");
+    List<byte[]> contents = new ArrayList<>();
+
+    assertTrue(
+        PythonControllerVirtualEnv.readRequirements(requirements, contents, new HashSet<>()));
+    assertEquals(
+        List.of(
+            Files.readString(requirements),
+            "-r requirements.txt\nrequests==2.25.1\n",
+            "urllib3==1.26.5\n"),
+        contents.stream().map(String::new).collect(Collectors.toList()));
+
+    for (String local : List.of("-e .", "./lib", "lib @ file:///tmp/lib", "--editable=git+x")) {
+      Files.writeString(dir.resolve("base.txt"), local + "\n");
+      assertFalse(
+          PythonControllerVirtualEnv.readRequirements(
+              requirements, new ArrayList<>(), new HashSet<>()),
+          local);
+    }
+  }
+
   @Test
   void test_Virtual_Environment_Install_Best_Efforts() throws JsonProcessingException {
     System.setProperty("EXHORT_PYTHON_INSTALL_BEST_EFFORTS", "true");
@@ -72,11 +111,10 @@ void test_Virtual_Environment_Install_Best_Efforts_Conflict_MMV_Should_Throw_Run
   }
 
   @Test
-  void test_Virtual_Environment_Flow() throws IOException {
+  void test_Virtual_Environment_Flow(@TempDir Path dir) throws IOException {
     //    Mockito
     String requirementsTxt = "Jinja2==3.0.3";
-    Path requirementsFilePath =
-        Path.of(System.getProperty("user.dir").toString(), "requirements.txt");
+    Path requirementsFilePath = dir.resolve("requirements.txt");
     Files.write(requirementsFilePath, requirementsTxt.getBytes());
     //    MockedStatic<Operations> operationsMockedStatic = mockStatic(Operations.class);
     //    when(spiedPythonControllerVirtualEnv.)
@@ -91,6 +129,63 @@ void test_Virtual_Environment_Flow() throws IOException {
     verify(spiedPythonControllerVirtualEnv, times(2)).isVirtualEnv();
   }
 
+  @Test
+  @ClearSystemProperty(key = "EXHORT_PIP_USE_DEP_TREE")
+  @ClearSystemProperty(key = "EXHORT_PYTHON_INSTALL_BEST_EFFORTS")
+  @ClearSystemProperty(key = "EXHORT_PYTHON_VIRTUAL_ENV_POOL")
+  @SetSystemProperty(key = "EXHORT_PYTHON_RESOLVE_ONLY", value = "true")
+  @SetSystemProperty(key = "MATCH_MANIFEST_VERSIONS", value = "true")
+  void test_Virtual_Environment_Resolve_Only_From_Local_Index(@TempDir Path packageIndex)
+      throws IOException {
+    assumeTrue(Operations.isExecutableOnPath("python3"));
+    wheel(packageIndex, "alpha", "1.0", "beta>=1.1", "gamma ; extra == 'test'");
+    wheel(packageIndex, "beta", "1.0");
+    wheel(packageIndex, "beta", "1.1", "alpha", "delta ; python_version < '3'");
+    String requirementsTxt = getFileFromString("requirements.txt", "alpha==1.0\n");
+    System.setProperty("EXHORT_PIP_FIND_LINKS", packageIndex.toString());
+    try {
+      var controller = Mockito.spy(new PythonControllerVirtualEnv("python3"));
+
+      List<Map<String, Object>> dependencies = controller.getDependencies(requirementsTxt, true);
+
+      // the packages are resolved without being installed, so there's nothing to clean
+      verify(controller, never()).installPackages(anyString());
+      verify(controller, never()).cleanEnvironment(anyBoolean());
+      assertEquals(
+          List.of(
+              Map.of(
+                  "name",
+                  "alpha",
+                  "version",
+                  "1.0",
+                  "dependencies",
+                  List.of(Map.of("name", "beta", "version", "1.1", "dependencies", List.of())))),
+          dependencies);
+    } finally {
+      System.clearProperty("EXHORT_PIP_FIND_LINKS");
+    }
+  }
+
+  /** Write a wheel holding the metadata only, which is all pip reads when resolving. */
+  private static void wheel(Path packageIndex, String name, String version, String... requires)
+      throws IOException {
+    var distInfo = name + "-" + version + ".dist-info/";
+    var wheelFile = packageIndex.resolve(name + "-" + version + "-py3-none-any.whl");
+    try (var wheel = new ZipOutputStream(Files.newOutputStream(wheelFile))) {
+      var metadata =
+          new StringBuilder(
+              "Metadata-Version: 2.1\nName: " + name + "\nVersion: " + version + "\n");
+      for (String require : requires) {
+        metadata.append("Requires-Dist: ").append(require).append("\n");
+      }
+      wheel.putNextEntry(new ZipEntry(distInfo + "METADATA"));
+      wheel.write(metadata.toString().getBytes());
+      wheel.putNextEntry(new ZipEntry(distInfo + "WHEEL"));
+      wheel.write("Wheel-Version: 1.0\nRoot-Is-Purelib: true\nTag: py3-none-any\n".getBytes());
+      wheel.putNextEntry(new ZipEntry(distInfo + "RECORD"));
+    }
+  }
+
   @Test
   void isRealEnv() {
 
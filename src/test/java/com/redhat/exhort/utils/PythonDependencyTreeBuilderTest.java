@@ -0,0 +1,104 @@
+/*
+ * Copyright © 2023 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.exhort.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.redhat.exhort.exception.PackageNotInstalledException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class PythonDependencyTreeBuilderTest {
+
+  @Test
+  void when_building_trees_should_cut_cycles_by_path_and_share_the_other_subtrees() {
+    var builder =
+        new PythonDependencyTreeBuilder(
+            environment(
+                new PythonDependency("A", "1.0", List.of("d", "B")),
+                new PythonDependency("B", "1.0", List.of("c")),
+                new PythonDependency("c", "1.0", List.of("d", "a")),
+                new PythonDependency("d", "1.0", List.of("e")),
+                new PythonDependency("e", "1.0", List.of())));
+    List<Map<String, Object>> dependencies = new ArrayList<>();
+
+    builder.addDependency(dependencies, "a", true);
+    builder.addDependency(dependencies, "c", true);
+
+    var d = Map.of("name", "d", "version", "1.0", "dependencies", List.of(leaf("e")));
+    assertThat(dependencies)
+        .containsExactly(
+            node(
+                "A",
+                node("B", node("c", d)),
+                // the cycle is cut where it's entered, a is on the path
+                d),
+            node(
+                "c",
+                // b doesn't expand c, which is on the path
+                node("A", node("B"), d),
+                d));
+    var firstD = nested(dependencies.get(0), 1);
+    var secondD = nested(dependencies.get(1), 1);
+    assertThat(firstD).isSameAs(secondD);
+  }
+
+  @Test
+  void when_not_including_transitive_should_add_the_direct_dependencies_only() {
+    var builder =
+        new PythonDependencyTreeBuilder(
+            environment(
+                new PythonDependency("a", "1.0", List.of("not-installed")),
+                new PythonDependency("e", "1.0", List.of())));
+    List<Map<String, Object>> dependencies = new ArrayList<>();
+
+    builder.addDependency(dependencies, "a", false);
+    builder.addDependency(dependencies, "e", false);
+    builder.addDependency(dependencies, "", false);
+
+    assertThat(dependencies).containsExactly(node("a"), leaf("e"));
+    assertThatThrownBy(() -> builder.addDependency(dependencies, "a", true))
+        .isInstanceOf(PackageNotInstalledException.class)
+        .hasMessageContaining("not-installed");
+  }
+
+  private static Map<StringInsensitive, PythonDependency> environment(
+      PythonDependency... packages) {
+    Map<StringInsensitive, PythonDependency> environment = new HashMap<>();
+    for (PythonDependency pythonDependency : packages) {
+      environment.put(new StringInsensitive(pythonDependency.getName()), pythonDependency);
+    }
+    return environment;
+  }
+
+  private static Map<String, Object> leaf(String name) {
+    return Map.of("name", name, "version", "1.0");
+  }
+
+  @SafeVarargs
+  private static Map<String, Object> node(String name, Map<String, Object>... dependencies) {
+    return Map.of("name", name, "version", "1.0", "dependencies", List.of(dependencies));
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Map<String, Object> nested(Map<String, Object> dependency, int index) {
+    return ((List<Map<String, Object>>) dependency.get("dependencies")).get(index);
+  }
+}
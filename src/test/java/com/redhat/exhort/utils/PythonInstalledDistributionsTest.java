@@ -0,0 +1,224 @@
+/*
+ * Copyright © 2023 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.exhort.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+import static org.assertj.core.api.Assertions.assertThatRuntimeException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junitpioneer.jupiter.ClearSystemProperty;
+import org.junitpioneer.jupiter.SetSystemProperty;
+
+class PythonInstalledDistributionsTest {
+
+  private static final Map<String, String> MARKERS =
+      Map.of(
+          "python_version", "3.11",
+          "python_full_version", "3.11.2",
+          "sys_platform", "linux",
+          "os_name", "posix",
+          "platform_system", "Linux");
+
+  @TempDir Path sitePackages;
+
+  @TempDir Path userSitePackages;
+
+  @Test
+  void when_reading_the_metadata_should_return_the_distributions_as_pip_show() throws IOException {
+    distInfo(
+        sitePackages,
+        "requests-2.31.0",
+        "Name: requests",
+        "Version: 2.31.0",
+        "License: Apache 2.0",
+        "        continued license line",
+        "Requires-Dist: charset-normalizer (<4,>=2)",
+        "Requires-Dist: idna<4,>=2.5",
+        "Requires-Dist: urllib3<3,>=1.21.1",
+        "Requires-Dist: PySocks!=1.5.7,>=1.5.6 ; extra == 'socks'",
+        "Requires-Dist: importlib-metadata ; python_version < \"3.8\"",
+        "",
+        "Requires-Dist: not-a-header-in-the-description-body");
+    distInfo(sitePackages, "idna-3.4", "Name: idna", "Version: 3.4");
+    eggInfo(
+        sitePackages,
+        "urllib3-1.26.5",
+        "Name: urllib3\nVersion: 1.26.5\n",
+        "six\n[:sys_platform == \"win32\"]\npywin32\n[:python_version >= \"3\"]\nidna\n[socks]\n"
+            + "PySocks\n");
+    Files.writeString(
+        sitePackages.resolve("charset_normalizer-3.1.0.egg-info"),
+        "Name: charset-normalizer\nVersion: 3.1.0\n");
+    // shadowed by the first distribution found on sys.path
+    distInfo(userSitePackages, "idna-2.10", "Name: IDNA", "Version: 2.10");
+
+    var distributions =
+        PythonInstalledDistributions.fromProbe(probe(sitePackages, userSitePackages)).read();
+
+    assertThat(
+            distributions.stream()
+                .collect(
+                    Collectors.toMap(
+                        PythonDependency::getName,
+                        d -> d.getVersion() + " " + d.getDependencies())))
+        .containsOnly(
+            Map.entry("requests", "2.31.0 [charset-normalizer, idna, urllib3]"),
+            Map.entry("idna", "3.4 []"),
+            Map.entry("urllib3", "1.26.5 [idna, six]"),
+            Map.entry("charset-normalizer", "3.1.0 []"));
+  }
+
+  @Test
+  @ClearSystemProperty(key = "EXHORT_PIP_USE_DEP_TREE")
+  @SetSystemProperty(key = "EXHORT_PYTHON_USE_METADATA", value = "true")
+  @SetSystemProperty(key = "MATCH_MANIFEST_VERSIONS", value = "true")
+  void when_getting_dependencies_from_metadata_should_not_run_pip() throws IOException {
+    distInfo(
+        sitePackages, "flask-2.0.3", "Name: Flask", "Version: 2.0.3", "Requires-Dist: click>=7.1");
+    distInfo(sitePackages, "click-8.1.3", "Name: click", "Version: 8.1.3");
+    var requirements = Files.writeString(sitePackages.resolve("requirements.txt"), "flask==2.0.3");
+    System.setProperty(
+        "EXHORT_PYTHON_ENVIRONMENT_PROBE",
+        Base64.getEncoder().encodeToString(probe(sitePackages).getBytes()));
+    try {
+      var controller = new PythonControllerRealEnv("python-not-installed", "pip-not-installed");
+
+      var dependencies = controller.getDependencies(requirements.toString(), true);
+
+      assertThat(dependencies)
+          .containsExactly(
+              Map.of(
+                  "name",
+                  "Flask",
+                  "version",
+                  "2.0.3",
+                  "dependencies",
+                  List.of(Map.of("name", "click", "version", "8.1.3"))));
+    } finally {
+      System.clearProperty("EXHORT_PYTHON_ENVIRONMENT_PROBE");
+    }
+  }
+
+  @Test
+  @ClearSystemProperty(key = "EXHORT_PIP_USE_DEP_TREE")
+  @SetSystemProperty(key = "EXHORT_PYTHON_ENVIRONMENT_CACHE", value = "true")
+  @SetSystemProperty(key = "MATCH_MANIFEST_VERSIONS", value = "false")
+  void when_the_environment_is_unchanged_should_use_the_cached_snapshot(@TempDir Path cacheDir)
+      throws IOException {
+    distInfo(sitePackages, "flask-2.0.3", "Name: flask", "Version: 2.0.3");
+    distInfo(sitePackages, "click-8.1.3", "Name: click", "Version: 8.1.3");
+    var requirements = Files.writeString(sitePackages.resolve("requirements.txt"), "flask");
+    var expectedDependencies =
+        List.of(
+            Map.of(
+                "name",
+                "flask",
+                "version",
+                "2.0.3",
+                "dependencies",
+                List.of(Map.of("name", "click", "version", "8.1.3"))));
+    var pipShow =
+        "Name: flask\nVersion: 2.0.3\nRequires: click\n---\nName: click\nVersion: 8.1.3\n"
+            + "Requires: \n";
+    System.setProperty("EXHORT_CACHE_DIR", cacheDir.toString());
+    System.setProperty(
+        "EXHORT_PYTHON_ENVIRONMENT_PROBE",
+        Base64.getEncoder().encodeToString(probe(sitePackages).getBytes()));
+    System.setProperty(
+        "EXHORT_PIP_FREEZE",
+        Base64.getEncoder().encodeToString("flask==2.0.3\nclick==8.1.3".getBytes()));
+    System.setProperty("EXHORT_PIP_SHOW", Base64.getEncoder().encodeToString(pipShow.getBytes()));
+    try {
+      var controller = new PythonControllerRealEnv("python-not-installed", "pip-not-installed");
+      assertThat(controller.getDependencies(requirements.toString(), true))
+          .isEqualTo(expectedDependencies);
+
+      // pip is not run again while the environment is unchanged
+      System.clearProperty("EXHORT_PIP_FREEZE");
+      System.clearProperty("EXHORT_PIP_SHOW");
+      assertThat(controller.getDependencies(requirements.toString(), true))
+          .isEqualTo(expectedDependencies);
+
+      distInfo(sitePackages, "itsdangerous-2.1.2", "Name: itsdangerous", "Version: 2.1.2");
+      assertThatRuntimeException()
+          .isThrownBy(() -> controller.getDependencies(requirements.toString(), true))
+          .withMessageContaining("pip-not-installed");
+    } finally {
+      System.clearProperty("EXHORT_CACHE_DIR");
+      System.clearProperty("EXHORT_PYTHON_ENVIRONMENT_PROBE");
+      System.clearProperty("EXHORT_PIP_FREEZE");
+      System.clearProperty("EXHORT_PIP_SHOW");
+    }
+  }
+
+  @Test
+  void when_evaluating_markers_should_follow_pep_508() {
+    assertThat(PythonEnvironmentMarkers.evaluate("python_version >= \"3.8\"", MARKERS)).isTrue();
+    assertThat(PythonEnvironmentMarkers.evaluate("python_version < '3.10'", MARKERS)).isFalse();
+    assertThat(PythonEnvironmentMarkers.evaluate("python_full_version ~= \"3.11.0\"", MARKERS))
+        .isTrue();
+    assertThat(
+            PythonEnvironmentMarkers.evaluate(
+                "(os_name == \"nt\" or sys_platform == \"linux\") and extra != \"test\"", MARKERS))
+        .isTrue();
+    assertThat(PythonEnvironmentMarkers.evaluate("extra == \"test\"", MARKERS)).isFalse();
+    assertThat(PythonEnvironmentMarkers.evaluate("python_version == \"3.*\"", MARKERS)).isTrue();
+    assertThat(PythonEnvironmentMarkers.evaluate("python_version != '3.11.*'", MARKERS)).isFalse();
+    assertThat(PythonEnvironmentMarkers.evaluate("python_version == \"2.*\"", MARKERS)).isFalse();
+    assertThat(PythonEnvironmentMarkers.evaluate("'linux' in sys_platform", MARKERS)).isTrue();
+    assertThat(PythonEnvironmentMarkers.evaluate("platform_system not in 'Windows'", MARKERS))
+        .isTrue();
+    assertThatIllegalArgumentException()
+        .isThrownBy(() -> PythonEnvironmentMarkers.evaluate("python_version >=", MARKERS));
+    assertThat(
+            PythonEnvironmentMarkers.getApplicableRequirementNames(
+                List.of("idna ; python_version >=", "certifi ; python_version == \"3.*\""),
+                MARKERS))
+        .containsExactly("certifi");
+  }
+
+  private static void distInfo(Path sysPathEntry, String distribution, String... metadata)
+      throws IOException {
+    var directory = Files.createDirectories(sysPathEntry.resolve(distribution + ".dist-info"));
+    Files.write(directory.resolve("METADATA"), List.of(metadata));
+  }
+
+  private static void eggInfo(
+      Path sysPathEntry, String distribution, String pkgInfo, String requiresTxt)
+      throws IOException {
+    var directory = Files.createDirectories(sysPathEntry.resolve(distribution + ".egg-info"));
+    Files.writeString(directory.resolve("PKG-INFO"), pkgInfo);
+    Files.writeString(directory.resolve("requires.txt"), requiresTxt);
+  }
+
+  private static String probe(Path... sysPath) {
+    return String.format(
+        "{\"sys_path\": [\"\", %s], \"markers\": {\"python_version\": \"3.11\","
+            + " \"sys_platform\": \"linux\"}}",
+        List.of(sysPath).stream()
+            .map(entry -> "\"" + entry.toString().replace("\\", "\\\\") + "\"")
+            .collect(Collectors.joining(", ")));
+  }
+}
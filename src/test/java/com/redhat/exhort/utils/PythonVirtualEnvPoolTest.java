@@ -0,0 +1,122 @@
+/*
+ * Copyright © 2023 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.exhort.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+
+import com.redhat.exhort.tools.Operations;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junitpioneer.jupiter.ClearSystemProperty;
+import org.junitpioneer.jupiter.SetSystemProperty;
+
+class PythonVirtualEnvPoolTest {
+
+  @TempDir Path poolDir;
+
+  @Test
+  void when_an_environment_is_leased_should_lease_another_one() {
+    var pool = new PythonVirtualEnvPool(poolDir, 10);
+
+    var first = pool.lease("key");
+    var second = pool.lease("key");
+
+    var other = pool.lease("other");
+
+    assertThat(first.getDirectory()).isNotEqualTo(second.getDirectory());
+    assertThat(other.getDirectory()).isNotIn(first.getDirectory(), second.getDirectory());
+    pool.release(first, false);
+    assertThat(pool.lease("key").getDirectory()).isEqualTo(first.getDirectory());
+  }
+
+  @Test
+  void when_an_environment_is_released_ready_should_lease_it_warm() throws IOException {
+    var pool = new PythonVirtualEnvPool(poolDir, 10);
+    var lease = pool.lease("key");
+    Files.createDirectories(lease.getDirectory());
+    assertThat(lease.isWarm()).isFalse();
+    pool.release(lease, false);
+
+    lease = pool.lease("key");
+    assertThat(lease.isWarm()).isFalse();
+    pool.release(lease, true);
+
+    var warmLease = pool.lease("key");
+    assertThat(warmLease.isWarm()).isTrue();
+    assertThat(warmLease.getDirectory()).isEqualTo(lease.getDirectory());
+  }
+
+  @Test
+  void when_exceeding_max_entries_should_evict_least_recently_used() throws IOException {
+    var pool = new PythonVirtualEnvPool(poolDir, 1);
+    var leased = pool.lease("leased");
+    Files.createDirectories(leased.getDirectory());
+    var first = pool.lease("first");
+    Files.createDirectories(first.getDirectory());
+    pool.release(first, true);
+    Files.setLastModifiedTime(first.getDirectory(), FileTime.fromMillis(1000));
+    Files.setLastModifiedTime(leased.getDirectory(), FileTime.fromMillis(500));
+
+    var second = pool.lease("second");
+    Files.createDirectories(second.getDirectory());
+    pool.release(second, true);
+
+    // the leased environment is kept regardless of its last usage
+    assertThat(first.getDirectory()).doesNotExist();
+    assertThat(first.getDirectory().resolveSibling(first.getDirectory().getFileName() + ".lock"))
+        .doesNotExist();
+    assertThat(leased.getDirectory()).exists();
+    assertThat(second.getDirectory()).exists();
+    pool.release(leased, true);
+  }
+
+  @Test
+  @ClearSystemProperty(key = "EXHORT_PIP_USE_DEP_TREE")
+  @ClearSystemProperty(key = "EXHORT_PYTHON_INSTALL_BEST_EFFORTS")
+  @SetSystemProperty(key = "EXHORT_PYTHON_VIRTUAL_ENV_POOL", value = "true")
+  @SetSystemProperty(key = "MATCH_MANIFEST_VERSIONS", value = "false")
+  void when_analyzing_the_same_requirements_again_should_reuse_the_warm_environment(
+      @TempDir Path cacheDir) throws IOException {
+    assumeTrue(Operations.isExecutableOnPath("python3"));
+    // pip comes along with the virtual environment, so nothing is downloaded
+    var requirements = Files.writeString(cacheDir.resolve("requirements.txt"), "pip");
+    System.setProperty("EXHORT_CACHE_DIR", cacheDir.toString());
+    try {
+      var first = spy(new PythonControllerVirtualEnv("python3"));
+      var dependencies = first.getDependencies(requirements.toString(), true);
+      assertThat(dependencies).extracting(d -> d.get("name")).containsExactly("pip");
+      verify(first).installPackages(anyString());
+
+      var second = spy(new PythonControllerVirtualEnv("python3"));
+      assertThat(second.getDependencies(requirements.toString(), true)).isEqualTo(dependencies);
+      verify(second, never()).installPackages(anyString());
+      assertThat(second.pythonEnvironmentDir)
+          .isEqualTo(first.pythonEnvironmentDir)
+          .startsWith(cacheDir);
+    } finally {
+      System.clearProperty("EXHORT_CACHE_DIR");
+    }
+  }
+}
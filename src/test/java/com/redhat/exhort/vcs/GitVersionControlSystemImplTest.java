@@ -0,0 +1,190 @@
+/*
+ * Copyright © 2023 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.exhort.vcs;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.redhat.exhort.tools.Operations;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+@Tag("gitTest")
+class GitVersionControlSystemImplTest {
+
+  private Path testGitRepo;
+  private final GitVersionControlSystemImpl vcs = new GitVersionControlSystemImpl();
+
+  @BeforeEach
+  void setUp() throws IOException {
+    this.testGitRepo = Files.createTempDirectory("exhort_tmp");
+    git("init");
+    git("config", "user.email", "tester@exhort-java-api.com");
+    git("config", "user.name", "exhort-java-api-tester");
+  }
+
+  @AfterEach
+  void tearDown() throws IOException {
+    FileUtils.deleteDirectory(this.testGitRepo.toFile());
+  }
+
+  @Test
+  void the_repo_is_detected_without_git() throws IOException {
+    var subDir = Files.createDirectories(testGitRepo.resolve("sub").resolve("dir"));
+    var noGitRepo = Files.createTempDirectory("exhort_tmp");
+    try {
+      assertThat(GitRepository.findGitDir(subDir)).isEqualTo(testGitRepo.resolve(".git"));
+      assertThat(vcs.isDirectoryRepo(subDir)).isTrue();
+      assertThat(vcs.isDirectoryRepo(noGitRepo)).isFalse();
+    } finally {
+      FileUtils.deleteDirectory(noGitRepo.toFile());
+    }
+  }
+
+  @Test
+  void the_latest_tag_of_an_empty_repo_matches_git() throws IOException {
+    assertLatestTagMatchesGit(testGitRepo);
+  }
+
+  @Test
+  void the_latest_tag_without_tags_matches_git() throws IOException {
+    commit("first");
+    assertLatestTagMatchesGit(testGitRepo);
+  }
+
+  @Test
+  void the_latest_tag_of_a_tagged_commit_matches_git() throws IOException {
+    commit("first");
+    git("tag", "v1.0.0");
+    assertLatestTagMatchesGit(testGitRepo);
+    assertThat(vcs.getLatestTag(testGitRepo).isCurrentCommitPointedByTag()).isTrue();
+  }
+
+  @Test
+  void the_latest_tag_of_an_annotated_tagged_commit_matches_git() throws IOException {
+    commit("first");
+    git("tag", "-a", "-m", "annotatedTag", "v1.0.0a");
+    assertLatestTagMatchesGit(testGitRepo);
+  }
+
+  @Test
+  void the_latest_tag_after_tags_matches_git() throws IOException {
+    commit("first");
+    git("tag", "-a", "-m", "annotatedTag", "v1.0.0");
+    commit("second");
+    git("tag", "v1.1.0");
+    commit("third");
+    // the annotated tags are preferred to the nearer lightweight ones
+    assertLatestTagMatchesGit(testGitRepo);
+    assertThat(vcs.getLatestTag(testGitRepo).getTagName()).isEqualTo("v1.0.0");
+  }
+
+  @Test
+  void the_latest_tag_of_a_packed_repo_matches_git() throws IOException {
+    commit("first");
+    git("tag", "v1.0.0");
+    for (int i = 0; i < 20; i++) {
+      commit("commit" + i);
+    }
+    git("gc", "--aggressive");
+    assertThat(testGitRepo.resolve(".git").resolve("packed-refs")).exists();
+    assertLatestTagMatchesGit(testGitRepo);
+    assertThat(vcs.getLatestTag(testGitRepo).getTagName()).isEqualTo("v1.0.0");
+  }
+
+  @Test
+  void the_latest_tag_of_a_merge_is_the_one_with_the_fewest_commits_since() throws IOException {
+    commit("base", "2020-01-01T10:00:00+00:00");
+    git("checkout", "-b", "old");
+    for (int i = 0; i < 20; i++) {
+      commit("old" + i, String.format("2020-01-02T10:%02d:00+00:00", i));
+    }
+    git("tag", "-a", "-m", "annotatedTag", "vA");
+    git("checkout", "-");
+    commit("new", "2023-01-01T10:00:00+00:00");
+    git("tag", "-a", "-m", "annotatedTag", "vB");
+    commit("newer", "2023-01-02T10:00:00+00:00");
+    git("merge", "--no-ff", "-m", "merge", "old");
+    // vB is met first, yet more commits are reachable from HEAD but not from it
+    assertLatestTagMatchesGit(testGitRepo);
+    assertThat(vcs.getLatestTag(testGitRepo).getTagName()).isEqualTo("vA");
+  }
+
+  @Test
+  void the_commit_timestamp_is_in_the_committer_time_zone() throws IOException {
+    commit("first", "2023-05-01T10:00:00+05:30");
+    assertLatestTagMatchesGit(testGitRepo);
+    assertThat(vcs.getLatestTag(testGitRepo).getCommitTimestamp()).hasToString("2023-05-01T10:00");
+  }
+
+  @Test
+  void the_latest_tag_of_a_linked_worktree_matches_git() throws IOException {
+    commit("first");
+    git("tag", "v1.0.0");
+    var worktree = Files.createTempDirectory("exhort_tmp").resolve("worktree");
+    try {
+      git("worktree", "add", worktree.toString());
+      Operations.runProcessGetOutput(worktree, "git", "commit", "-m", "second", "--allow-empty");
+      assertLatestTagMatchesGit(worktree);
+      assertThat(vcs.getLatestTag(worktree).isCurrentCommitPointedByTag()).isFalse();
+    } finally {
+      FileUtils.deleteDirectory(worktree.getParent().toFile());
+    }
+  }
+
+  private void assertLatestTagMatchesGit(Path repo) throws IOException {
+    var expected = vcs.getLatestTagFromCli(repo);
+    // read in-process, without falling back to git
+    TagInfo actual;
+    try (var repository = GitRepository.open(repo)) {
+      actual = repository.describeHead();
+    }
+    assertThat(actual.getTagName()).isEqualTo(expected.getTagName());
+    assertThat(actual.isCurrentCommitPointedByTag())
+        .isEqualTo(expected.isCurrentCommitPointedByTag());
+    assertThat(actual.getCommitTimestamp()).isEqualTo(expected.getCommitTimestamp());
+    // git describe abbreviates the commit digest
+    assertThat(actual.getCurrentCommitDigest()).startsWith(expected.getCurrentCommitDigest());
+  }
+
+  private void commit(String message) {
+    git("commit", "-m", message, "--allow-empty");
+  }
+
+  private void commit(String message, String committerDate) {
+    var environment = new HashMap<>(System.getenv());
+    environment.put("GIT_COMMITTER_DATE", committerDate);
+    Operations.runProcessGetOutput(
+        testGitRepo,
+        new String[] {"git", "commit", "-m", message, "--allow-empty"},
+        environment.entrySet().stream()
+            .map(entry -> entry.getKey() + "=" + entry.getValue())
+            .toArray(String[]::new));
+  }
+
+  private void git(String... args) {
+    var command = new String[args.length + 1];
+    command[0] = "git";
+    System.arraycopy(args, 0, command, 1, args.length);
+    Operations.runProcessGetOutput(testGitRepo, command);
+  }
+}
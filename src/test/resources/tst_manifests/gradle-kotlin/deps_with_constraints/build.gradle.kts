@@ -0,0 +1,20 @@
+plugins {
+    `java-library`
+}
+
+repositories {
+    maven {
+        url = uri("${repository}")
+    }
+}
+
+dependencies {
+    implementation(platform("org.acme:bom:1.0"))
+    implementation("org.acme:lib")
+    constraints {
+        implementation("org.acme:other:1.0")
+    }
+}
+
+group = "org.acme"
+version = "1.0.0"
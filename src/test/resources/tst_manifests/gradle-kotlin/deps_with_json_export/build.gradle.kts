@@ -0,0 +1,18 @@
+plugins {
+    `java-library`
+}
+
+repositories {
+    mavenCentral()
+}
+
+dependencies {
+    api("commons-io:commons-io:2.11.0")
+    implementation("org.slf4j:slf4j-simple:2.0.7")
+    implementation("org.slf4j:slf4j-api:1.7.30")
+    implementation("com.google.guava:guava:32.1.2-jre") // exhortignore
+    testImplementation("junit:junit:4.13.2")
+}
+
+group = "org.acme"
+version = "1.0.0"
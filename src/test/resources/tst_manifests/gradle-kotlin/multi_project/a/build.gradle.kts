@@ -0,0 +1,7 @@
+plugins {
+    `java-library`
+}
+
+dependencies {
+    implementation("org.slf4j:slf4j-api:2.0.7")
+}
@@ -0,0 +1,9 @@
+plugins {
+    `java-library`
+}
+
+dependencies {
+    implementation(project(":a"))
+    implementation("commons-io:commons-io:2.11.0") // exhortignore
+    implementation("org.slf4j:slf4j-simple:2.0.7")
+}
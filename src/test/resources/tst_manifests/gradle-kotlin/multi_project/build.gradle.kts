@@ -0,0 +1,8 @@
+allprojects {
+    group = "org.acme"
+    version = "1.0.0"
+
+    repositories {
+        mavenCentral()
+    }
+}
@@ -0,0 +1,2 @@
+rootProject.name = "multi-project"
+include("a", "b")